@@ -1,19 +1,77 @@
 package com.example.nobsv2;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @org.springframework.context.annotation.Configuration
 public class Configuration {
 
+    // One connection pool for every outbound integration (Google Places, Claude, cat facts).
+    // Keep-alive connections are reused, so calls to the same host skip the TCP + TLS handshake.
+    @Bean
+    public PoolingHttpClientConnectionManager httpConnectionManager(
+            @Value("${http.client.max-connections:200}") int maxConnections,
+            @Value("${http.client.max-connections-per-host:50}") int maxConnectionsPerHost,
+            @Value("${http.client.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${http.client.read-timeout:5m}") Duration readTimeout,
+            @Value("${http.client.connection-ttl:5m}") Duration connectionTtl) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerHost)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(connectionTtl))
+                        // Re-check connections that sat idle, the server may have closed them
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    // Response bodies are gzip-negotiated and decompressed by the client
+    @Bean
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpConnectionManager,
+                                          @Value("${http.client.read-timeout:5m}") Duration readTimeout,
+                                          @Value("${http.client.pool-wait-timeout:30s}") Duration poolWaitTimeout,
+                                          @Value("${http.client.idle-timeout:30s}") Duration idleTimeout) {
+        return HttpClients.custom()
+                .setConnectionManager(httpConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolWaitTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                .build();
+    }
 
     @Bean
     //beans get injected into spring container
     //gives us access to the rest template throughout the application
-    public RestTemplate restTemplate(){
+    public RestTemplate restTemplate(RestTemplateBuilder builder,
+                                     CloseableHttpClient httpClient,
+                                     PoolingHttpClientConnectionManager httpConnectionManager,
+                                     MeterRegistry meterRegistry){
 
-        //config rest template
-        return new RestTemplate();
+        //config rest template - the builder adds the http.client.requests metrics
+        return builder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .additionalInterceptors(new HttpClientPoolMetrics(httpConnectionManager, meterRegistry))
+                .build();
     }
 }
@@ -0,0 +1,60 @@
+package com.example.nobsv2;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+// Registers http.client.pool.{leased,available,pending,max} gauges tagged by host
+// the first time a request goes to that host
+class HttpClientPoolMetrics implements ClientHttpRequestInterceptor {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> hosts = ConcurrentHashMap.newKeySet();
+
+    HttpClientPoolMetrics(PoolingHttpClientConnectionManager connectionManager, MeterRegistry meterRegistry) {
+        this.connectionManager = connectionManager;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        String host = request.getURI().getHost();
+        if (host != null && hosts.add(host)) {
+            register(host, "leased", "Connections in use", PoolStats::getLeased);
+            register(host, "available", "Idle keep-alive connections", PoolStats::getAvailable);
+            register(host, "pending", "Requests waiting for a connection", PoolStats::getPending);
+            register(host, "max", "Connection limit", PoolStats::getMax);
+        }
+        return execution.execute(request, body);
+    }
+
+    private void register(String host, String name, String description, ToIntFunction<PoolStats> stat) {
+        Gauge.builder("http.client.pool." + name, connectionManager, manager -> sum(manager, host, stat))
+                .description(description)
+                .tag("host", host)
+                .register(meterRegistry);
+    }
+
+    // A host can have several routes (http/https, proxies)
+    private static double sum(PoolingHttpClientConnectionManager manager, String host, ToIntFunction<PoolStats> stat) {
+        int total = 0;
+        for (HttpRoute route : manager.getRoutes()) {
+            if (host.equals(route.getTargetHost().getHostName())) {
+                total += stat.applyAsInt(manager.getStats(route));
+            }
+        }
+        return total;
+    }
+}
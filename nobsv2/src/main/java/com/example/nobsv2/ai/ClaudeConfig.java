@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
 @Data
 public class ClaudeConfig {
@@ -14,9 +16,77 @@ public class ClaudeConfig {
     @Value("${claude.api.url:https://api.anthropic.com/v1/messages}")
     private String apiUrl;
 
+    // Message Batches API - half price, results within 24h
+    @Value("${claude.api.batch-url:https://api.anthropic.com/v1/messages/batches}")
+    private String batchUrl;
+
     @Value("${claude.model:claude-sonnet-4-20250514}")
     private String model;
 
     @Value("${claude.max.tokens:4000}")
     private Integer maxTokens;
-}
\ No newline at end of file
+
+    // Streaming website generation: worker threads and how long the browser's event stream stays open
+    @Value("${claude.stream.pool-size:8}")
+    private Integer streamPoolSize;
+
+    @Value("${claude.stream.timeout:10m}")
+    private Duration streamTimeout;
+
+    // Dispatcher: concurrent Claude calls, how many may wait, and for how long
+    @Value("${claude.dispatcher.max-in-flight:8}")
+    private Integer dispatcherMaxInFlight;
+
+    @Value("${claude.dispatcher.max-queue:200}")
+    private Integer dispatcherMaxQueue;
+
+    @Value("${claude.dispatcher.queue-timeout:3m}")
+    private Duration dispatcherQueueTimeout;
+
+    // 429 (rate limited) / 529 (overloaded) retries with jittered exponential backoff
+    @Value("${claude.retry.max-attempts:4}")
+    private Integer retryMaxAttempts;
+
+    @Value("${claude.retry.initial-backoff:2s}")
+    private Duration retryInitialBackoff;
+
+    @Value("${claude.retry.max-backoff:30s}")
+    private Duration retryMaxBackoff;
+
+    // Bulk website generation: threads shared by every bulk job, sites one job generates at once,
+    // and the most sites one job may take on
+    @Value("${claude.bulk.pool-size:8}")
+    private Integer bulkPoolSize;
+
+    @Value("${claude.bulk.max-concurrency-per-job:3}")
+    private Integer bulkConcurrencyPerJob;
+
+    @Value("${claude.bulk.max-sites-per-job:500}")
+    private Integer bulkMaxSitesPerJob;
+
+    // How long finished bulk jobs stay queryable
+    @Value("${claude.bulk.retention:1h}")
+    private Duration bulkRetention;
+
+    @Value("${claude.bulk.sse-timeout:30m}")
+    private Duration bulkSseTimeout;
+
+    // Offline batch mode: how often submitted batches are checked, and the most requests sent in one batch
+    @Value("${claude.batch.poll-interval:1m}")
+    private Duration batchPollInterval;
+
+    @Value("${claude.batch.max-requests:1000}")
+    private Integer batchMaxRequests;
+
+    // Website customization asks for search/replace hunks instead of the whole component;
+    // a patch that doesn't apply falls back to a full rewrite
+    @Value("${claude.customize.patch-mode:true}")
+    private Boolean customizePatchMode;
+
+    // Outreach messages are cached per user and prompt, so regenerating the same lead is free until the ttl runs out
+    @Value("${claude.message-cache.ttl:24h}")
+    private Duration messageCacheTtl;
+
+    @Value("${claude.message-cache.max-size:10000}")
+    private Long messageCacheMaxSize;
+}
@@ -1,6 +1,8 @@
 package com.example.nobsv2.ai.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -22,7 +24,13 @@ public class ClaudeDTO {
 
         private List<Message> messages;
 
-        private String system;
+        // Text blocks; mark the static ones with cache_control so they become a cached prefix
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private List<Content> system;
+
+        // true = server-sent events (content_block_delta etc.) instead of one JSON response
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Boolean stream;
     }
 
     @Data
@@ -31,7 +39,7 @@ public class ClaudeDTO {
     @AllArgsConstructor
     public static class Message {
         private String role; // "user" or "assistant"
-        private String content;
+        private List<Content> content;
     }
 
     @Data
@@ -50,12 +58,33 @@ public class ClaudeDTO {
         private Usage usage;
     }
 
+    // A text block - in responses, and in requests as system/message content
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
     public static class Content {
         private String type;
         private String text;
+
+        @JsonProperty("cache_control")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private CacheControl cacheControl;
+
+        public static Content text(String text) {
+            return new Content("text", text, null);
+        }
+
+        // The prompt up to and including this block is cached and reused by later requests
+        public static Content cachedText(String text) {
+            return new Content("text", text, new CacheControl("ephemeral"));
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CacheControl {
+        private String type;
     }
 
     @Data
@@ -67,5 +96,86 @@ public class ClaudeDTO {
 
         @JsonProperty("output_tokens")
         private Integer outputTokens;
+
+        // Prompt-cache activity; input_tokens only counts the uncached part
+        @JsonProperty("cache_creation_input_tokens")
+        private Integer cacheCreationInputTokens;
+
+        @JsonProperty("cache_read_input_tokens")
+        private Integer cacheReadInputTokens;
+    }
+
+    // Message Batches API: POST /v1/messages/batches
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchRequest {
+        private List<BatchItem> requests;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchItem {
+        @JsonProperty("custom_id")
+        private String customId;
+
+        private Request params;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Batch {
+        private String id;
+
+        // in_progress, canceling or ended
+        @JsonProperty("processing_status")
+        private String processingStatus;
+
+        @JsonProperty("request_counts")
+        private BatchCounts requestCounts;
+
+        // Set once the batch has ended
+        @JsonProperty("results_url")
+        private String resultsUrl;
+
+        public boolean isEnded() {
+            return "ended".equals(processingStatus);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchCounts {
+        private int processing;
+        private int succeeded;
+        private int errored;
+        private int canceled;
+        private int expired;
+    }
+
+    // One line of the results file
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchResult {
+        @JsonProperty("custom_id")
+        private String customId;
+
+        private BatchOutcome result;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchOutcome {
+        // succeeded, errored, canceled or expired
+        private String type;
+
+        private Response message;
+
+        private JsonNode error;
     }
-}
\ No newline at end of file
+}
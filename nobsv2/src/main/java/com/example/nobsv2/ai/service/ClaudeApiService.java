@@ -2,14 +2,27 @@ package com.example.nobsv2.ai.service;
 
 import com.example.nobsv2.ai.ClaudeConfig;
 import com.example.nobsv2.ai.dto.ClaudeDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -17,48 +30,45 @@ import java.util.List;
 public class ClaudeApiService {
 
     private final ClaudeConfig claudeConfig;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
 
     public String generateContent(String prompt, String systemPrompt) {
+        return generateContent(List.of(ClaudeDTO.Content.text(prompt)), systemBlocks(systemPrompt));
+    }
+
+    // Block form: lets callers mark large static parts (templates, system prompt) as cached prefixes
+    public String generateContent(List<ClaudeDTO.Content> content, List<ClaudeDTO.Content> system) {
         try {
             // Build request
-            ClaudeDTO.Message userMessage = ClaudeDTO.Message.builder()
-                    .role("user")
-                    .content(prompt)
-                    .build();
-
-            ClaudeDTO.Request request = ClaudeDTO.Request.builder()
-                    .model(claudeConfig.getModel())
-                    .maxTokens(claudeConfig.getMaxTokens())
-                    .messages(Collections.singletonList(userMessage))
-                    .system(systemPrompt)
-                    .build();
+            ClaudeDTO.Request request = buildRequest(content, system);
 
             // Set headers
             HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("x-api-key", claudeConfig.getApiKey());
-            headers.set("anthropic-version", "2023-06-01");
+            setHeaders(headers);
 
             HttpEntity<ClaudeDTO.Request> entity = new HttpEntity<>(request, headers);
 
             // Make API call
             log.info("Calling Claude API...");
-            ResponseEntity<ClaudeDTO.Response> response = restTemplate.exchange(
+            ResponseEntity<ClaudeDTO.Response> response = withRetry(() -> restTemplate.exchange(
                     claudeConfig.getApiUrl(),
                     HttpMethod.POST,
                     entity,
                     ClaudeDTO.Response.class
-            );
+            ));
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
                 ClaudeDTO.Response responseBody = response.getBody();
 
                 if (responseBody.getContent() != null && !responseBody.getContent().isEmpty()) {
                     String generatedText = responseBody.getContent().get(0).getText();
-                    log.info("Claude API call successful. Tokens used - Input: {}, Output: {}",
-                            responseBody.getUsage().getInputTokens(),
-                            responseBody.getUsage().getOutputTokens());
+                    ClaudeDTO.Usage usage = responseBody.getUsage();
+                    log.info("Claude API call successful. Tokens used - Input: {}, Output: {}, Cache read: {}, Cache write: {}",
+                            usage.getInputTokens(), usage.getOutputTokens(),
+                            usage.getCacheReadInputTokens(), usage.getCacheCreationInputTokens());
+                    recordUsage(usage);
                     return generatedText;
                 }
             }
@@ -74,4 +84,261 @@ public class ClaudeApiService {
     public String generateContent(String prompt) {
         return generateContent(prompt, null);
     }
+
+    // Streaming variant: reads the Messages API event stream and hands every text delta to onText
+    // as it arrives. Returns the full text once the stream ends.
+    public String streamContent(String prompt, String systemPrompt, Consumer<String> onText) {
+        return streamContent(List.of(ClaudeDTO.Content.text(prompt)), systemBlocks(systemPrompt), onText);
+    }
+
+    public String streamContent(List<ClaudeDTO.Content> content, List<ClaudeDTO.Content> system, Consumer<String> onText) {
+        try {
+            ClaudeDTO.Request request = buildRequest(content, system);
+            request.setStream(true);
+
+            log.info("Calling Claude API (streaming)...");
+            // A 429/529 arrives as the HTTP status before any event, so retrying never repeats streamed text
+            StreamedMessage message = withRetry(() -> restTemplate.execute(
+                    claudeConfig.getApiUrl(),
+                    HttpMethod.POST,
+                    httpRequest -> {
+                        setHeaders(httpRequest.getHeaders());
+                        httpRequest.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+                        objectMapper.writeValue(httpRequest.getBody(), request);
+                    },
+                    response -> readStream(response.getBody(), onText)
+            ));
+
+            ClaudeDTO.Usage usage = message.usage;
+            log.info("Claude API stream finished ({}). Tokens used - Input: {}, Output: {}, Cache read: {}, Cache write: {}",
+                    message.stopReason, usage.getInputTokens(), usage.getOutputTokens(),
+                    usage.getCacheReadInputTokens(), usage.getCacheCreationInputTokens());
+            recordUsage(usage);
+            return message.text.toString();
+
+        } catch (Exception e) {
+            log.error("Error streaming from Claude API: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to generate content with Claude API", e);
+        }
+    }
+
+    // Message Batches API: queues every prompt in one batch and returns it (processing_status in_progress).
+    // Batches are billed at half price and do not count against the interactive rate limits,
+    // so bulk runs that can wait go here instead of through the dispatcher.
+    public ClaudeDTO.Batch submitBatch(List<BatchPrompt> prompts) {
+        List<ClaudeDTO.BatchItem> items = prompts.stream()
+                .map(p -> new ClaudeDTO.BatchItem(p.customId(), buildRequest(p.content(), p.system())))
+                .toList();
+
+        HttpHeaders headers = new HttpHeaders();
+        setHeaders(headers);
+        ClaudeDTO.Batch batch = withRetry(() -> restTemplate.exchange(
+                claudeConfig.getBatchUrl(),
+                HttpMethod.POST,
+                new HttpEntity<>(new ClaudeDTO.BatchRequest(items), headers),
+                ClaudeDTO.Batch.class
+        )).getBody();
+        if (batch == null || batch.getId() == null) {
+            throw new RuntimeException("Failed to submit batch to Claude API");
+        }
+        log.info("Submitted Claude batch {} with {} requests", batch.getId(), items.size());
+        return batch;
+    }
+
+    public ClaudeDTO.Batch getBatch(String batchId) {
+        HttpHeaders headers = new HttpHeaders();
+        setHeaders(headers);
+        return withRetry(() -> restTemplate.exchange(
+                claudeConfig.getBatchUrl() + "/" + batchId,
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                ClaudeDTO.Batch.class
+        )).getBody();
+    }
+
+    // Reads an ended batch's results file (JSON lines, in no particular order) one result at a time,
+    // so a large batch is never held in memory
+    public void readBatchResults(ClaudeDTO.Batch batch, Consumer<BatchOutput> onResult) {
+        if (!batch.isEnded() || batch.getResultsUrl() == null) {
+            throw new IllegalStateException("Batch " + batch.getId() + " has not ended");
+        }
+        withRetry(() -> restTemplate.execute(
+                batch.getResultsUrl(),
+                HttpMethod.GET,
+                httpRequest -> setHeaders(httpRequest.getHeaders()),
+                response -> {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.isBlank()) {
+                            onResult.accept(toOutput(objectMapper.readValue(line, ClaudeDTO.BatchResult.class)));
+                        }
+                    }
+                    return null;
+                }
+        ));
+    }
+
+    private BatchOutput toOutput(ClaudeDTO.BatchResult result) {
+        ClaudeDTO.BatchOutcome outcome = result.getResult();
+        if (outcome != null && "succeeded".equals(outcome.getType()) && outcome.getMessage() != null
+                && outcome.getMessage().getContent() != null && !outcome.getMessage().getContent().isEmpty()) {
+            recordUsage(outcome.getMessage().getUsage());
+            return new BatchOutput(result.getCustomId(), outcome.getMessage().getContent().get(0).getText(), null);
+        }
+        String error = outcome == null ? "missing result"
+                : outcome.getError() != null ? outcome.getType() + ": " + outcome.getError().path("error").path("message").asText(outcome.getError().toString())
+                : outcome.getType();
+        return new BatchOutput(result.getCustomId(), null, error);
+    }
+
+    // Retries rate-limited (429) and overloaded (529) responses. Waits for retry-after when the API sends it,
+    // otherwise a jittered exponential backoff so retries from parallel callers spread out.
+    private <T> T withRetry(Supplier<T> call) {
+        Duration backoff = claudeConfig.getRetryInitialBackoff();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (RestClientResponseException e) {
+                int status = e.getStatusCode().value();
+                if ((status != 429 && status != 529) || attempt >= claudeConfig.getRetryMaxAttempts()) {
+                    throw e;
+                }
+                long sleepMillis = retryAfterMillis(e);
+                if (sleepMillis < 0) {
+                    sleepMillis = ThreadLocalRandom.current().nextLong(backoff.toMillis() / 2, backoff.toMillis() + 1);
+                }
+                meterRegistry.counter("claude.retries", "status", String.valueOf(status)).increment();
+                log.warn("Claude API returned {} - retrying in {} ms (attempt {}/{})",
+                        status, sleepMillis, attempt, claudeConfig.getRetryMaxAttempts());
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                Duration doubled = backoff.multipliedBy(2);
+                backoff = doubled.compareTo(claudeConfig.getRetryMaxBackoff()) > 0 ? claudeConfig.getRetryMaxBackoff() : doubled;
+            }
+        }
+    }
+
+    // retry-after in milliseconds, -1 if absent
+    private long retryAfterMillis(RestClientResponseException e) {
+        HttpHeaders headers = e.getResponseHeaders();
+        String retryAfter = headers != null ? headers.getFirst("retry-after") : null;
+        try {
+            return retryAfter != null ? (long) (Double.parseDouble(retryAfter) * 1000) : -1;
+        } catch (NumberFormatException ignored) {
+            return -1;
+        }
+    }
+
+    private ClaudeDTO.Request buildRequest(List<ClaudeDTO.Content> content, List<ClaudeDTO.Content> system) {
+        ClaudeDTO.Message userMessage = ClaudeDTO.Message.builder()
+                .role("user")
+                .content(content)
+                .build();
+
+        return ClaudeDTO.Request.builder()
+                .model(claudeConfig.getModel())
+                .maxTokens(claudeConfig.getMaxTokens())
+                .messages(Collections.singletonList(userMessage))
+                .system(system)
+                .build();
+    }
+
+    private static List<ClaudeDTO.Content> systemBlocks(String systemPrompt) {
+        return systemPrompt != null ? List.of(ClaudeDTO.Content.text(systemPrompt)) : null;
+    }
+
+    // claude.tokens{type=input|output|cache_read|cache_write} - cache_read vs cache_write shows whether prompt caching hits
+    private void recordUsage(ClaudeDTO.Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        countTokens("input", usage.getInputTokens());
+        countTokens("output", usage.getOutputTokens());
+        countTokens("cache_read", usage.getCacheReadInputTokens());
+        countTokens("cache_write", usage.getCacheCreationInputTokens());
+    }
+
+    private void countTokens(String type, Integer tokens) {
+        if (tokens != null && tokens > 0) {
+            meterRegistry.counter("claude.tokens", "type", type, "model", claudeConfig.getModel()).increment(tokens);
+        }
+    }
+
+    private void setHeaders(HttpHeaders headers) {
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("x-api-key", claudeConfig.getApiKey());
+        headers.set("anthropic-version", "2023-06-01");
+    }
+
+    // Server-sent events: "event:" / "data:" lines, a blank line ends each event.
+    // Every data payload carries its own "type", so the event names are not needed.
+    private StreamedMessage readStream(InputStream body, Consumer<String> onText) throws IOException {
+        StreamedMessage message = new StreamedMessage();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (data.length() > 0) {
+                    handleEvent(objectMapper.readTree(data.toString()), message, onText);
+                    data.setLength(0);
+                }
+            } else if (line.startsWith("data:")) {
+                data.append(line.substring(5).trim());
+            }
+        }
+        if (data.length() > 0) {
+            handleEvent(objectMapper.readTree(data.toString()), message, onText);
+        }
+        return message;
+    }
+
+    private void handleEvent(JsonNode event, StreamedMessage message, Consumer<String> onText) {
+        switch (event.path("type").asText()) {
+            case "message_start" -> {
+                JsonNode usage = event.path("message").path("usage");
+                message.usage.setInputTokens(usage.path("input_tokens").asInt());
+                message.usage.setCacheCreationInputTokens(usage.path("cache_creation_input_tokens").asInt());
+                message.usage.setCacheReadInputTokens(usage.path("cache_read_input_tokens").asInt());
+            }
+            case "content_block_delta" -> {
+                JsonNode delta = event.path("delta");
+                if ("text_delta".equals(delta.path("type").asText())) {
+                    String text = delta.path("text").asText();
+                    message.text.append(text);
+                    onText.accept(text);
+                }
+            }
+            case "message_delta" -> {
+                message.usage.setOutputTokens(event.path("usage").path("output_tokens").asInt());
+                message.stopReason = event.path("delta").path("stop_reason").asText(null);
+            }
+            case "error" -> throw new IllegalStateException(
+                    "Claude stream error: " + event.path("error").path("message").asText());
+            default -> {
+                // ping, content_block_start/stop, message_stop
+            }
+        }
+    }
+
+    // One prompt of a batch; customId comes back with its result
+    public record BatchPrompt(String customId, List<ClaudeDTO.Content> content, List<ClaudeDTO.Content> system) {}
+
+    // text on success, error otherwise
+    public record BatchOutput(String customId, String text, String error) {
+        public boolean isSuccess() {
+            return text != null;
+        }
+    }
+
+    private static class StreamedMessage {
+        final StringBuilder text = new StringBuilder();
+        final ClaudeDTO.Usage usage = new ClaudeDTO.Usage();
+        String stopReason;
+    }
 }
\ No newline at end of file
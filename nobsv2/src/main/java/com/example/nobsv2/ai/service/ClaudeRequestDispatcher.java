@@ -0,0 +1,206 @@
+package com.example.nobsv2.ai.service;
+
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.exceptions.ClaudeQueueFullException;
+import com.example.nobsv2.exceptions.ErrorMessages;
+import com.example.nobsv2.security.CustomUser;
+import com.example.nobsv2.security.CustomUserRepository;
+import com.example.nobsv2.stripe.SubscriptionPlan;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Gate in front of ClaudeApiService. At most claude.dispatcher.max-in-flight calls run at once; the rest
+// wait in a bounded queue. Higher plans are served first, and within a plan waiting users take turns
+// (round robin) so one user's bulk job cannot starve everyone else on the same plan.
+// Calls run on the caller's thread once admitted.
+@Service
+@Slf4j
+public class ClaudeRequestDispatcher {
+
+    // Serve order, best plan first
+    private static final SubscriptionPlan[] PRIORITY = {
+            SubscriptionPlan.ENTERPRISE, SubscriptionPlan.PRO, SubscriptionPlan.BASIC, SubscriptionPlan.FREE
+    };
+
+    private final ClaudeConfig claudeConfig;
+    private final CustomUserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    // Per plan: users in turn order, each with their waiting calls. Guarded by `this`.
+    private final Map<SubscriptionPlan, LinkedHashMap<String, Deque<Ticket>>> waiting = new EnumMap<>(SubscriptionPlan.class);
+    private int queued;
+    private int inFlight;
+
+    public ClaudeRequestDispatcher(ClaudeConfig claudeConfig,
+                                   CustomUserRepository userRepository,
+                                   MeterRegistry meterRegistry) {
+        this.claudeConfig = claudeConfig;
+        this.userRepository = userRepository;
+        this.meterRegistry = meterRegistry;
+        for (SubscriptionPlan plan : PRIORITY) {
+            waiting.put(plan, new LinkedHashMap<>());
+        }
+
+        Gauge.builder("claude.dispatcher.queued", this, ClaudeRequestDispatcher::getQueued)
+                .description("Claude calls waiting for a slot")
+                .register(meterRegistry);
+        Gauge.builder("claude.dispatcher.in_flight", this, ClaudeRequestDispatcher::getInFlight)
+                .description("Claude calls running")
+                .register(meterRegistry);
+    }
+
+    // Runs `call` once a slot is free. Throws ClaudeQueueFullException if the queue is full
+    // or the call waited longer than claude.dispatcher.queue-timeout.
+    public <T> T call(String username, Supplier<T> call) {
+        SubscriptionPlan plan = planFor(username);
+        Ticket ticket = enqueue(username, plan);
+        long waitNanos = awaitTurn(ticket, plan);
+        Timer.builder("claude.dispatcher.wait")
+                .description("Time Claude calls spent queued")
+                .tag("plan", plan.name())
+                .register(meterRegistry)
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+
+        try {
+            return call.get();
+        } finally {
+            release();
+        }
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private SubscriptionPlan planFor(String username) {
+        if (username == null) {
+            return SubscriptionPlan.FREE;
+        }
+        return userRepository.findByUsername(username)
+                .map(CustomUser::getSubscriptionPlan)
+                .orElse(SubscriptionPlan.FREE);
+    }
+
+    private synchronized Ticket enqueue(String username, SubscriptionPlan plan) {
+        Ticket ticket = new Ticket(username, plan);
+        if (queued == 0 && inFlight < claudeConfig.getDispatcherMaxInFlight()) {
+            inFlight++;
+            ticket.grant();
+            return ticket;
+        }
+        if (queued >= claudeConfig.getDispatcherMaxQueue()) {
+            reject(plan, "queue_full");
+        }
+        waiting.get(plan).computeIfAbsent(String.valueOf(username), u -> new ArrayDeque<>()).add(ticket);
+        queued++;
+        return ticket;
+    }
+
+    private long awaitTurn(Ticket ticket, SubscriptionPlan plan) {
+        long start = System.nanoTime();
+        boolean granted;
+        try {
+            granted = ticket.latch.await(claudeConfig.getDispatcherQueueTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            granted = false;
+        }
+        if (!granted && !withdraw(ticket)) {
+            // Granted right as the wait ended - the slot is ours
+            granted = true;
+        }
+        if (!granted) {
+            reject(plan, "timeout");
+        }
+        return System.nanoTime() - start;
+    }
+
+    // Takes a ticket out of the queue; false if it was already granted
+    private synchronized boolean withdraw(Ticket ticket) {
+        if (ticket.granted) {
+            return false;
+        }
+        LinkedHashMap<String, Deque<Ticket>> users = waiting.get(ticket.plan);
+        String key = String.valueOf(ticket.username);
+        Deque<Ticket> tickets = users.get(key);
+        if (tickets != null && tickets.remove(ticket)) {
+            queued--;
+            if (tickets.isEmpty()) {
+                users.remove(key);
+            }
+        }
+        return true;
+    }
+
+    private synchronized void release() {
+        inFlight--;
+        while (inFlight < claudeConfig.getDispatcherMaxInFlight()) {
+            Ticket next = pollNext();
+            if (next == null) {
+                break;
+            }
+            inFlight++;
+            next.grant();
+        }
+    }
+
+    // Best plan with anyone waiting; within it, the user whose turn it is goes to the back of the line
+    private Ticket pollNext() {
+        for (SubscriptionPlan plan : PRIORITY) {
+            LinkedHashMap<String, Deque<Ticket>> users = waiting.get(plan);
+            Iterator<Map.Entry<String, Deque<Ticket>>> it = users.entrySet().iterator();
+            if (!it.hasNext()) {
+                continue;
+            }
+            Map.Entry<String, Deque<Ticket>> turn = it.next();
+            it.remove();
+            Ticket ticket = turn.getValue().poll();
+            if (!turn.getValue().isEmpty()) {
+                users.put(turn.getKey(), turn.getValue());
+            }
+            queued--;
+            return ticket;
+        }
+        return null;
+    }
+
+    private void reject(SubscriptionPlan plan, String reason) {
+        meterRegistry.counter("claude.dispatcher.rejected", "plan", plan.name(), "reason", reason).increment();
+        log.warn("Rejected Claude call for {} plan: {}", plan, reason);
+        throw new ClaudeQueueFullException(ErrorMessages.CLAUDE_QUEUE_FULL);
+    }
+
+    private static class Ticket {
+        final String username;
+        final SubscriptionPlan plan;
+        final CountDownLatch latch = new CountDownLatch(1);
+        boolean granted;  // guarded by the dispatcher
+
+        Ticket(String username, SubscriptionPlan plan) {
+            this.username = username;
+            this.plan = plan;
+        }
+
+        void grant() {
+            granted = true;
+            latch.countDown();
+        }
+    }
+}
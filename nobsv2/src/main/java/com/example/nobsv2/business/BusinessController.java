@@ -3,16 +3,25 @@ package com.example.nobsv2.business;
 import com.example.nobsv2.business.dto.BusinessImportDTO;
 import com.example.nobsv2.business.model.Business;
 import com.example.nobsv2.business.model.Business.LeadStatus;
+import com.example.nobsv2.business.model.GenerationBatch;
 import com.example.nobsv2.business.services.*;
+import com.example.nobsv2.stripe.StripeService;
+import com.example.nobsv2.user.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/businesses")
@@ -27,6 +36,11 @@ public class BusinessController {
     private final ImportBusinessesService importBusinessesService;
     private final WebsiteGenerationService websiteGenerationService;
     private final MessageGenerationService messageGenerationService;
+    private final UserService userService;
+    private final BulkWebsiteGenerationService bulkWebsiteGenerationService;
+    private final BatchGenerationService batchGenerationService;
+    private final StripeService stripeService;
+    private final BulkOutreachService bulkOutreachService;
 
     // Get all businesses
     @GetMapping
@@ -70,6 +84,117 @@ public class BusinessController {
         return ResponseEntity.ok(getBusinessesService.searchBusinesses(keyword));
     }
 
+    // Paged listings: ?size=50 (max 200), then either ?page=N or ?after=<nextCursor from the previous page>.
+    // The cursor scroll stays fast however deep it goes. Totals are separate /count calls, so paging never counts.
+    @GetMapping("/page")
+    public ResponseEntity<GetBusinessesService.BusinessPage> getAllBusinessesPage(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "id") String sort) {
+        if ("updated".equals(sort)) {
+            return pageOrBadRequest(() -> getBusinessesService.getRecentlyUpdatedPage(after, size));
+        }
+        return pageOrBadRequest(() -> getBusinessesService.getAllBusinessesPage(after, page, size));
+    }
+
+    @GetMapping("/no-website/page")
+    public ResponseEntity<GetBusinessesService.BusinessPage> getBusinessesWithoutWebsitePage(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return pageOrBadRequest(() -> getBusinessesService.getBusinessesWithoutWebsitePage(after, page, size));
+    }
+
+    @GetMapping("/with-generated-website/page")
+    public ResponseEntity<GetBusinessesService.BusinessPage> getBusinessesWithGeneratedWebsitesPage(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return pageOrBadRequest(() -> getBusinessesService.getBusinessesWithGeneratedWebsitesPage(after, page, size));
+    }
+
+    @GetMapping("/uncontacted/page")
+    public ResponseEntity<GetBusinessesService.BusinessPage> getUncontactedLeadsPage(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return pageOrBadRequest(() -> getBusinessesService.getUncontactedLeadsPage(after, page, size));
+    }
+
+    @GetMapping("/status/{status}/page")
+    public ResponseEntity<GetBusinessesService.BusinessPage> getBusinessesByStatusPage(
+            @PathVariable LeadStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return pageOrBadRequest(() -> getBusinessesService.getBusinessesByStatusPage(status, after, page, size));
+    }
+
+    @GetMapping("/type/{type}/page")
+    public ResponseEntity<GetBusinessesService.BusinessPage> getBusinessesByTypePage(
+            @PathVariable String type,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return pageOrBadRequest(() -> getBusinessesService.getBusinessesByTypePage(type, after, page, size));
+    }
+
+    @GetMapping("/search/page")
+    public ResponseEntity<GetBusinessesService.BusinessPage> searchBusinessesPage(
+            @RequestParam String keyword,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return pageOrBadRequest(() -> getBusinessesService.searchBusinessesPage(keyword, after, page, size));
+    }
+
+    // Totals for the listings above
+    @GetMapping("/count")
+    public ResponseEntity<Long> countAllBusinesses() {
+        return ResponseEntity.ok(getBusinessesService.countAllBusinesses());
+    }
+
+    @GetMapping("/no-website/count")
+    public ResponseEntity<Long> countBusinessesWithoutWebsite() {
+        return ResponseEntity.ok(getBusinessesService.countBusinessesWithoutWebsite());
+    }
+
+    @GetMapping("/with-generated-website/count")
+    public ResponseEntity<Long> countBusinessesWithGeneratedWebsites() {
+        return ResponseEntity.ok(getBusinessesService.countBusinessesWithGeneratedWebsites());
+    }
+
+    @GetMapping("/uncontacted/count")
+    public ResponseEntity<Long> countUncontactedLeads() {
+        return ResponseEntity.ok(getBusinessesService.countUncontactedLeads());
+    }
+
+    @GetMapping("/status/{status}/count")
+    public ResponseEntity<Long> countBusinessesByStatus(@PathVariable LeadStatus status) {
+        return ResponseEntity.ok(getBusinessesService.countBusinessesByStatus(status));
+    }
+
+    @GetMapping("/type/{type}/count")
+    public ResponseEntity<Long> countBusinessesByType(@PathVariable String type) {
+        return ResponseEntity.ok(getBusinessesService.countBusinessesByType(type));
+    }
+
+    @GetMapping("/search/count")
+    public ResponseEntity<Long> countSearchResults(@RequestParam String keyword) {
+        return ResponseEntity.ok(getBusinessesService.countSearchResults(keyword));
+    }
+
+    // A malformed cursor is the client's mistake, not a server error
+    private ResponseEntity<GetBusinessesService.BusinessPage> pageOrBadRequest(
+            Supplier<GetBusinessesService.BusinessPage> page) {
+        try {
+            return ResponseEntity.ok(page.get());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // Get statistics
     @GetMapping("/stats")
     public ResponseEntity<GetBusinessesService.BusinessStats> getStats() {
@@ -139,7 +264,8 @@ public class BusinessController {
         String message = messageGenerationService.generateOutreachMessage(
                 request.getBusinessName(),
                 request.getBusinessType(),
-                request.getAddress()
+                request.getAddress(),
+                request.isRegenerate()
         );
 
         return ResponseEntity.ok()
@@ -148,6 +274,44 @@ public class BusinessController {
     }
 
 
+    // Outreach messages for a whole campaign, streamed back one lead per line as they are written -
+    // NDJSON by default, or a CSV download with ?format=csv. Leads past the plan's remaining messages come last, as skipped.
+    @PostMapping("/generate-outreach-message/bulk")
+    public ResponseEntity<StreamingResponseBody> generateOutreachMessagesBulk(
+            @RequestBody BulkOutreachRequest request,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        String username = userService.getCurrentUsername();
+
+        BulkOutreachService.Format outputFormat;
+        try {
+            outputFormat = BulkOutreachService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!stripeService.canPerformAction(username, StripeService.ActionType.GENERATE_MESSAGE)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        List<Integer> ids;
+        if (request.getBusinessIds() != null && !request.getBusinessIds().isEmpty()) {
+            ids = request.getBusinessIds();
+        } else if (request.getFilter() != null) {
+            ids = bulkOutreachService.findBusinessIds(username, request.getFilter());
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = out -> bulkOutreachService.stream(username, ids, outputFormat, out);
+        if (outputFormat == BulkOutreachService.Format.CSV) {
+            return ResponseEntity.ok()
+                    .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"outreach-messages.csv\"")
+                    .body(body);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @PostMapping("/{id}/generate-website")
     public ResponseEntity<WebsiteGenerationService.WebsiteGenerationResult> generateWebsite(
             @PathVariable Integer id) {
@@ -155,6 +319,104 @@ public class BusinessController {
                 websiteGenerationService.generateWebsite(id);
         return ResponseEntity.ok(result);
     }
+    // Same as generate-website, but streams Claude's copy (the JSON that fills the template) as server-sent events
+    // while it is written; the finished code arrives in the final "complete" event
+    @PostMapping(value = "/{id}/generate-website/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter generateWebsiteStream(@PathVariable Integer id) {
+        return websiteGenerationService.streamWebsite(id, userService.getCurrentUsername());
+    }
+
+    // Generate websites for many leads as a background job - either the given ids or every lead matching the filter.
+    // Sites past the plan's remaining quota are skipped; each site is saved and charged as soon as it succeeds.
+    @PostMapping("/generate-website/bulk")
+    public ResponseEntity<BulkWebsiteGenerationService.BulkProgress> generateWebsitesBulk(
+            @RequestBody BulkGenerationRequest request) {
+        String username = userService.getCurrentUsername();
+
+        if (!stripeService.canPerformAction(username, StripeService.ActionType.GENERATE_WEBSITE)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        List<Integer> ids;
+        if (request.getBusinessIds() != null && !request.getBusinessIds().isEmpty()) {
+            ids = request.getBusinessIds();
+        } else if (request.getFilter() != null) {
+            ids = bulkWebsiteGenerationService.findBusinessIds(username, request.getFilter());
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+
+        BulkWebsiteGenerationService.BulkJob job = bulkWebsiteGenerationService.submit(username, ids);
+        return ResponseEntity.accepted().body(job.toProgress());
+    }
+
+    @GetMapping("/generate-website/bulk/{jobId}")
+    public ResponseEntity<BulkWebsiteGenerationService.BulkProgress> getBulkGeneration(@PathVariable String jobId) {
+        return bulkWebsiteGenerationService.getJob(jobId, userService.getCurrentUsername())
+                .map(job -> ResponseEntity.ok(job.toProgress()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Bulk job progress as server-sent events ("progress" after each site, then one "complete" event)
+    @GetMapping(value = "/generate-website/bulk/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamBulkGeneration(@PathVariable String jobId) {
+        return bulkWebsiteGenerationService.getJob(jobId, userService.getCurrentUsername())
+                .map(job -> ResponseEntity.ok(bulkWebsiteGenerationService.subscribe(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Offline variants for runs that can wait: submitted to the Message Batches API at half the cost.
+    // Results are collected in the background (websites saved on the businesses) - poll GET /batches/{batchId}.
+    @PostMapping("/generate-website/batch")
+    public ResponseEntity<BatchGenerationService.BatchStatus> generateWebsitesBatch(@RequestBody BulkGenerationRequest request) {
+        return submitBatch(request.getBusinessIds(),
+                request.getFilter() == null ? null
+                        : username -> bulkWebsiteGenerationService.findBusinessIds(username, request.getFilter()),
+                GenerationBatch.Kind.WEBSITE, StripeService.ActionType.GENERATE_WEBSITE);
+    }
+
+    // Takes the same body as /generate-outreach-message/bulk, so both outreach paths select the same leads
+    @PostMapping("/generate-outreach-message/batch")
+    public ResponseEntity<BatchGenerationService.BatchStatus> generateOutreachMessagesBatch(@RequestBody BulkOutreachRequest request) {
+        return submitBatch(request.getBusinessIds(),
+                request.getFilter() == null ? null
+                        : username -> bulkOutreachService.findBusinessIds(username, request.getFilter()),
+                GenerationBatch.Kind.MESSAGE, StripeService.ActionType.GENERATE_MESSAGE);
+    }
+
+    @GetMapping("/batches/{batchId}")
+    public ResponseEntity<BatchGenerationService.BatchStatus> getBatch(@PathVariable String batchId) {
+        return batchGenerationService.getBatch(batchId, userService.getCurrentUsername())
+                .map(batch -> ResponseEntity.ok(batchGenerationService.toStatus(batch)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // businessIds take precedence; otherwise filterIds (null when the request has no filter) picks the leads
+    private ResponseEntity<BatchGenerationService.BatchStatus> submitBatch(List<Integer> businessIds,
+                                                                           Function<String, List<Integer>> filterIds,
+                                                                           GenerationBatch.Kind kind,
+                                                                           StripeService.ActionType action) {
+        String username = userService.getCurrentUsername();
+
+        if (!stripeService.canPerformAction(username, action)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        List<Integer> ids;
+        if (businessIds != null && !businessIds.isEmpty()) {
+            ids = businessIds;
+        } else if (filterIds != null) {
+            ids = filterIds.apply(username);
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            GenerationBatch batch = batchGenerationService.submit(username, kind, ids);
+            return ResponseEntity.accepted().body(batchGenerationService.toStatus(batch));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     //get generated code
     // Add this to your BusinessController.java
 
@@ -182,6 +444,19 @@ public class BusinessController {
         private String businessName;
         private String businessType;
         private String address;
+        private boolean regenerate;  // skip the cached message and write a new one
+    }
+
+    @lombok.Data
+    public static class BulkOutreachRequest {
+        private List<Integer> businessIds;  // takes precedence over filter
+        private BulkOutreachService.Filter filter;
+    }
+
+    @lombok.Data
+    public static class BulkGenerationRequest {
+        private List<Integer> businessIds;  // takes precedence over filter
+        private BulkWebsiteGenerationService.Filter filter;
     }
 
     // Add this DTO at the bottom with your other DTOs
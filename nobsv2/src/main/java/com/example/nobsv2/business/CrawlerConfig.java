@@ -0,0 +1,87 @@
+package com.example.nobsv2.business;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@Data
+public class CrawlerConfig {
+
+    // Threads shared by every crawl for place-details lookups
+    @Value("${crawler.details.pool-size:16}")
+    private Integer detailsPoolSize;
+
+    // Max details lookups a single crawl may have in flight at once
+    @Value("${crawler.details.max-concurrency-per-crawl:6}")
+    private Integer detailsConcurrencyPerCrawl;
+
+    // Tiled crawls: threads shared by every crawl for nearby-search cells
+    @Value("${crawler.tiles.pool-size:8}")
+    private Integer tilesPoolSize;
+
+    // Max cells a single tiled crawl searches at once
+    @Value("${crawler.tiles.max-concurrency-per-crawl:4}")
+    private Integer tilesConcurrencyPerCrawl;
+
+    // Cells that hit the 60-result cap are split until they reach this radius (meters)
+    @Value("${crawler.tiles.min-cell-radius:250}")
+    private Integer tilesMinCellRadius;
+
+    // Outbound Google calls (geocode + nearby pages + details) one search may make
+    @Value("${crawler.max-calls-per-search:1000}")
+    private Integer maxCallsPerSearch;
+
+    // Shared across every crawl: Google Places calls per second, and how many may go out back to back
+    @Value("${crawler.rate-limit.qps:20}")
+    private Double rateLimitQps;
+
+    @Value("${crawler.rate-limit.burst:20}")
+    private Integer rateLimitBurst;
+
+    // OVER_QUERY_LIMIT retries, backing off from this delay and doubling each time
+    @Value("${crawler.rate-limit.max-retries:5}")
+    private Integer rateLimitMaxRetries;
+
+    @Value("${crawler.rate-limit.initial-backoff:1s}")
+    private Duration rateLimitInitialBackoff;
+
+    // Google Places calls allowed per day (Pacific time), 0 for no limit
+    @Value("${crawler.quota.daily-calls:0}")
+    private Long dailyQuota;
+
+    // Geocode/details lookup cache
+    @Value("${crawler.cache.max-size:20000}")
+    private Long cacheMaxSize;
+
+    @Value("${crawler.cache.geocode-ttl:30d}")
+    private Duration geocodeTtl;
+
+    @Value("${crawler.cache.details-ttl:7d}")
+    private Duration detailsTtl;
+
+    // Also keep lookups in the places_cache table so they survive restarts
+    @Value("${crawler.cache.persistent:true}")
+    private Boolean cachePersistent;
+
+    // Expired places_cache rows are deleted in batches of this size
+    @Value("${crawler.cache.purge-batch-size:1000}")
+    private Integer cachePurgeBatchSize;
+
+    // Background lead-search jobs
+    @Value("${crawler.jobs.pool-size:4}")
+    private Integer jobsPoolSize;
+
+    // How long finished jobs stay queryable
+    @Value("${crawler.jobs.retention:1h}")
+    private Duration jobsRetention;
+
+    @Value("${crawler.jobs.sse-timeout:30m}")
+    private Duration jobsSseTimeout;
+
+    // How long an unfinished search can still be resumed from its checkpoint
+    @Value("${crawler.checkpoints.retention:7d}")
+    private Duration checkpointsRetention;
+}
@@ -4,14 +4,17 @@ import com.example.nobsv2.business.dto.BusinessImportDTO;
 import com.example.nobsv2.business.model.Business;
 import com.example.nobsv2.business.services.GooglePlacesCrawlerService;
 import com.example.nobsv2.business.services.ImportBusinessesService;
+import com.example.nobsv2.business.services.LeadSearchJobService;
 import com.example.nobsv2.business.services.PythonCrawlerService;
 import com.example.nobsv2.stripe.StripeService;
 import com.example.nobsv2.user.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -22,9 +25,8 @@ import java.util.List;
 @Slf4j
 public class LeadSearchController {
 
-    private final ImportBusinessesService importBusinessesService;
     //private final PythonCrawlerService pythonCrawlerService;  // Add this
-    private final GooglePlacesCrawlerService googlePlacesCrawlerService;
+    private final LeadSearchJobService leadSearchJobService;
     private final UserService userService;
     private final StripeService stripeService;
 
@@ -58,37 +60,38 @@ public class LeadSearchController {
             // Build location
             String location = request.getCity().trim() + ", " + request.getState().trim();
 
-            // Call Python crawler (ADDED THIS) --> changed to java instead
-            List<BusinessImportDTO> crawledBusinesses = googlePlacesCrawlerService.crawl(
-                    location,
-                    request.getRadius(),
-                    request.getBusinessType()
+            // Crawl and import page by page - each page commits in its own transaction,
+            // so leads show up right away and a mid-crawl failure keeps what was already imported
+            LeadSearchJobService.LeadSearchJob job = leadSearchJobService.runNow(
+                    userService.getCurrentUser(),
+                    toCrawlRequest(location, request)
             );
 
-            // Import to database (ADDED THIS)
-            ImportBusinessesService.ImportResult result =
-                    importBusinessesService.importBusinesses(crawledBusinesses);
-
-            //Increment usage counter(only after successful search)
-            stripeService.incrementUsage(username , StripeService.ActionType.SEARCH);
-            log.info("Incremented search count for user: {}" , username);
-
-
-            // Count businesses without website (ADDED THIS)
-            int noWebsite = (int) crawledBusinesses.stream()
-                    .filter(b -> "NO WEBSITE".equals(b.getWebsite()) || b.getWebsite() == null)
-                    .count();
+            if (job.getStatus() == LeadSearchJobService.JobStatus.FAILED) {
+                SearchResponse errorResponse = new SearchResponse();
+                errorResponse.setSuccess(false);
+                errorResponse.setMessage(job.getMessage());
+                errorResponse.setJobId(job.getJobId());
+                errorResponse.setImported(job.getImported().get());
+                return ResponseEntity.internalServerError().body(errorResponse);
+            }
 
             // Build response
             SearchResponse response = new SearchResponse();
             response.setSuccess(true);
-            response.setMessage("Search completed successfully");
+            response.setMessage(job.getMessage());
+            response.setJobId(job.getJobId());
             response.setLocation(location);
             response.setRadius(request.getRadius());
             response.setBusinessType(request.getBusinessType());
-            response.setTotalFound(crawledBusinesses.size());  // Changed from 0
-            response.setImported(result.getImported());  // Changed from 0
-            response.setBusinessesWithoutWebsite(noWebsite);  // Changed from 0
+            response.setTotalFound(job.getTotalFound());
+            response.setImported(job.getImported().get());
+            response.setUnchanged(job.getUnchanged().get());
+            response.setBusinessesWithoutWebsite(job.getBusinessesWithoutWebsite().get());
+            response.setFailedLookups(job.getDetailsFailed().get());
+            response.setTimings(job.getCrawlResult().getTimings());
+            response.setOutboundCalls(job.getCrawlResult().getOutboundCalls());
+            response.setBudgetExhausted(job.getCrawlResult().isBudgetExhausted());
 
             return ResponseEntity.ok(response);
 
@@ -101,6 +104,74 @@ public class LeadSearchController {
         }
     }
 
+    // Submit a search as a background job - returns the job id right away
+    @PostMapping("/search/jobs")
+    public ResponseEntity<LeadSearchJobService.JobProgress> submitSearchJob(@RequestBody SearchRequest request) {
+        String username = userService.getCurrentUsername();
+
+        if (!stripeService.canPerformAction(username, StripeService.ActionType.SEARCH)) {
+            log.warn("User {} reached search limit", username);
+            return ResponseEntity.status(403).build();
+        }
+        if (request.getCity() == null || request.getCity().trim().isEmpty()
+                || request.getState() == null || request.getState().trim().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String location = request.getCity().trim() + ", " + request.getState().trim();
+        LeadSearchJobService.LeadSearchJob job = leadSearchJobService.submit(
+                userService.getCurrentUser(),
+                toCrawlRequest(location, request)
+        );
+        log.info("Queued lead search job {} for user {}", job.getJobId(), username);
+        return ResponseEntity.accepted().body(job.toProgress());
+    }
+
+    // Continue an interrupted or budget-limited search from its last checkpoint, under the same job id
+    @PostMapping("/search/jobs/{jobId}/resume")
+    public ResponseEntity<LeadSearchJobService.JobProgress> resumeSearchJob(@PathVariable String jobId) {
+        String username = userService.getCurrentUsername();
+
+        if (!stripeService.canPerformAction(username, StripeService.ActionType.SEARCH)) {
+            log.warn("User {} reached search limit", username);
+            return ResponseEntity.status(403).build();
+        }
+
+        try {
+            return leadSearchJobService.resume(userService.getCurrentUser(), jobId)
+                    .map(job -> ResponseEntity.accepted().body(job.toProgress()))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalStateException e) {
+            log.warn("Cannot resume lead search job {}: {}", jobId, e.getMessage());
+            return ResponseEntity.status(409).build();
+        }
+    }
+
+    // Poll job progress
+    @GetMapping("/search/jobs/{jobId}")
+    public ResponseEntity<LeadSearchJobService.JobProgress> getSearchJob(@PathVariable String jobId) {
+        return leadSearchJobService.getJob(jobId, userService.getCurrentUsername())
+                .map(job -> ResponseEntity.ok(job.toProgress()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Stream job progress as server-sent events ("progress" events, then one "complete" event)
+    @GetMapping(value = "/search/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamSearchJob(@PathVariable String jobId) {
+        return leadSearchJobService.getJob(jobId, userService.getCurrentUsername())
+                .map(job -> ResponseEntity.ok(leadSearchJobService.subscribe(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    private GooglePlacesCrawlerService.CrawlRequest toCrawlRequest(String location, SearchRequest request) {
+        return new GooglePlacesCrawlerService.CrawlRequest(
+                location,
+                request.getRadius(),
+                request.getBusinessType(),
+                Boolean.TRUE.equals(request.getTiled())
+        );
+    }
+
     // Keep your existing DTOs
 
 
@@ -113,6 +184,7 @@ public class LeadSearchController {
         private String state;
         private Integer radius;
         private String businessType;
+        private Boolean tiled;  // split large areas into cells to get past the 60-result cap
     }
 
     // Response DTO
@@ -122,11 +194,17 @@ public class LeadSearchController {
     public static class SearchResponse {
         private boolean success;
         private String message;
+        private String jobId;  // resume with POST /search/jobs/{jobId}/resume if the search was cut short
         private String location;
         private Integer radius;
         private String businessType;
         private int totalFound;
         private int imported;
+        private int unchanged;  // re-crawled leads whose data had not changed
         private int businessesWithoutWebsite;
+        private int failedLookups;  // places whose details lookup failed during the crawl
+        private GooglePlacesCrawlerService.CrawlTimings timings;
+        private int outboundCalls;
+        private boolean budgetExhausted;
     }
 }
\ No newline at end of file
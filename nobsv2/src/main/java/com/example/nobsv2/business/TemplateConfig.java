@@ -0,0 +1,23 @@
+package com.example.nobsv2.business;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@Data
+public class TemplateConfig {
+
+    // Extra/override website templates (<name>.txt) read from disk, on top of the ones in the jar. Empty = none.
+    @Value("${templates.directory:}")
+    private String directory;
+
+    // Dev: re-read every template source on this interval and swap in whatever changed
+    @Value("${templates.hot-reload:false}")
+    private Boolean hotReload;
+
+    @Value("${templates.reload-interval:30s}")
+    private Duration reloadInterval;
+}
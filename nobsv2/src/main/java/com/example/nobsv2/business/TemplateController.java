@@ -0,0 +1,39 @@
+package com.example.nobsv2.business;
+
+import com.example.nobsv2.business.services.TemplateRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/templates")
+@RequiredArgsConstructor
+public class TemplateController {
+
+    private final TemplateRegistry templateRegistry;
+
+    // Loaded website templates with their size and content hash
+    @GetMapping
+    public ResponseEntity<List<TemplateInfo>> getTemplates() {
+        return ResponseEntity.ok(templateRegistry.all().stream().map(TemplateInfo::of).toList());
+    }
+
+    // Pick up new or edited templates without a restart
+    @PostMapping("/reload")
+    @PreAuthorize("hasAnyRole('SUPERUSER')")
+    public ResponseEntity<List<TemplateInfo>> reloadTemplates() {
+        templateRegistry.reload();
+        return getTemplates();
+    }
+
+    public record TemplateInfo(String name, String source, int length, String sha256, Set<String> placeholders) {
+        static TemplateInfo of(TemplateRegistry.LoadedTemplate template) {
+            return new TemplateInfo(template.getName(), template.getSource(), template.getLength(),
+                    template.getSha256(), template.getPlaceholders());
+        }
+    }
+}
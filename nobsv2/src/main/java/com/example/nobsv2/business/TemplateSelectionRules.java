@@ -0,0 +1,39 @@
+package com.example.nobsv2.business;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keyword table for picking a website template from a business's Google types:
+// templates.selection.rules.<template>.<keyword>=<weight>. Keywords are whole tokens of the types
+// ("beauty_salon" -> beauty, salon); a keyword of several words ("real-estate") matches them in a row.
+// On a tie the template listed first in `order` wins.
+@Configuration
+@ConfigurationProperties(prefix = "templates.selection")
+@Data
+public class TemplateSelectionRules {
+
+    private Map<String, Map<String, Integer>> rules = new LinkedHashMap<>();
+
+    private List<String> order = new ArrayList<>();
+
+    // Used when no keyword matches, or the matched template is not loaded
+    private String fallback = "professional";
+
+    // Rules in tie-break order: templates named in `order` first, then the rest
+    public Map<String, Map<String, Integer>> orderedRules() {
+        Map<String, Map<String, Integer>> ordered = new LinkedHashMap<>();
+        for (String template : order) {
+            if (rules.containsKey(template)) {
+                ordered.put(template, rules.get(template));
+            }
+        }
+        rules.forEach(ordered::putIfAbsent);
+        return ordered;
+    }
+}
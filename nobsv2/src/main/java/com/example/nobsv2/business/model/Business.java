@@ -14,6 +14,10 @@ import java.time.LocalDateTime;
 @Table(name = "businesses",
     uniqueConstraints = {
         @UniqueConstraint(columnNames = {"place_id" , "user_username"})
+    },
+    // keyset paging by most recently updated (paging by id uses the user_username foreign key index)
+    indexes = {
+        @Index(name = "idx_businesses_user_updated", columnList = "user_username, updated_at, id")
     }
 )
 @Data
@@ -47,6 +51,10 @@ public class Business {
 
     private String businessStatus;  // OPERATIONAL, CLOSED_TEMPORARILY, CLOSED_PERMANENTLY
 
+    @Column(length = 64)
+    @JsonIgnore
+    private String contentHash;  // SHA-256 of the crawler fields last imported - unchanged re-crawls skip the write
+
     // For tracking our outreach
     @Column(columnDefinition = "BOOLEAN DEFAULT FALSE")
     private Boolean contacted;
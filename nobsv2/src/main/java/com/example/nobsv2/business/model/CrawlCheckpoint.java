@@ -0,0 +1,69 @@
+package com.example.nobsv2.business.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/*
+ * Last saved state of a lead search crawl, so an interrupted search can be resumed by job id
+ */
+@Entity
+@Table(name = "crawl_checkpoints")
+@Data
+@NoArgsConstructor
+public class CrawlCheckpoint {
+
+    @Id
+    @Column(name = "job_id", length = 36)
+    private String jobId;
+
+    @Column(nullable = false)
+    private String username;
+
+    // The original search
+    private String location;
+    private Integer radius;
+    private String businessType;
+    private boolean tiled;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    @Column(columnDefinition = "LONGTEXT")
+    private String state;  // JSON: center, open cells with their next page token, processed place_ids
+
+    private Integer remainingCells;
+
+    private Integer processedPlaces;
+
+    // The search has been charged - a resumed search is not charged again
+    private boolean searchCharged;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public boolean isResumable() {
+        return status != Status.RUNNING && state != null && remainingCells != null && remainingCells > 0;
+    }
+
+    public enum Status {
+        RUNNING,      // A job is working on it right now
+        INTERRUPTED,  // The app stopped while the job was running
+        FAILED,       // The crawl threw - e.g. a quota error
+        INCOMPLETE    // The crawl stopped on its call budget with cells left
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.nobsv2.business.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/*
+ * A bulk generation submitted to the Claude Message Batches API. Results arrive within 24h,
+ * so the batch is tracked here and collected by a poller, across restarts.
+ */
+@Entity
+@Table(name = "generation_batches")
+@Data
+@NoArgsConstructor
+public class GenerationBatch {
+
+    @Id
+    @Column(name = "batch_id", length = 64)
+    private String batchId;  // Anthropic's msgbatch_... id
+
+    @Column(nullable = false)
+    private String username;
+
+    @Enumerated(EnumType.STRING)
+    private Kind kind;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private Integer requestCount;
+
+    private Integer succeeded;
+
+    private Integer errored;
+
+    @Column(columnDefinition = "LONGTEXT")
+    private String messages;  // MESSAGE batches: JSON {businessId: outreach message}
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum Kind {
+        WEBSITE,  // results saved on the businesses via markWebsiteGenerated
+        MESSAGE   // outreach messages, kept on the batch
+    }
+
+    public enum Status {
+        IN_PROGRESS,  // Claude is still processing it
+        COLLECTING,   // Results are being saved and charged - back to IN_PROGRESS if that fails
+        ENDED         // Everything collected
+    }
+}
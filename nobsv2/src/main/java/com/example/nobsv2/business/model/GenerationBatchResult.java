@@ -0,0 +1,46 @@
+package com.example.nobsv2.business.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/*
+ * One result of a generation batch that was saved and charged. A collection that fails halfway
+ * is retried on the next poll and skips these, so no result is charged twice.
+ */
+@Entity
+@Table(name = "generation_batch_results",
+        uniqueConstraints = @UniqueConstraint(name = "uk_batch_results_batch_custom",
+                columnNames = {"batch_id", "custom_id"}))
+@Data
+@NoArgsConstructor
+public class GenerationBatchResult {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "batch_id", length = 64, nullable = false)
+    private String batchId;
+
+    @Column(name = "custom_id", length = 64, nullable = false)
+    private String customId;  // the business id the request was for
+
+    @Column(columnDefinition = "TEXT")
+    private String message;  // MESSAGE batches: the outreach message
+
+    private LocalDateTime createdAt;
+
+    public GenerationBatchResult(String batchId, String customId, String message) {
+        this.batchId = batchId;
+        this.customId = customId;
+        this.message = message;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.nobsv2.business.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/*
+ * Persisted copy of Google Places lookups (geocode + details) so the crawler cache survives restarts
+ */
+@Entity
+@Table(name = "places_cache", indexes = {
+        @Index(name = "idx_places_cache_expires_at", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlacesCacheEntry {
+
+    @Id
+    @Column(name = "cache_key", length = 512)
+    private String cacheKey;  // "geocode:<location>" or "details:<place_id>"
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;  // JSON
+
+    @Column(nullable = false)
+    private LocalDateTime fetchedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;  // fetchedAt + the lookup's TTL
+}
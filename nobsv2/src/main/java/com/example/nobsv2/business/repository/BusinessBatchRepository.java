@@ -0,0 +1,135 @@
+package com.example.nobsv2.business.repository;
+
+import com.example.nobsv2.business.model.Business;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Plain JDBC batch writes for crawler imports. Business uses IDENTITY ids, so Hibernate
+// cannot batch its inserts - these statements go out as multi-row batches instead
+// (with rewriteBatchedStatements=true on the MySQL URL).
+@Repository
+@RequiredArgsConstructor
+public class BusinessBatchRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    // place_id is unique across all users. A row that collides (another user's place, or a concurrent
+    // import of the same place) is left untouched - "id = id" is a no-op - instead of failing the whole batch.
+    // A real upsert would be wrong here: it would rewrite the other user's row.
+    private static final String INSERT_SQL = """
+            INSERT INTO businesses
+                (name, address, phone, website, rating, total_ratings, place_id, types, business_status,
+                 content_hash, contacted, website_generated, lead_status, created_at, updated_at, user_username)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, FALSE, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE id = id
+            """;
+
+    private static final String UPDATE_SQL = """
+            UPDATE businesses SET
+                name = ?, address = ?, phone = ?, website = ?, rating = ?, total_ratings = ?,
+                types = COALESCE(?, types), business_status = ?, content_hash = ?, updated_at = ?
+            WHERE id = ?
+            """;
+
+    // Which of the given places hold a row this insert did not write. The update counts cannot tell - a
+    // rewritten multi-row batch only reports SUCCESS_NO_INFO - so the rows are read back instead. A locking read
+    // sees rows other transactions committed after this one's snapshot, which a plain SELECT would miss.
+    private static final String NOT_INSERTED_SQL = """
+            SELECT place_id FROM businesses
+            WHERE place_id IN (%s) AND NOT (user_username <=> ? AND created_at <=> ?)
+            LOCK IN SHARE MODE
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Returns the businesses that were not inserted because their place_id is already stored
+    public List<Business> insertAll(List<Business> businesses, String username) {
+        // created_at marks the rows written here, so it is cut to the column's microsecond precision
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        jdbcTemplate.batchUpdate(INSERT_SQL, businesses, BATCH_SIZE, (ps, b) -> {
+            ps.setString(1, b.getName());
+            ps.setString(2, b.getAddress());
+            ps.setString(3, b.getPhone());
+            ps.setString(4, b.getWebsite());
+            setNullableDouble(ps, 5, b.getRating());
+            setNullableInt(ps, 6, b.getTotalRatings());
+            ps.setString(7, b.getPlaceId());
+            ps.setString(8, b.getTypes());
+            ps.setString(9, b.getBusinessStatus());
+            ps.setString(10, b.getContentHash());
+            ps.setString(11, Business.LeadStatus.NEW.name());
+            ps.setTimestamp(12, now);
+            ps.setTimestamp(13, now);
+            ps.setString(14, username);
+        });
+
+        Set<String> notInserted = new HashSet<>();
+        for (int from = 0; from < businesses.size(); from += BATCH_SIZE) {
+            List<Business> chunk = businesses.subList(from, Math.min(from + BATCH_SIZE, businesses.size()));
+            List<Object> args = new ArrayList<>(chunk.size() + 2);
+            for (Business b : chunk) {
+                args.add(b.getPlaceId());
+            }
+            args.add(username);
+            args.add(now);
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            notInserted.addAll(jdbcTemplate.queryForList(
+                    NOT_INSERTED_SQL.formatted(placeholders), String.class, args.toArray()));
+        }
+
+        List<Business> conflicts = new ArrayList<>();
+        for (Business b : businesses) {
+            if (notInserted.contains(b.getPlaceId())) {
+                conflicts.add(b);
+            }
+        }
+        return conflicts;
+    }
+
+    // Expects ids to be set on the given businesses
+    public void updateAll(List<Business> businesses) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(UPDATE_SQL, businesses, BATCH_SIZE, (ps, b) -> {
+            ps.setString(1, b.getName());
+            ps.setString(2, b.getAddress());
+            ps.setString(3, b.getPhone());
+            ps.setString(4, b.getWebsite());
+            setNullableDouble(ps, 5, b.getRating());
+            setNullableInt(ps, 6, b.getTotalRatings());
+            ps.setString(7, b.getTypes());
+            ps.setString(8, b.getBusinessStatus());
+            ps.setString(9, b.getContentHash());
+            ps.setTimestamp(10, now);
+            ps.setInt(11, b.getId());
+        });
+    }
+
+    private static void setNullableDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+
+    private static void setNullableInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setInt(index, value);
+        }
+    }
+}
@@ -2,11 +2,14 @@ package com.example.nobsv2.business.repository;
 
 import com.example.nobsv2.business.model.Business;
 import com.example.nobsv2.business.model.Business.LeadStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -69,6 +72,19 @@ public interface BusinessRepository extends JpaRepository<Business, Integer> {
     // Find by place_id AND user
     Optional<Business> findByPlaceIdAndUserUsername(String placeId, String username);
 
+    // Stored businesses among the given place_ids, whoever owns them - one query per import batch.
+    // place_id is unique across all users, so a place another user imported cannot be inserted again.
+    @Query("SELECT b.id AS id, b.placeId AS placeId, b.contentHash AS contentHash, b.user.username AS username " +
+            "FROM Business b WHERE b.placeId IN :placeIds")
+    List<ExistingPlace> findExistingPlaces(@Param("placeIds") Collection<String> placeIds);
+
+    interface ExistingPlace {
+        Integer getId();
+        String getPlaceId();
+        String getContentHash();
+        String getUsername();
+    }
+
     @Query("SELECT b FROM Business b WHERE b.user.username = :username AND " +
             "(b.websiteGenerated = true OR b.generatedWebsiteCode IS NOT NULL)")
     List<Business> findByUserUsernameWithWebsiteGenerated(@Param("username") String username);
@@ -104,6 +120,137 @@ public interface BusinessRepository extends JpaRepository<Business, Integer> {
 
     long countByUserUsernameAndLeadStatus(String username, LeadStatus status);
 
+    // Paged listing: one query per view, `b.id > :afterId` makes it a keyset scroll (afterId 0 = from the start).
+    // Callers pass the limit and a stable sort (id, or updatedAt + id) in the Pageable; there is no count query.
+    // Rows are BusinessSummary projections, so a page never reads the generated website code.
+    @Query(SUMMARY + "WHERE b.user.username = :username AND b.id > :afterId")
+    List<BusinessSummary> findPageByUserUsername(@Param("username") String username, @Param("afterId") int afterId,
+                                                 Pageable pageable);
+
+    // Keyset on (updatedAt desc, id desc) - most recently touched leads first
+    @Query(SUMMARY + "WHERE b.user.username = :username AND " +
+            "(b.updatedAt < :updatedAt OR (b.updatedAt = :updatedAt AND b.id < :id))")
+    List<BusinessSummary> findPageByUserUsernameUpdatedBefore(@Param("username") String username,
+                                                              @Param("updatedAt") LocalDateTime updatedAt,
+                                                              @Param("id") int id,
+                                                              Pageable pageable);
+
+    @Query(SUMMARY + "WHERE b.user.username = :username AND b.id > :afterId AND " +
+            "(b.website = 'NO WEBSITE' OR b.website IS NULL OR b.website = '')")
+    List<BusinessSummary> findPageWithoutWebsite(@Param("username") String username, @Param("afterId") int afterId,
+                                                 Pageable pageable);
+
+    @Query(SUMMARY + "WHERE b.user.username = :username AND b.id > :afterId AND " +
+            "(b.websiteGenerated = true OR b.generatedWebsiteCode IS NOT NULL)")
+    List<BusinessSummary> findPageWithWebsiteGenerated(@Param("username") String username, @Param("afterId") int afterId,
+                                                       Pageable pageable);
+
+    @Query(SUMMARY + "WHERE b.user.username = :username AND b.id > :afterId AND " +
+            "b.contacted = false AND (b.website = 'NO WEBSITE' OR b.website IS NULL)")
+    List<BusinessSummary> findPageUncontacted(@Param("username") String username, @Param("afterId") int afterId,
+                                              Pageable pageable);
+
+    @Query(SUMMARY + "WHERE b.user.username = :username AND b.id > :afterId AND " +
+            "b.leadStatus = :status")
+    List<BusinessSummary> findPageByLeadStatus(@Param("username") String username, @Param("status") LeadStatus status,
+                                               @Param("afterId") int afterId, Pageable pageable);
+
+    @Query(SUMMARY + "WHERE b.user.username = :username AND b.id > :afterId AND " +
+            "b.types LIKE %:type%")
+    List<BusinessSummary> findPageByType(@Param("username") String username, @Param("type") String type,
+                                         @Param("afterId") int afterId, Pageable pageable);
+
+    @Query(SUMMARY + "WHERE b.user.username = :username AND b.id > :afterId AND " +
+            "(b.name LIKE %:keyword% OR b.address LIKE %:keyword% OR b.types LIKE %:keyword%)")
+    List<BusinessSummary> findPageByKeyword(@Param("username") String username, @Param("keyword") String keyword,
+                                            @Param("afterId") int afterId, Pageable pageable);
+
+    // Every column a listing shows - all but the generated website code (TEXT) and the JSON-ignored ones
+    String SUMMARY = "SELECT b.id AS id, b.name AS name, b.address AS address, b.phone AS phone, " +
+            "b.website AS website, b.rating AS rating, b.totalRatings AS totalRatings, b.placeId AS placeId, " +
+            "b.types AS types, b.businessStatus AS businessStatus, b.contacted AS contacted, " +
+            "b.websiteGenerated AS websiteGenerated, b.generatedWebsiteUrl AS generatedWebsiteUrl, " +
+            "b.notes AS notes, b.leadStatus AS leadStatus, b.createdAt AS createdAt, b.updatedAt AS updatedAt " +
+            "FROM Business b ";
+
+    interface BusinessSummary {
+        Integer getId();
+        String getName();
+        String getAddress();
+        String getPhone();
+        String getWebsite();
+        Double getRating();
+        Integer getTotalRatings();
+        String getPlaceId();
+        String getTypes();
+        String getBusinessStatus();
+        Boolean getContacted();
+        Boolean getWebsiteGenerated();
+        String getGeneratedWebsiteUrl();
+        String getNotes();
+        LeadStatus getLeadStatus();
+        LocalDateTime getCreatedAt();
+        LocalDateTime getUpdatedAt();
+    }
+
+    // Totals for the paged views, asked for separately so paging never counts
+    @Query("SELECT COUNT(b) FROM Business b WHERE b.user.username = :username AND " +
+            "(b.website = 'NO WEBSITE' OR b.website IS NULL OR b.website = '')")
+    long countWithoutWebsite(@Param("username") String username);
+
+    @Query("SELECT COUNT(b) FROM Business b WHERE b.user.username = :username AND " +
+            "(b.websiteGenerated = true OR b.generatedWebsiteCode IS NOT NULL)")
+    long countWithWebsiteGenerated(@Param("username") String username);
+
+    @Query("SELECT COUNT(b) FROM Business b WHERE b.user.username = :username AND " +
+            "b.contacted = false AND (b.website = 'NO WEBSITE' OR b.website IS NULL)")
+    long countUncontacted(@Param("username") String username);
+
+    @Query("SELECT COUNT(b) FROM Business b WHERE b.user.username = :username AND b.types LIKE %:type%")
+    long countByType(@Param("username") String username, @Param("type") String type);
+
+    @Query("SELECT COUNT(b) FROM Business b WHERE b.user.username = :username AND " +
+            "(b.name LIKE %:keyword% OR b.address LIKE %:keyword% OR b.types LIKE %:keyword%)")
+    long countByKeyword(@Param("username") String username, @Param("keyword") String keyword);
+
+    // Bulk website generation works from ids so the generated code columns are never loaded
+    @Query("SELECT b.id FROM Business b WHERE b.user.username = :username AND " +
+            "(b.website = 'NO WEBSITE' OR b.website IS NULL OR b.website = '') AND " +
+            "(b.websiteGenerated IS NULL OR b.websiteGenerated = false) ORDER BY b.id")
+    List<Integer> findIdsWithoutGeneratedWebsite(@Param("username") String username);
+
+    @Query("SELECT b.id FROM Business b WHERE b.user.username = :username AND b.contacted = false AND " +
+            "(b.website = 'NO WEBSITE' OR b.website IS NULL OR b.website = '') AND " +
+            "(b.websiteGenerated IS NULL OR b.websiteGenerated = false) ORDER BY b.id")
+    List<Integer> findUncontactedIdsWithoutGeneratedWebsite(@Param("username") String username);
+
+    // Bulk outreach: uncontacted leads without a website of their own, optionally only those we built one for
+    @Query("SELECT b.id FROM Business b WHERE b.user.username = :username AND b.contacted = false AND " +
+            "(b.website = 'NO WEBSITE' OR b.website IS NULL OR b.website = '') ORDER BY b.id")
+    List<Integer> findUncontactedIdsWithoutWebsite(@Param("username") String username);
+
+    @Query("SELECT b.id FROM Business b WHERE b.user.username = :username AND b.contacted = false AND " +
+            "(b.website = 'NO WEBSITE' OR b.website IS NULL OR b.website = '') AND " +
+            "b.websiteGenerated = true ORDER BY b.id")
+    List<Integer> findUncontactedIdsWithGeneratedWebsite(@Param("username") String username);
+
+    // Just the fields the outreach prompt needs - never the generated code
+    @Query("SELECT b.id AS id, b.name AS name, b.types AS types, b.address AS address FROM Business b " +
+            "WHERE b.id IN :ids ORDER BY b.id")
+    List<OutreachLead> findOutreachLeadsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    interface OutreachLead {
+        Integer getId();
+        String getName();
+        String getTypes();
+        String getAddress();
+    }
+
+    // Which of the given ids belong to the user
+    @Query("SELECT b.id FROM Business b WHERE b.user.username = :username AND b.id IN :ids")
+    List<Integer> findIdsByUserUsernameAndIdIn(@Param("username") String username,
+                                               @Param("ids") Collection<Integer> ids);
+
 
 
 
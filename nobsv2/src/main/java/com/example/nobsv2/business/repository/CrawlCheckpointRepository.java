@@ -0,0 +1,28 @@
+package com.example.nobsv2.business.repository;
+
+import com.example.nobsv2.business.model.CrawlCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface CrawlCheckpointRepository extends JpaRepository<CrawlCheckpoint, String> {
+
+    Optional<CrawlCheckpoint> findByJobIdAndUsername(String jobId, String username);
+
+    // Jobs that were running when the app stopped
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlCheckpoint c SET c.status = :to WHERE c.status = :from")
+    int updateStatus(@Param("from") CrawlCheckpoint.Status from, @Param("to") CrawlCheckpoint.Status to);
+
+    @Modifying
+    @Transactional
+    int deleteByUpdatedAtBefore(LocalDateTime cutoff);
+}
@@ -0,0 +1,33 @@
+package com.example.nobsv2.business.repository;
+
+import com.example.nobsv2.business.model.GenerationBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface GenerationBatchRepository extends JpaRepository<GenerationBatch, String> {
+
+    Optional<GenerationBatch> findByBatchIdAndUsername(String batchId, String username);
+
+    List<GenerationBatch> findByStatus(GenerationBatch.Status status);
+
+    // Requests of the user's batches in the given states - unfinished ones are already promised out of the plan's quota
+    @Query("SELECT COALESCE(SUM(b.requestCount), 0) FROM GenerationBatch b " +
+            "WHERE b.username = :username AND b.kind = :kind AND b.status IN :statuses")
+    long sumRequestCount(@Param("username") String username,
+                         @Param("kind") GenerationBatch.Kind kind,
+                         @Param("statuses") Collection<GenerationBatch.Status> statuses);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE GenerationBatch b SET b.status = :to WHERE b.status = :from")
+    int updateStatus(@Param("from") GenerationBatch.Status from, @Param("to") GenerationBatch.Status to);
+}
@@ -0,0 +1,13 @@
+package com.example.nobsv2.business.repository;
+
+import com.example.nobsv2.business.model.GenerationBatchResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface GenerationBatchResultRepository extends JpaRepository<GenerationBatchResult, Long> {
+
+    List<GenerationBatchResult> findByBatchIdOrderById(String batchId);
+}
@@ -0,0 +1,21 @@
+package com.example.nobsv2.business.repository;
+
+import com.example.nobsv2.business.model.PlacesCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface PlacesCacheEntryRepository extends JpaRepository<PlacesCacheEntry, String> {
+
+    // Deletes up to `limit` expired rows, so a large purge never holds locks on the whole table
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM places_cache WHERE expires_at < :now LIMIT :limit", nativeQuery = true)
+    int deleteExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
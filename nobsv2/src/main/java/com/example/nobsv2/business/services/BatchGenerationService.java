@@ -0,0 +1,270 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.ai.dto.ClaudeDTO;
+import com.example.nobsv2.ai.service.ClaudeApiService;
+import com.example.nobsv2.business.model.Business;
+import com.example.nobsv2.business.model.GenerationBatch;
+import com.example.nobsv2.business.model.GenerationBatchResult;
+import com.example.nobsv2.business.repository.BusinessRepository;
+import com.example.nobsv2.business.repository.GenerationBatchRepository;
+import com.example.nobsv2.business.repository.GenerationBatchResultRepository;
+import com.example.nobsv2.security.CustomUser;
+import com.example.nobsv2.security.CustomUserRepository;
+import com.example.nobsv2.stripe.StripeService;
+import com.example.nobsv2.stripe.SubscriptionPlan;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Offline bulk generation through the Message Batches API: half the cost of interactive calls and
+// no contention with interactive users, in exchange for results that can take up to 24h.
+// Batches are tracked in generation_batches; a poller collects ended ones, saves websites through
+// markWebsiteGenerated (outreach messages on the batch itself) and charges usage once per successful result.
+@Service
+@Slf4j
+public class BatchGenerationService {
+
+    private static final List<GenerationBatch.Status> UNFINISHED =
+            List.of(GenerationBatch.Status.IN_PROGRESS, GenerationBatch.Status.COLLECTING);
+
+    private final ClaudeApiService claudeApiService;
+    private final ClaudeConfig claudeConfig;
+    private final BusinessRepository businessRepository;
+    private final GenerationBatchRepository batchRepository;
+    private final GenerationBatchResultRepository resultRepository;
+    private final WebsiteGenerationService websiteGenerationService;
+    private final MessageGenerationService messageGenerationService;
+    private final StripeService stripeService;
+    private final CustomUserRepository userRepository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Per user and kind: requests of batches being uploaded right now, not saved yet
+    private final Map<QuotaKey, Integer> submitting = new ConcurrentHashMap<>();
+    private final Map<QuotaKey, Object> quotaLocks = new ConcurrentHashMap<>();
+
+    public BatchGenerationService(ClaudeApiService claudeApiService,
+                                  ClaudeConfig claudeConfig,
+                                  BusinessRepository businessRepository,
+                                  GenerationBatchRepository batchRepository,
+                                  GenerationBatchResultRepository resultRepository,
+                                  WebsiteGenerationService websiteGenerationService,
+                                  MessageGenerationService messageGenerationService,
+                                  StripeService stripeService,
+                                  CustomUserRepository userRepository) {
+        this.claudeApiService = claudeApiService;
+        this.claudeConfig = claudeConfig;
+        this.businessRepository = businessRepository;
+        this.batchRepository = batchRepository;
+        this.resultRepository = resultRepository;
+        this.websiteGenerationService = websiteGenerationService;
+        this.messageGenerationService = messageGenerationService;
+        this.stripeService = stripeService;
+        this.userRepository = userRepository;
+    }
+
+    // Submits one batch for the user's businesses among `businessIds`, capped at claude.batch.max-requests
+    // and at what the plan has left after the user's other unfinished batches.
+    // Throws IllegalArgumentException when nothing is left to submit.
+    public GenerationBatch submit(String username, GenerationBatch.Kind kind, List<Integer> businessIds) {
+        List<Integer> ids = businessIds.isEmpty()
+                ? List.of()
+                : new ArrayList<>(new LinkedHashSet<>(
+                        businessRepository.findIdsByUserUsernameAndIdIn(username, new LinkedHashSet<>(businessIds))));
+        QuotaKey key = new QuotaKey(username, kind);
+        int allowed = reserve(key, Math.min(ids.size(), claudeConfig.getBatchMaxRequests()));
+        if (allowed <= 0) {
+            throw new IllegalArgumentException("No businesses to generate for within the plan's remaining quota");
+        }
+
+        // The upload happens outside the lock - the reservation keeps other submits off this quota meanwhile
+        try {
+            List<ClaudeApiService.BatchPrompt> prompts = new ArrayList<>(allowed);
+            for (Business business : businessRepository.findAllById(ids.subList(0, allowed))) {
+                prompts.add(kind == GenerationBatch.Kind.WEBSITE
+                        ? websiteGenerationService.buildGenerationPrompt(business)
+                        : messageGenerationService.buildBatchPrompt(business));
+            }
+
+            ClaudeDTO.Batch remote = claudeApiService.submitBatch(prompts);
+            GenerationBatch batch = new GenerationBatch();
+            batch.setBatchId(remote.getId());
+            batch.setUsername(username);
+            batch.setKind(kind);
+            batch.setStatus(GenerationBatch.Status.IN_PROGRESS);
+            batch.setRequestCount(prompts.size());
+            log.info("Submitted {} batch {} for user {} with {} requests ({} requested)",
+                    kind, remote.getId(), username, prompts.size(), ids.size());
+            return batchRepository.save(batch);
+        } finally {
+            // Released whether or not the upload worked - a saved batch holds its quota as IN_PROGRESS from here on
+            submitting.computeIfPresent(key, (k, held) -> held > allowed ? held - allowed : null);
+        }
+    }
+
+    // Takes up to `wanted` requests out of the remaining quota. Serialized per user and kind, so two submits
+    // cannot both spend the same quota; submits for other users do not wait.
+    private int reserve(QuotaKey key, int wanted) {
+        synchronized (quotaLocks.computeIfAbsent(key, k -> new Object())) {
+            // Read before the stored batches: a submit that finishes in between is then counted twice, not missed
+            int held = submitting.getOrDefault(key, 0);
+            int allowed = Math.max(0, Math.min(wanted, remainingQuota(key.username(), key.kind()) - held));
+            if (allowed > 0) {
+                submitting.merge(key, allowed, Integer::sum);
+            }
+            return allowed;
+        }
+    }
+
+    public Optional<GenerationBatch> getBatch(String batchId, String username) {
+        return batchRepository.findByBatchIdAndUsername(batchId, username);
+    }
+
+    public BatchStatus toStatus(GenerationBatch batch) {
+        Map<Integer, String> messages = null;
+        if (batch.getMessages() != null) {
+            try {
+                messages = objectMapper.readValue(batch.getMessages(), new TypeReference<>() {});
+            } catch (Exception e) {
+                log.warn("Unreadable messages on batch {}: {}", batch.getBatchId(), e.getMessage());
+            }
+        }
+        return new BatchStatus(batch.getBatchId(), batch.getKind(), batch.getStatus(), batch.getRequestCount(),
+                batch.getSucceeded(), batch.getErrored(), batch.getCreatedAt(), batch.getUpdatedAt(), messages);
+    }
+
+    @Scheduled(fixedDelayString = "${claude.batch.poll-interval:1m}")
+    public void pollBatches() {
+        for (GenerationBatch batch : batchRepository.findByStatus(GenerationBatch.Status.IN_PROGRESS)) {
+            try {
+                ClaudeDTO.Batch remote = claudeApiService.getBatch(batch.getBatchId());
+                if (remote != null && remote.isEnded()) {
+                    collect(batch, remote);
+                }
+            } catch (Exception e) {
+                // Tried again on the next poll
+                log.warn("Could not poll batch {}: {}", batch.getBatchId(), e.getMessage());
+            }
+        }
+    }
+
+    // A collection the last shutdown cut short is picked up again by the poller; results it already
+    // saved and charged are recorded in generation_batch_results and skipped
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedCollections() {
+        int interrupted = batchRepository.updateStatus(GenerationBatch.Status.COLLECTING, GenerationBatch.Status.IN_PROGRESS);
+        if (interrupted > 0) {
+            log.warn("Resuming {} generation batches - collection was interrupted", interrupted);
+        }
+    }
+
+    // Safe to run again after a failure: each saved result is recorded before it is charged,
+    // and recorded results are not saved or charged again
+    private void collect(GenerationBatch batch, ClaudeDTO.Batch remote) {
+        batch.setStatus(GenerationBatch.Status.COLLECTING);
+        GenerationBatch collecting = batchRepository.save(batch);
+
+        Set<String> collected = new HashSet<>();
+        for (GenerationBatchResult result : resultRepository.findByBatchIdOrderById(batch.getBatchId())) {
+            collected.add(result.getCustomId());
+        }
+        StripeService.ActionType action = actionFor(batch.getKind());
+        AtomicInteger errored = new AtomicInteger();
+
+        try {
+            claudeApiService.readBatchResults(remote, output -> {
+                if (collected.contains(output.customId())) {
+                    return;
+                }
+                if (!output.isSuccess()) {
+                    log.warn("Batch {} request {} failed: {}", batch.getBatchId(), output.customId(), output.error());
+                    errored.incrementAndGet();
+                    return;
+                }
+                try {
+                    Integer businessId = Integer.valueOf(output.customId());
+                    String message = null;
+                    if (batch.getKind() == GenerationBatch.Kind.WEBSITE) {
+                        websiteGenerationService.saveGeneratedWebsite(businessId, output.text());
+                    } else {
+                        message = output.text().trim();
+                    }
+                    resultRepository.save(new GenerationBatchResult(batch.getBatchId(), output.customId(), message));
+                    collected.add(output.customId());
+                    stripeService.incrementUsage(batch.getUsername(), action);
+                } catch (Exception e) {
+                    log.warn("Could not save batch {} result {}: {}", batch.getBatchId(), output.customId(), e.getMessage());
+                    errored.incrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            // Results download failed - back to IN_PROGRESS so the next poll retries it
+            collecting.setStatus(GenerationBatch.Status.IN_PROGRESS);
+            batchRepository.save(collecting);
+            throw e;
+        }
+
+        List<GenerationBatchResult> results = resultRepository.findByBatchIdOrderById(batch.getBatchId());
+        collecting.setSucceeded(results.size());
+        collecting.setErrored(errored.get());
+        if (batch.getKind() == GenerationBatch.Kind.MESSAGE) {
+            Map<Integer, String> messages = new LinkedHashMap<>();
+            for (GenerationBatchResult result : results) {
+                messages.put(Integer.valueOf(result.getCustomId()), result.getMessage());
+            }
+            try {
+                collecting.setMessages(objectMapper.writeValueAsString(messages));
+            } catch (Exception e) {
+                log.error("Could not store messages for batch {}: {}", batch.getBatchId(), e.getMessage());
+            }
+        }
+        collecting.setStatus(GenerationBatch.Status.ENDED);
+        batchRepository.save(collecting);
+        log.info("Collected {} batch {}: {} succeeded, {} errored",
+                batch.getKind(), batch.getBatchId(), results.size(), errored.get());
+    }
+
+    // Plan limit minus what was used and what unfinished batches already hold. A batch being collected still
+    // holds all its requests until it ends - results it charged meanwhile briefly count twice, never zero times.
+    private int remainingQuota(String username, GenerationBatch.Kind kind) {
+        CustomUser user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        SubscriptionPlan plan = user.getSubscriptionPlan();
+        boolean unlimited = kind == GenerationBatch.Kind.WEBSITE ? plan.hasUnlimitedWebsites() : plan.hasUnlimitedMessages();
+        if (unlimited) {
+            return Integer.MAX_VALUE;
+        }
+        int limit = kind == GenerationBatch.Kind.WEBSITE ? plan.getMonthlyWebsiteGenerations() : plan.getMonthlyMessages();
+        int used = kind == GenerationBatch.Kind.WEBSITE ? user.getWebsitesGenerated() : user.getMessagesGenerated();
+        long pending = batchRepository.sumRequestCount(username, kind, UNFINISHED);
+        return (int) Math.max(0, limit - used - pending);
+    }
+
+    private static StripeService.ActionType actionFor(GenerationBatch.Kind kind) {
+        return kind == GenerationBatch.Kind.WEBSITE
+                ? StripeService.ActionType.GENERATE_WEBSITE
+                : StripeService.ActionType.GENERATE_MESSAGE;
+    }
+
+    private record QuotaKey(String username, GenerationBatch.Kind kind) {}
+
+    // Batch as sent to clients; messages only for MESSAGE batches that have ended
+    public record BatchStatus(String batchId, GenerationBatch.Kind kind, GenerationBatch.Status status,
+                              Integer requestCount, Integer succeeded, Integer errored,
+                              LocalDateTime createdAt, LocalDateTime updatedAt, Map<Integer, String> messages) {}
+}
@@ -0,0 +1,254 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.business.repository.BusinessRepository;
+import com.example.nobsv2.security.CustomUser;
+import com.example.nobsv2.security.CustomUserRepository;
+import com.example.nobsv2.stripe.SubscriptionPlan;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Writes outreach messages for many leads and streams each one to the client as soon as it is done,
+// one NDJSON line or CSV row per lead, in completion order. Rows are never collected: finished messages
+// wait in a small queue for the writer, so a slow client holds back the workers instead of filling memory.
+// Messages go through MessageGenerationService, so cached leads are free and each new message is charged on success.
+// Leads past the plan's remaining messages are reserved like bulk website jobs and listed as skipped at the end.
+@Service
+@Slf4j
+public class BulkOutreachService {
+
+    private static final String CSV_HEADER = "business_id,business_name,address,status,message,error";
+
+    private final MessageGenerationService messageGenerationService;
+    private final BusinessRepository businessRepository;
+    private final CustomUserRepository userRepository;
+    private final ClaudeConfig claudeConfig;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService outreachExecutor;
+    // Per user: messages queued or running in bulk exports, not yet charged. Guarded by `this`.
+    private final Map<String, Integer> reserved = new HashMap<>();
+
+    public BulkOutreachService(MessageGenerationService messageGenerationService,
+                               BusinessRepository businessRepository,
+                               CustomUserRepository userRepository,
+                               ClaudeConfig claudeConfig) {
+        this.messageGenerationService = messageGenerationService;
+        this.businessRepository = businessRepository;
+        this.userRepository = userRepository;
+        this.claudeConfig = claudeConfig;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.outreachExecutor = Executors.newFixedThreadPool(claudeConfig.getBulkPoolSize(), r -> {
+            Thread t = new Thread(r, "bulk-outreach-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        outreachExecutor.shutdownNow();
+    }
+
+    public List<Integer> findBusinessIds(String username, Filter filter) {
+        return switch (filter) {
+            case UNCONTACTED -> businessRepository.findUncontactedIdsWithoutWebsite(username);
+            case UNCONTACTED_WITH_GENERATED_WEBSITE -> businessRepository.findUncontactedIdsWithGeneratedWebsite(username);
+        };
+    }
+
+    // Generates messages for the user's businesses among `businessIds` (capped at claude.bulk.max-sites-per-job)
+    // and writes them to `out` as they finish. Returns when every lead has a row; stops early if the client goes away.
+    // Throws (so the response fails instead of ending short) if rows stop arriving before claude.bulk.sse-timeout,
+    // the same limit as the async request, or if the export is interrupted.
+    public void stream(String username, List<Integer> businessIds, Format format, OutputStream out) throws IOException {
+        List<Integer> owned = businessIds.isEmpty()
+                ? List.of()
+                : businessRepository.findIdsByUserUsernameAndIdIn(username, new LinkedHashSet<>(businessIds));
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(owned));
+        if (ids.size() > claudeConfig.getBulkMaxSitesPerJob()) {
+            ids = ids.subList(0, claudeConfig.getBulkMaxSitesPerJob());
+        }
+
+        int allowed = reserve(username, ids.size());
+        List<BusinessRepository.OutreachLead> leads = allowed == 0
+                ? List.of()
+                : businessRepository.findOutreachLeadsByIdIn(ids.subList(0, allowed));
+        releaseAll(username, allowed - leads.size());  // deleted since the ids were read
+        log.info("Streaming {} outreach messages for user {} as {}, {} over quota",
+                leads.size(), username, format, ids.size() - allowed);
+
+        int concurrency = claudeConfig.getBulkConcurrencyPerJob();
+        BlockingQueue<OutreachRow> finished = new ArrayBlockingQueue<>(Math.max(1, concurrency * 2));
+        Export export = new Export(username, finished);
+        Executor limited = new ConcurrencyLimitedExecutor(outreachExecutor, concurrency);
+        long deadline = System.nanoTime() + claudeConfig.getBulkSseTimeout().toNanos();
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        int submitted = 0;
+        try {
+            for (BusinessRepository.OutreachLead lead : leads) {
+                limited.execute(() -> generate(export, lead));
+                submitted++;
+            }
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+                writer.flush();
+            }
+            for (int written = 0; written < leads.size(); written++) {
+                OutreachRow row = finished.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (row == null) {
+                    throw new IOException("Outreach export timed out with " + (leads.size() - written) + " messages missing");
+                }
+                writeRow(writer, format, row);
+            }
+            for (Integer skippedId : ids.subList(allowed, ids.size())) {
+                writeRow(writer, format, new OutreachRow(skippedId, null, null, RowStatus.SKIPPED, null,
+                        "Message generation limit reached"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            export.cancelled = true;
+            throw new IOException("Outreach export interrupted", e);
+        } catch (IOException | RuntimeException e) {
+            // Client went away, a task was rejected or rows stopped coming - leads that haven't started
+            // are dropped and nothing more is charged
+            export.cancelled = true;
+            throw e;
+        } finally {
+            releaseAll(username, leads.size() - submitted);  // never handed to a worker
+        }
+    }
+
+    private void generate(Export export, BusinessRepository.OutreachLead lead) {
+        OutreachRow row;
+        try {
+            if (export.cancelled) {
+                return;
+            }
+            String message = messageGenerationService.generateOutreachMessage(
+                    export.username, lead.getName(), lead.getTypes(), lead.getAddress(), false);
+            row = new OutreachRow(lead.getId(), lead.getName(), lead.getAddress(), RowStatus.GENERATED, message, null);
+        } catch (Exception e) {
+            row = new OutreachRow(lead.getId(), lead.getName(), lead.getAddress(), RowStatus.FAILED, null, e.getMessage());
+        } finally {
+            releaseAll(export.username, 1);
+        }
+
+        try {
+            while (!export.cancelled && !export.finished.offer(row, 1, TimeUnit.SECONDS)) {
+                // writer is behind - wait for the client
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // One line per lead, flushed right away so the client sees it
+    private void writeRow(Writer writer, Format format, OutreachRow row) throws IOException {
+        if (format == Format.NDJSON) {
+            writer.write(objectMapper.writeValueAsString(row));
+        } else {
+            writer.write(csv(row.businessId() == null ? null : row.businessId().toString()));
+            writer.write(',');
+            writer.write(csv(row.businessName()));
+            writer.write(',');
+            writer.write(csv(row.address()));
+            writer.write(',');
+            writer.write(csv(row.status().name().toLowerCase(Locale.ROOT)));
+            writer.write(',');
+            writer.write(csv(row.message()));
+            writer.write(',');
+            writer.write(csv(row.error()));
+        }
+        writer.write('\n');
+        writer.flush();
+    }
+
+    // RFC 4180 quoting; values a spreadsheet would run as a formula get a leading quote
+    private static String csv(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        if ("=+-@".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        return quote ? '"' + value.replace("\"", "\"\"") + '"' : value;
+    }
+
+    // Takes up to `wanted` messages out of what the plan has left after other running exports' reservations
+    private synchronized int reserve(String username, int wanted) {
+        CustomUser user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        SubscriptionPlan plan = user.getSubscriptionPlan();
+        int held = reserved.getOrDefault(username, 0);
+
+        int allowed = plan.hasUnlimitedMessages()
+                ? wanted
+                : Math.max(0, Math.min(wanted, plan.getMonthlyMessages() - user.getMessagesGenerated() - held));
+        if (allowed > 0) {
+            reserved.put(username, held + allowed);
+        }
+        return allowed;
+    }
+
+    private synchronized void releaseAll(String username, int count) {
+        if (count > 0) {
+            reserved.computeIfPresent(username, (u, held) -> held > count ? held - count : null);
+        }
+    }
+
+    public enum Filter {
+        UNCONTACTED, UNCONTACTED_WITH_GENERATED_WEBSITE
+    }
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    public enum RowStatus {
+        GENERATED, FAILED, SKIPPED
+    }
+
+    public record OutreachRow(Integer businessId, String businessName, String address,
+                              RowStatus status, String message, String error) {}
+
+    // State shared by one export's workers and its writer
+    private static final class Export {
+        private final String username;
+        private final BlockingQueue<OutreachRow> finished;
+        private volatile boolean cancelled;
+
+        private Export(String username, BlockingQueue<OutreachRow> finished) {
+            this.username = username;
+            this.finished = finished;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.business.repository.BusinessRepository;
+import com.example.nobsv2.security.CustomUser;
+import com.example.nobsv2.security.CustomUserRepository;
+import com.example.nobsv2.stripe.SubscriptionPlan;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Generates websites for many leads in one background job. Each site goes through
+// WebsiteGenerationService, so it is saved as soon as it is done and charged only if it succeeded.
+// A job never takes on more sites than the user's plan has left: sites already promised to the
+// user's other running jobs are reserved, so two jobs cannot both spend the same remaining quota.
+@Service
+@Slf4j
+public class BulkWebsiteGenerationService {
+
+    private final WebsiteGenerationService websiteGenerationService;
+    private final BusinessRepository businessRepository;
+    private final CustomUserRepository userRepository;
+    private final ClaudeConfig claudeConfig;
+    private final ExecutorService bulkExecutor;
+    private final Map<String, BulkJob> jobs = new ConcurrentHashMap<>();
+    // Per user: sites queued or running in bulk jobs, not yet charged. Guarded by `this`.
+    private final Map<String, Integer> reserved = new HashMap<>();
+
+    public BulkWebsiteGenerationService(WebsiteGenerationService websiteGenerationService,
+                                        BusinessRepository businessRepository,
+                                        CustomUserRepository userRepository,
+                                        ClaudeConfig claudeConfig) {
+        this.websiteGenerationService = websiteGenerationService;
+        this.businessRepository = businessRepository;
+        this.userRepository = userRepository;
+        this.claudeConfig = claudeConfig;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.bulkExecutor = Executors.newFixedThreadPool(claudeConfig.getBulkPoolSize(), r -> {
+            Thread t = new Thread(r, "bulk-website-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkExecutor.shutdownNow();
+    }
+
+    // Leads picked by a filter instead of an explicit id list
+    public List<Integer> findBusinessIds(String username, Filter filter) {
+        return switch (filter) {
+            case WITHOUT_WEBSITE -> businessRepository.findIdsWithoutGeneratedWebsite(username);
+            case UNCONTACTED -> businessRepository.findUncontactedIdsWithoutGeneratedWebsite(username);
+        };
+    }
+
+    // Queues generation for the user's businesses among `businessIds` and returns immediately.
+    // Ids that are not the user's are dropped; ids past the plan's remaining quota are counted as skipped.
+    public BulkJob submit(String username, List<Integer> businessIds) {
+        List<Integer> owned = businessIds.isEmpty()
+                ? List.of()
+                : businessRepository.findIdsByUserUsernameAndIdIn(username, new LinkedHashSet<>(businessIds));
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(owned));
+        if (ids.size() > claudeConfig.getBulkMaxSitesPerJob()) {
+            ids = ids.subList(0, claudeConfig.getBulkMaxSitesPerJob());
+        }
+
+        int allowed = reserve(username, ids.size());
+        BulkJob job = new BulkJob(UUID.randomUUID().toString(), username,
+                ids.subList(0, allowed), ids.size() - allowed);
+        jobs.put(job.getJobId(), job);
+        log.info("Queued bulk website job {} for user {}: {} sites, {} over quota",
+                job.getJobId(), username, allowed, job.getSkippedOverQuota());
+
+        start(job);
+        return job;
+    }
+
+    public Optional<BulkJob> getJob(String jobId, String username) {
+        return Optional.ofNullable(jobs.get(jobId))
+                .filter(job -> job.getUsername().equals(username));
+    }
+
+    public SseEmitter subscribe(BulkJob job) {
+        SseEmitter emitter = new SseEmitter(claudeConfig.getBulkSseTimeout().toMillis());
+        job.getEmitters().add(emitter);
+        emitter.onCompletion(() -> job.getEmitters().remove(emitter));
+        emitter.onTimeout(() -> job.getEmitters().remove(emitter));
+        emitter.onError(e -> job.getEmitters().remove(emitter));
+
+        // Send the current state right away; finished jobs close the stream immediately
+        if (!sendTo(emitter, job) || job.isFinished()) {
+            job.getEmitters().remove(emitter);
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelay = 300_000)
+    public void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(claudeConfig.getBulkRetention());
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    // Takes up to `wanted` sites out of what the plan has left after other running jobs' reservations
+    private synchronized int reserve(String username, int wanted) {
+        CustomUser user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        SubscriptionPlan plan = user.getSubscriptionPlan();
+        int held = reserved.getOrDefault(username, 0);
+
+        int allowed = plan.hasUnlimitedWebsites()
+                ? wanted
+                : Math.max(0, Math.min(wanted, plan.getMonthlyWebsiteGenerations() - user.getWebsitesGenerated() - held));
+        if (allowed > 0) {
+            reserved.put(username, held + allowed);
+        }
+        return allowed;
+    }
+
+    private synchronized void release(String username) {
+        reserved.computeIfPresent(username, (u, held) -> held > 1 ? held - 1 : null);
+    }
+
+    private void start(BulkJob job) {
+        if (job.getBusinessIds().isEmpty()) {
+            finish(job);
+            return;
+        }
+        job.setStatus(JobStatus.RUNNING);
+        publish(job);
+
+        Executor limited = new ConcurrencyLimitedExecutor(bulkExecutor, claudeConfig.getBulkConcurrencyPerJob());
+        for (Integer businessId : job.getBusinessIds()) {
+            limited.execute(() -> generate(job, businessId));
+        }
+    }
+
+    private void generate(BulkJob job, Integer businessId) {
+        WebsiteGenerationService.WebsiteGenerationResult result;
+        try {
+            result = websiteGenerationService.generateWebsite(businessId, job.getUsername());
+        } catch (Exception e) {
+            result = new WebsiteGenerationService.WebsiteGenerationResult();
+            result.setBusinessId(businessId);
+            result.setErrorMessage("Failed: " + e.getMessage());
+        } finally {
+            release(job.getUsername());
+        }
+
+        job.getResults().add(new SiteResult(businessId, result.getBusinessName(), result.isSuccess(), result.getErrorMessage()));
+        (result.isSuccess() ? job.getSucceeded() : job.getFailed()).incrementAndGet();
+        if (job.getCompleted().incrementAndGet() == job.getBusinessIds().size()) {
+            finish(job);
+        } else {
+            publish(job);
+        }
+    }
+
+    private void finish(BulkJob job) {
+        job.finish(String.format("Generated %d of %d websites", job.getSucceeded().get(),
+                job.getBusinessIds().size() + job.getSkippedOverQuota()));
+        log.info("Bulk website job {} finished: {} succeeded, {} failed, {} over quota",
+                job.getJobId(), job.getSucceeded().get(), job.getFailed().get(), job.getSkippedOverQuota());
+        publish(job);
+        job.getEmitters().forEach(SseEmitter::complete);
+        job.getEmitters().clear();
+    }
+
+    private void publish(BulkJob job) {
+        for (SseEmitter emitter : job.getEmitters()) {
+            if (!sendTo(emitter, job)) {
+                job.getEmitters().remove(emitter);
+            }
+        }
+    }
+
+    private boolean sendTo(SseEmitter emitter, BulkJob job) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(job.isFinished() ? "complete" : "progress")
+                    .data(job.toProgress()));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client went away
+            return false;
+        }
+    }
+
+    public enum Filter {
+        WITHOUT_WEBSITE, UNCONTACTED
+    }
+
+    public enum JobStatus {
+        QUEUED, RUNNING, COMPLETED
+    }
+
+    // Outcome for one lead; the code itself is on the business (GET /{id}/generated-code)
+    public record SiteResult(Integer businessId, String businessName, boolean success, String errorMessage) {}
+
+    @lombok.Getter
+    public static class BulkJob {
+        private final String jobId;
+        private final String username;
+        private final List<Integer> businessIds;
+        private final int skippedOverQuota;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final List<SiteResult> results = new CopyOnWriteArrayList<>();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+        @lombok.Setter
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile String message;
+        private volatile LocalDateTime finishedAt;
+
+        public BulkJob(String jobId, String username, List<Integer> businessIds, int skippedOverQuota) {
+            this.jobId = jobId;
+            this.username = username;
+            this.businessIds = List.copyOf(businessIds);
+            this.skippedOverQuota = skippedOverQuota;
+        }
+
+        public boolean isFinished() {
+            return status == JobStatus.COMPLETED;
+        }
+
+        synchronized void finish(String finalMessage) {
+            if (isFinished()) {
+                return;
+            }
+            this.message = finalMessage;
+            this.finishedAt = LocalDateTime.now();
+            this.status = JobStatus.COMPLETED;
+        }
+
+        public BulkProgress toProgress() {
+            return new BulkProgress(jobId, status, message, businessIds.size(),
+                    completed.get(), succeeded.get(), failed.get(), skippedOverQuota, List.copyOf(results));
+        }
+    }
+
+    // Snapshot of a job sent to clients (status endpoint and SSE events)
+    @lombok.Data
+    @lombok.AllArgsConstructor
+    public static class BulkProgress {
+        private String jobId;
+        private JobStatus status;
+        private String message;
+        private int total;
+        private int completed;
+        private int succeeded;
+        private int failed;
+        private int skippedOverQuota;
+        private List<SiteResult> results;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.nobsv2.business.services;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Templates shipped in the jar under templates/*.txt
+@Component
+@Order(0)
+public class ClasspathTemplateSource implements TemplateSource {
+
+    private final PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+    @Override
+    public String name() {
+        return "classpath";
+    }
+
+    @Override
+    public Map<String, String> load() throws IOException {
+        Map<String, String> templates = new LinkedHashMap<>();
+        for (Resource resource : resolver.getResources("classpath:templates/*.txt")) {
+            String filename = resource.getFilename();
+            if (filename == null) {
+                continue;
+            }
+            templates.put(filename.substring(0, filename.length() - 4).toLowerCase(Locale.ROOT),
+                    resource.getContentAsString(StandardCharsets.UTF_8));
+        }
+        return templates;
+    }
+}
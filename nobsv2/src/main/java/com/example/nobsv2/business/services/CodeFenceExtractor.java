@@ -0,0 +1,145 @@
+package com.example.nobsv2.business.services;
+
+// Pulls the code out of a Claude reply in one forward pass: it jumps from fence to fence with indexOf and copies
+// the code out once at the end. Handles "explanation, then ```tsx fence" replies as well as jsx/ts/js/untagged
+// fences and bare code. Fences tagged with another language (```css, ```json) are only used when no code fence
+// shows up. Works on whole replies (extract) or streamed chunks (feed/finish).
+final class CodeFenceExtractor {
+
+    private static final String FENCE = "```";
+    private static final String[] CODE_LANGUAGES = {"tsx", "jsx", "ts", "js", "typescript", "javascript", "react"};
+
+    private enum State { TEXT, INFO, CODE, OTHER, DONE }
+
+    private final StringBuilder reply;
+    private State state = State.TEXT;
+    private int scan;              // everything before this has been looked at
+    private int firstFence = -1;   // the explanation ends here
+    private int infoStart;
+    private int codeStart = -1;
+    private int codeEnd = -1;
+    private int otherStart = -1;   // first non-code fence, as a fallback
+    private int otherEnd = -1;
+
+    CodeFenceExtractor() {
+        this(16);
+    }
+
+    private CodeFenceExtractor(int capacity) {
+        this.reply = new StringBuilder(capacity);
+    }
+
+    record Extracted(String explanation, String code, boolean fenced) {}
+
+    static Extracted extract(String reply) {
+        CodeFenceExtractor extractor = new CodeFenceExtractor(reply.length());
+        extractor.feed(reply);
+        return extractor.finish();
+    }
+
+    void feed(CharSequence chunk) {
+        if (state == State.DONE) {
+            return;
+        }
+        reply.append(chunk);
+        int length = reply.length();
+        while (state != State.DONE) {
+            if (state == State.INFO) {
+                int newline = reply.indexOf("\n", scan);
+                if (newline < 0) {
+                    scan = length;
+                    break;
+                }
+                if (isCodeLanguage(infoStart, newline)) {
+                    state = State.CODE;
+                    codeStart = newline + 1;
+                } else {
+                    state = State.OTHER;
+                    if (otherStart < 0) {
+                        otherStart = newline + 1;
+                    }
+                }
+                scan = newline + 1;
+                continue;
+            }
+            int fence = reply.indexOf(FENCE, scan);
+            if (fence < 0) {
+                // a fence may be split across chunks - look at the last two characters again next time
+                scan = Math.max(scan, length - 2);
+                break;
+            }
+            switch (state) {
+                case TEXT -> {
+                    if (firstFence < 0) {
+                        firstFence = fence;
+                    }
+                    state = State.INFO;
+                    infoStart = fence + FENCE.length();
+                }
+                case CODE -> {
+                    codeEnd = fence;
+                    state = State.DONE;
+                }
+                case OTHER -> {
+                    if (otherEnd < 0) {
+                        otherEnd = fence;
+                    }
+                    state = State.TEXT;
+                }
+                default -> { }
+            }
+            scan = fence + FENCE.length();
+        }
+    }
+
+    // Call once after the last chunk. An unclosed fence (reply cut off at max tokens) keeps everything after it.
+    Extracted finish() {
+        if (state == State.CODE) {
+            codeEnd = reply.length();
+        }
+        if (firstFence < 0) {
+            return new Extracted("", slice(0, reply.length()), false);
+        }
+        String explanation = slice(0, firstFence);
+        if (codeStart >= 0) {
+            return new Extracted(explanation, slice(codeStart, codeEnd), true);
+        }
+        if (otherStart >= 0 && state != State.INFO) {
+            return new Extracted(explanation, slice(otherStart, otherEnd < 0 ? reply.length() : otherEnd), true);
+        }
+        return new Extracted(explanation, "", true);
+    }
+
+    private boolean isCodeLanguage(int start, int end) {
+        while (start < end && reply.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && reply.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return true;  // untagged fence
+        }
+        for (String language : CODE_LANGUAGES) {
+            if (language.length() == end - start && reply.substring(start, end).equalsIgnoreCase(language)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Trimmed copy of [start, end)
+    private String slice(int start, int end) {
+        while (start < end && reply.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && reply.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return withoutCarriageReturns(reply.substring(start, end));
+    }
+
+    private static String withoutCarriageReturns(String text) {
+        return text.indexOf('\r') < 0 ? text : text.replace("\r", "");
+    }
+}
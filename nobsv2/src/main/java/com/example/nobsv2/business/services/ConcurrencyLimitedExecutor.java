@@ -0,0 +1,51 @@
+package com.example.nobsv2.business.services;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+// Runs tasks on a shared executor but never more than `limit` of them at once.
+// Extra tasks wait in a local queue instead of blocking a pool thread.
+class ConcurrencyLimitedExecutor implements Executor {
+
+    private final Executor delegate;
+    private final int limit;
+    private final Queue<Runnable> pending = new ArrayDeque<>();
+    private int running = 0;
+
+    ConcurrencyLimitedExecutor(Executor delegate, int limit) {
+        this.delegate = delegate;
+        this.limit = Math.max(1, limit);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized (this) {
+            if (running >= limit) {
+                pending.add(task);
+                return;
+            }
+            running++;
+        }
+        dispatch(task);
+    }
+
+    private void dispatch(Runnable task) {
+        delegate.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                Runnable next;
+                synchronized (this) {
+                    next = pending.poll();
+                    if (next == null) {
+                        running--;
+                    }
+                }
+                if (next != null) {
+                    dispatch(next);
+                }
+            }
+        });
+    }
+}
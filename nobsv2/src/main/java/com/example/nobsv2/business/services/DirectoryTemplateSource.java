@@ -0,0 +1,51 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.TemplateConfig;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// <name>.txt files in templates.directory - adds templates, or overrides the bundled ones, without a redeploy
+@Component
+@Order(1)
+public class DirectoryTemplateSource implements TemplateSource {
+
+    private final TemplateConfig templateConfig;
+
+    public DirectoryTemplateSource(TemplateConfig templateConfig) {
+        this.templateConfig = templateConfig;
+    }
+
+    @Override
+    public String name() {
+        return "directory:" + templateConfig.getDirectory();
+    }
+
+    @Override
+    public Map<String, String> load() throws IOException {
+        Map<String, String> templates = new LinkedHashMap<>();
+        if (templateConfig.getDirectory() == null || templateConfig.getDirectory().isBlank()) {
+            return templates;
+        }
+        Path directory = Path.of(templateConfig.getDirectory());
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Template directory not found: " + directory);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.txt")) {
+            for (Path file : files) {
+                String filename = file.getFileName().toString();
+                templates.put(filename.substring(0, filename.length() - 4).toLowerCase(Locale.ROOT),
+                        Files.readString(file, StandardCharsets.UTF_8));
+            }
+        }
+        return templates;
+    }
+}
@@ -3,16 +3,26 @@ package com.example.nobsv2.business.services;
 import com.example.nobsv2.business.model.Business;
 import com.example.nobsv2.business.model.Business.LeadStatus;
 import com.example.nobsv2.business.repository.BusinessRepository;
+import com.example.nobsv2.business.repository.BusinessRepository.BusinessSummary;
 import com.example.nobsv2.user.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class GetBusinessesService {
 
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final Sort BY_ID = Sort.by("id");
+    private static final Sort BY_UPDATED = Sort.by(Sort.Order.desc("updatedAt"), Sort.Order.desc("id"));
+
     private final BusinessRepository businessRepository;
     private final UserService userService;
 
@@ -51,6 +61,126 @@ public class GetBusinessesService {
         return businessRepository.searchByUserUsernameAndKeyword(username, keyword);
     }
 
+    // Paged variants of the lists above, sorted by id. Pass the previous page's nextCursor as `after` to scroll
+    // (constant cost however deep); without it `page` is a plain offset page. Totals come from the count methods.
+    public BusinessPage getAllBusinessesPage(String after, int page, int size) {
+        String username = userService.getCurrentUsername();
+        return pageById((afterId, pageable) -> businessRepository.findPageByUserUsername(username, afterId, pageable),
+                after, page, size);
+    }
+
+    public BusinessPage getBusinessesWithoutWebsitePage(String after, int page, int size) {
+        String username = userService.getCurrentUsername();
+        return pageById((afterId, pageable) -> businessRepository.findPageWithoutWebsite(username, afterId, pageable),
+                after, page, size);
+    }
+
+    public BusinessPage getBusinessesWithGeneratedWebsitesPage(String after, int page, int size) {
+        String username = userService.getCurrentUsername();
+        return pageById((afterId, pageable) -> businessRepository.findPageWithWebsiteGenerated(username, afterId, pageable),
+                after, page, size);
+    }
+
+    public BusinessPage getUncontactedLeadsPage(String after, int page, int size) {
+        String username = userService.getCurrentUsername();
+        return pageById((afterId, pageable) -> businessRepository.findPageUncontacted(username, afterId, pageable),
+                after, page, size);
+    }
+
+    public BusinessPage getBusinessesByStatusPage(LeadStatus status, String after, int page, int size) {
+        String username = userService.getCurrentUsername();
+        return pageById((afterId, pageable) -> businessRepository.findPageByLeadStatus(username, status, afterId, pageable),
+                after, page, size);
+    }
+
+    public BusinessPage getBusinessesByTypePage(String type, String after, int page, int size) {
+        String username = userService.getCurrentUsername();
+        return pageById((afterId, pageable) -> businessRepository.findPageByType(username, type, afterId, pageable),
+                after, page, size);
+    }
+
+    public BusinessPage searchBusinessesPage(String keyword, String after, int page, int size) {
+        String username = userService.getCurrentUsername();
+        return pageById((afterId, pageable) -> businessRepository.findPageByKeyword(username, keyword, afterId, pageable),
+                after, page, size);
+    }
+
+    // All businesses, most recently updated first; the cursor is "<updatedAt>_<id>" of the last row
+    public BusinessPage getRecentlyUpdatedPage(String after, int size) {
+        String username = userService.getCurrentUsername();
+        Pageable pageable = PageRequest.of(0, pageSize(size), BY_UPDATED);
+        List<BusinessSummary> items;
+        if (after == null || after.isBlank()) {
+            items = businessRepository.findPageByUserUsername(username, 0, pageable);
+        } else {
+            int split = after.lastIndexOf('_');
+            LocalDateTime updatedAt;
+            try {
+                updatedAt = LocalDateTime.parse(after.substring(0, Math.max(0, split)));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + after);
+            }
+            items = businessRepository.findPageByUserUsernameUpdatedBefore(username,
+                    updatedAt, parseId(after.substring(split + 1)), pageable);
+        }
+        BusinessSummary last = items.size() == pageable.getPageSize() ? items.get(items.size() - 1) : null;
+        return new BusinessPage(items, last == null ? null : last.getUpdatedAt() + "_" + last.getId());
+    }
+
+    public long countAllBusinesses() {
+        return businessRepository.countByUserUsername(userService.getCurrentUsername());
+    }
+
+    public long countBusinessesWithoutWebsite() {
+        return businessRepository.countWithoutWebsite(userService.getCurrentUsername());
+    }
+
+    public long countBusinessesWithGeneratedWebsites() {
+        return businessRepository.countWithWebsiteGenerated(userService.getCurrentUsername());
+    }
+
+    public long countUncontactedLeads() {
+        return businessRepository.countUncontacted(userService.getCurrentUsername());
+    }
+
+    public long countBusinessesByStatus(LeadStatus status) {
+        return businessRepository.countByUserUsernameAndLeadStatus(userService.getCurrentUsername(), status);
+    }
+
+    public long countBusinessesByType(String type) {
+        return businessRepository.countByType(userService.getCurrentUsername(), type);
+    }
+
+    public long countSearchResults(String keyword) {
+        return businessRepository.countByKeyword(userService.getCurrentUsername(), keyword);
+    }
+
+    private BusinessPage pageById(PageQuery query, String after, int page, int size) {
+        List<BusinessSummary> items = after == null || after.isBlank()
+                ? query.fetch(0, PageRequest.of(Math.max(0, page), pageSize(size), BY_ID))
+                : query.fetch(parseId(after), PageRequest.of(0, pageSize(size), BY_ID));
+        // A full page may have more after it; the next request then comes back short or empty
+        String nextCursor = items.size() == pageSize(size) ? String.valueOf(items.get(items.size() - 1).getId()) : null;
+        return new BusinessPage(items, nextCursor);
+    }
+
+    private int pageSize(int size) {
+        return Math.min(Math.max(1, size), MAX_PAGE_SIZE);
+    }
+
+    private int parseId(String cursor) {
+        try {
+            return Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    @FunctionalInterface
+    private interface PageQuery {
+        List<BusinessSummary> fetch(int afterId, Pageable pageable);
+    }
+
     public BusinessStats getStats() {
         String username = userService.getCurrentUsername();
         List<Business> allBusinesses = businessRepository.findByUserUsername(username);
@@ -77,4 +207,7 @@ public class GetBusinessesService {
         private long contacted;
         private long websitesGenerated;
     }
-}
\ No newline at end of file
+
+    // nextCursor is null on the last page
+    public record BusinessPage(List<BusinessSummary> items, String nextCursor) {}
+}
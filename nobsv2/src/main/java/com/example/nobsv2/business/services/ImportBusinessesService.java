@@ -2,6 +2,7 @@ package com.example.nobsv2.business.services;
 
 import com.example.nobsv2.business.dto.BusinessImportDTO;
 import com.example.nobsv2.business.model.Business;
+import com.example.nobsv2.business.repository.BusinessBatchRepository;
 import com.example.nobsv2.business.repository.BusinessRepository;
 import com.example.nobsv2.security.CustomUser;
 import com.example.nobsv2.user.UserService;
@@ -9,54 +10,118 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class ImportBusinessesService {
 
     private final BusinessRepository businessRepository;
+    private final BusinessBatchRepository businessBatchRepository;
     private final UserService userService;  // Add this
 
     @Transactional
     public ImportResult importBusinesses(List<BusinessImportDTO> businesses) {
-        CustomUser currentUser = userService.getCurrentUser();
+        return importBusinesses(businesses, userService.getCurrentUser());
+    }
 
-        int imported = 0;
-        int skipped = 0;
-        int updated = 0;
+    // Imports for an explicit user, so callers streaming a crawl can commit each page
+    // in its own transaction (and callers off the request thread don't need the security context).
+    // Existing rows are looked up with one query, then new and changed rows go out as JDBC batches.
+    @Transactional
+    public ImportResult importBusinesses(List<BusinessImportDTO> businesses, CustomUser currentUser) {
+        String username = currentUser.getUsername();
         List<String> errors = new ArrayList<>();
+        int skipped = 0;
 
+        List<BusinessImportDTO> valid = new ArrayList<>();
         for (BusinessImportDTO dto : businesses) {
-            try {
-                // Check if THIS USER already has this business
-                Optional<Business> existing = businessRepository.findByPlaceIdAndUserUsername(
-                        dto.getPlace_id(),
-                        currentUser.getUsername()  // Check per user!
-                );
-
-                if (existing.isPresent()) {
-                    // Update existing business for this user
-                    Business business = existing.get();
-                    updateBusinessFromDTO(business, dto);
-                    businessRepository.save(business);
-                    updated++;
-                } else {
-                    // Create new business for this user
-                    Business business = convertDTOToBusiness(dto);
-                    business.setUser(currentUser);
-                    businessRepository.save(business);
-                    imported++;
-                }
-            } catch (Exception e) {
-                errors.add("Error importing " + dto.getName() + ": " + e.getMessage());
+            if (dto.getPlace_id() == null || dto.getPlace_id().isBlank() || dto.getName() == null) {
+                errors.add("Error importing " + dto.getName() + ": missing name or place_id");
                 skipped++;
+            } else {
+                valid.add(dto);
             }
         }
+        // Collapse places listed more than once in this batch (the last copy wins)
+        Map<String, BusinessImportDTO> byPlaceId = new LinkedHashMap<>();
+        for (BusinessImportDTO dto : valid) {
+            byPlaceId.put(dto.getPlace_id(), dto);
+        }
+        int duplicates = valid.size() - byPlaceId.size();
+        if (byPlaceId.isEmpty()) {
+            return new ImportResult(0, 0, skipped, 0, duplicates, errors);
+        }
 
-        return new ImportResult(imported, updated, skipped, errors);
+        // Check which of these places are already stored, by whom, and what their imported content looked like
+        Map<String, BusinessRepository.ExistingPlace> existingPlaces = new HashMap<>();
+        for (BusinessRepository.ExistingPlace existing : businessRepository.findExistingPlaces(byPlaceId.keySet())) {
+            existingPlaces.put(existing.getPlaceId(), existing);
+        }
+
+        List<Business> inserts = new ArrayList<>();
+        List<Business> updates = new ArrayList<>();
+        int unchanged = 0;
+        for (BusinessImportDTO dto : byPlaceId.values()) {
+            Business business = convertDTOToBusiness(dto);
+            business.setContentHash(contentHash(business));
+
+            BusinessRepository.ExistingPlace existing = existingPlaces.get(dto.getPlace_id());
+            if (existing == null) {
+                inserts.add(business);
+            } else if (!username.equals(existing.getUsername())) {
+                // place_id is unique across users - another account already has this place
+                errors.add(alreadyImported(business, "by another account"));
+                skipped++;
+            } else if (business.getContentHash().equals(existing.getContentHash())) {
+                // Nothing we import has changed - skip the write (and the updatedAt bump)
+                unchanged++;
+            } else {
+                business.setId(existing.getId());
+                updates.add(business);
+            }
+        }
+
+        // Places stored by someone else since the lookup above are skipped by the insert, not fatal
+        List<Business> conflicts = businessBatchRepository.insertAll(inserts, username);
+        for (Business conflict : conflicts) {
+            errors.add(alreadyImported(conflict, "meanwhile"));
+        }
+        skipped += conflicts.size();
+        businessBatchRepository.updateAll(updates);
+
+        return new ImportResult(inserts.size() - conflicts.size(), updates.size(), skipped, unchanged, duplicates, errors);
+    }
+
+    private static String alreadyImported(Business business, String how) {
+        return "Skipped " + business.getName() + ": place " + business.getPlaceId() + " was already imported " + how;
+    }
+
+    // SHA-256 over exactly the fields an import writes, so a re-crawl of the same place can be detected
+    static String contentHash(Business business) {
+        String content = String.join("\u0001",
+                String.valueOf(business.getName()),
+                String.valueOf(business.getAddress()),
+                String.valueOf(business.getWebsite()),
+                String.valueOf(business.getPhone()),
+                String.valueOf(business.getRating()),
+                String.valueOf(business.getTotalRatings()),
+                String.valueOf(business.getTypes()),
+                String.valueOf(business.getBusinessStatus()));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
     private Business convertDTOToBusiness(BusinessImportDTO dto) {
@@ -97,11 +162,31 @@ public class ImportBusinessesService {
         private int imported;
         private int updated;
         private int skipped;
+        private int unchanged;   // already stored with identical content - no write
+        private int duplicates;  // same place_id listed more than once in the batch
         private List<String> errors;
 
+        public ImportResult(int imported, int updated, int skipped, List<String> errors) {
+            this(imported, updated, skipped, 0, 0, errors);
+        }
+
+        public static ImportResult empty() {
+            return new ImportResult(0, 0, 0, new ArrayList<>());
+        }
+
+        // Folds another (page) result into this running total
+        public void add(ImportResult other) {
+            imported += other.getImported();
+            updated += other.getUpdated();
+            skipped += other.getSkipped();
+            unchanged += other.getUnchanged();
+            duplicates += other.getDuplicates();
+            errors.addAll(other.getErrors());
+        }
+
         public String getSummary() {
-            return String.format("Imported: %d, Updated: %d, Skipped: %d, Errors: %d",
-                    imported, updated, skipped, errors.size());
+            return String.format("Imported: %d, Updated: %d, Unchanged: %d, Skipped: %d, Errors: %d",
+                    imported, updated, unchanged, skipped, errors.size());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,380 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.CrawlerConfig;
+import com.example.nobsv2.business.dto.BusinessImportDTO;
+import com.example.nobsv2.business.model.CrawlCheckpoint;
+import com.example.nobsv2.business.repository.CrawlCheckpointRepository;
+import com.example.nobsv2.security.CustomUser;
+import com.example.nobsv2.stripe.StripeService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Runs lead searches (crawl + page-by-page import) as background jobs and tracks their progress.
+// Crawl state is checkpointed to crawl_checkpoints after every page so a search that dies can be resumed.
+@Service
+@Slf4j
+public class LeadSearchJobService {
+
+    private final GooglePlacesCrawlerService googlePlacesCrawlerService;
+    private final ImportBusinessesService importBusinessesService;
+    private final StripeService stripeService;
+    private final CrawlerConfig crawlerConfig;
+    private final CrawlCheckpointRepository checkpointRepository;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService jobExecutor;
+    private final Map<String, LeadSearchJob> jobs = new ConcurrentHashMap<>();
+
+    public LeadSearchJobService(GooglePlacesCrawlerService googlePlacesCrawlerService,
+                                ImportBusinessesService importBusinessesService,
+                                StripeService stripeService,
+                                CrawlerConfig crawlerConfig,
+                                CrawlCheckpointRepository checkpointRepository) {
+        this.googlePlacesCrawlerService = googlePlacesCrawlerService;
+        this.importBusinessesService = importBusinessesService;
+        this.stripeService = stripeService;
+        this.crawlerConfig = crawlerConfig;
+        this.checkpointRepository = checkpointRepository;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.jobExecutor = Executors.newFixedThreadPool(crawlerConfig.getJobsPoolSize(), r -> {
+            Thread t = new Thread(r, "lead-search-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    // Queues the search and returns immediately
+    public LeadSearchJob submit(CustomUser user, GooglePlacesCrawlerService.CrawlRequest request) {
+        LeadSearchJob job = register(user, request);
+        jobExecutor.execute(() -> run(job, user, null, newCheckpoint(job)));
+        return job;
+    }
+
+    // Runs the search on the calling thread (used by the blocking /search endpoint)
+    public LeadSearchJob runNow(CustomUser user, GooglePlacesCrawlerService.CrawlRequest request) {
+        LeadSearchJob job = register(user, request);
+        run(job, user, null, newCheckpoint(job));
+        return job;
+    }
+
+    // Queues an interrupted search again under the same job id, continuing from its last checkpoint.
+    // Empty if the user has no checkpoint with that id.
+    public synchronized Optional<LeadSearchJob> resume(CustomUser user, String jobId) {
+        Optional<CrawlCheckpoint> found = checkpointRepository.findByJobIdAndUsername(jobId, user.getUsername());
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        CrawlCheckpoint checkpoint = found.get();
+        LeadSearchJob current = jobs.get(jobId);
+        if ((current != null && !current.isFinished()) || !checkpoint.isResumable()) {
+            throw new IllegalStateException("Search " + jobId + " is running or has nothing left to resume");
+        }
+
+        GooglePlacesCrawlerService.CrawlState state = readState(checkpoint.getState());
+        GooglePlacesCrawlerService.CrawlRequest request = new GooglePlacesCrawlerService.CrawlRequest(
+                checkpoint.getLocation(), checkpoint.getRadius(), checkpoint.getBusinessType(), checkpoint.isTiled());
+        LeadSearchJob job = new LeadSearchJob(jobId, user.getUsername(), request);
+        jobs.put(jobId, job);
+
+        checkpoint.setStatus(CrawlCheckpoint.Status.RUNNING);
+        CrawlCheckpoint running = checkpointRepository.save(checkpoint);
+        log.info("Resuming lead search job {} with {} cells left and {} places already processed",
+                jobId, state.getCells().size(), state.getProcessedPlaceIds().size());
+        jobExecutor.execute(() -> run(job, user, state, running));
+        return Optional.of(job);
+    }
+
+    public Optional<LeadSearchJob> getJob(String jobId, String username) {
+        return Optional.ofNullable(jobs.get(jobId))
+                .filter(job -> job.getUsername().equals(username));
+    }
+
+    public SseEmitter subscribe(LeadSearchJob job) {
+        SseEmitter emitter = new SseEmitter(crawlerConfig.getJobsSseTimeout().toMillis());
+        job.getEmitters().add(emitter);
+        emitter.onCompletion(() -> job.getEmitters().remove(emitter));
+        emitter.onTimeout(() -> job.getEmitters().remove(emitter));
+        emitter.onError(e -> job.getEmitters().remove(emitter));
+
+        // Send the current state right away; finished jobs close the stream immediately
+        if (!sendTo(emitter, job) || job.isFinished()) {
+            job.getEmitters().remove(emitter);
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelay = 300_000)
+    public void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(crawlerConfig.getJobsRetention());
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+        checkpointRepository.deleteByUpdatedAtBefore(LocalDateTime.now().minus(crawlerConfig.getCheckpointsRetention()));
+    }
+
+    // Nothing is running right after startup, so any RUNNING checkpoint belongs to a job the last shutdown killed
+    @EventListener(ApplicationReadyEvent.class)
+    public void markInterruptedCheckpoints() {
+        int interrupted = checkpointRepository.updateStatus(CrawlCheckpoint.Status.RUNNING, CrawlCheckpoint.Status.INTERRUPTED);
+        if (interrupted > 0) {
+            log.info("Marked {} lead search checkpoints as interrupted", interrupted);
+        }
+    }
+
+    private LeadSearchJob register(CustomUser user, GooglePlacesCrawlerService.CrawlRequest request) {
+        LeadSearchJob job = new LeadSearchJob(UUID.randomUUID().toString(), user.getUsername(), request);
+        jobs.put(job.getJobId(), job);
+        return job;
+    }
+
+    private CrawlCheckpoint newCheckpoint(LeadSearchJob job) {
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint();
+        checkpoint.setJobId(job.getJobId());
+        checkpoint.setUsername(job.getUsername());
+        checkpoint.setLocation(job.getRequest().getLocation());
+        checkpoint.setRadius(job.getRequest().getRadius());
+        checkpoint.setBusinessType(job.getRequest().getBusinessType());
+        checkpoint.setTiled(job.getRequest().isTiled());
+        checkpoint.setStatus(CrawlCheckpoint.Status.RUNNING);
+        return checkpoint;
+    }
+
+    private void run(LeadSearchJob job, CustomUser user,
+                     GooglePlacesCrawlerService.CrawlState resumeFrom, CrawlCheckpoint initialCheckpoint) {
+        job.setStatus(JobStatus.RUNNING);
+        publish(job);
+        AtomicReference<CrawlCheckpoint> checkpoint = new AtomicReference<>(initialCheckpoint);
+
+        try {
+            GooglePlacesCrawlerService.CrawlResult crawlResult = googlePlacesCrawlerService.crawl(
+                    job.getRequest(),
+                    resumeFrom,
+                    new GooglePlacesCrawlerService.CrawlListener() {
+                        @Override
+                        public void onPage(List<BusinessImportDTO> businesses, List<GooglePlacesCrawlerService.PlaceFailure> failures) {
+                            ImportBusinessesService.ImportResult pageResult =
+                                    importBusinessesService.importBusinesses(businesses, user);
+                            job.getImported().addAndGet(pageResult.getImported());
+                            job.getUpdated().addAndGet(pageResult.getUpdated());
+                            job.getSkipped().addAndGet(pageResult.getSkipped());
+                            job.getUnchanged().addAndGet(pageResult.getUnchanged());
+                            job.getBusinessesWithoutWebsite().addAndGet((int) businesses.stream()
+                                    .filter(b -> "NO WEBSITE".equals(b.getWebsite()) || b.getWebsite() == null)
+                                    .count());
+                            publish(job);
+                        }
+
+                        @Override
+                        public void onPageFetched(int results) {
+                            job.getPagesFetched().incrementAndGet();
+                            publish(job);
+                        }
+
+                        @Override
+                        public void onDetailsFetched(boolean success) {
+                            (success ? job.getDetailsFetched() : job.getDetailsFailed()).incrementAndGet();
+                            publish(job);
+                        }
+
+                        @Override
+                        public void onCheckpoint(GooglePlacesCrawlerService.CrawlState state) {
+                            saveCheckpoint(checkpoint, state, CrawlCheckpoint.Status.RUNNING);
+                        }
+                    }
+            );
+
+            job.setCrawlResult(crawlResult);
+
+            // Only a completed search counts against the plan, and only once - resuming the rest of a
+            // search that stopped on its call budget is not charged again
+            if (!checkpoint.get().isSearchCharged()) {
+                stripeService.incrementUsage(job.getUsername(), StripeService.ActionType.SEARCH);
+                checkpoint.get().setSearchCharged(true);
+                log.info("Incremented search count for user: {}", job.getUsername());
+            }
+
+            if (checkpoint.get().getRemainingCells() != null && checkpoint.get().getRemainingCells() > 0) {
+                // Stopped on the call budget - keep the checkpoint so the rest can be resumed
+                saveCheckpoint(checkpoint, null, CrawlCheckpoint.Status.INCOMPLETE);
+            } else {
+                deleteCheckpoint(job.getJobId());
+            }
+
+            job.finish(JobStatus.COMPLETED, "Search completed successfully");
+        } catch (Exception e) {
+            log.error("Lead search job {} failed: {}", job.getJobId(), e.getMessage(), e);
+            job.finish(JobStatus.FAILED, "Failed to search: " + e.getMessage());
+            if (checkpoint.get().getState() != null) {
+                saveCheckpoint(checkpoint, null, CrawlCheckpoint.Status.FAILED);
+            }
+        }
+
+        publish(job);
+        job.getEmitters().forEach(SseEmitter::complete);
+        job.getEmitters().clear();
+    }
+
+    // A checkpoint that cannot be written must never fail the crawl - the job just resumes from an older one.
+    // A null state only updates the status.
+    private void saveCheckpoint(AtomicReference<CrawlCheckpoint> checkpoint,
+                                GooglePlacesCrawlerService.CrawlState state, CrawlCheckpoint.Status status) {
+        CrawlCheckpoint current = checkpoint.get();
+        try {
+            if (state != null) {
+                current.setState(objectMapper.writeValueAsString(state));
+                current.setRemainingCells(state.getCells().size());
+                current.setProcessedPlaces(state.getProcessedPlaceIds().size());
+            }
+            current.setStatus(status);
+            checkpoint.set(checkpointRepository.save(current));
+        } catch (Exception e) {
+            log.warn("Could not save checkpoint for lead search job {}: {}", current.getJobId(), e.getMessage());
+        }
+    }
+
+    private void deleteCheckpoint(String jobId) {
+        try {
+            checkpointRepository.deleteById(jobId);
+        } catch (Exception e) {
+            log.warn("Could not delete checkpoint for lead search job {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    private GooglePlacesCrawlerService.CrawlState readState(String state) {
+        try {
+            return objectMapper.readValue(state, GooglePlacesCrawlerService.CrawlState.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable crawl checkpoint", e);
+        }
+    }
+
+    private void publish(LeadSearchJob job) {
+        for (SseEmitter emitter : job.getEmitters()) {
+            if (!sendTo(emitter, job)) {
+                job.getEmitters().remove(emitter);
+            }
+        }
+    }
+
+    private boolean sendTo(SseEmitter emitter, LeadSearchJob job) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(job.isFinished() ? "complete" : "progress")
+                    .data(job.toProgress()));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client went away
+            return false;
+        }
+    }
+
+    public enum JobStatus {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    @lombok.Getter
+    public static class LeadSearchJob {
+        private final String jobId;
+        private final String username;
+        private final GooglePlacesCrawlerService.CrawlRequest request;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+
+        private final AtomicInteger pagesFetched = new AtomicInteger();
+        private final AtomicInteger detailsFetched = new AtomicInteger();
+        private final AtomicInteger detailsFailed = new AtomicInteger();
+        private final AtomicInteger imported = new AtomicInteger();
+        private final AtomicInteger updated = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger unchanged = new AtomicInteger();
+        private final AtomicInteger businessesWithoutWebsite = new AtomicInteger();
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+        @lombok.Setter
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile String message;
+        private volatile LocalDateTime finishedAt;
+        @lombok.Setter
+        private volatile GooglePlacesCrawlerService.CrawlResult crawlResult;
+
+        public LeadSearchJob(String jobId, String username, GooglePlacesCrawlerService.CrawlRequest request) {
+            this.jobId = jobId;
+            this.username = username;
+            this.request = request;
+        }
+
+        public boolean isFinished() {
+            return status == JobStatus.COMPLETED || status == JobStatus.FAILED;
+        }
+
+        void finish(JobStatus finalStatus, String finalMessage) {
+            this.message = finalMessage;
+            this.finishedAt = LocalDateTime.now();
+            this.status = finalStatus;
+        }
+
+        public int getTotalFound() {
+            return crawlResult != null ? crawlResult.getTotalFound() : 0;
+        }
+
+        public JobProgress toProgress() {
+            GooglePlacesCrawlerService.CrawlResult result = crawlResult;
+            return new JobProgress(jobId, status, message,
+                    request.getLocation(), request.getRadius(), request.getBusinessType(), request.isTiled(),
+                    pagesFetched.get(), detailsFetched.get(), detailsFailed.get(),
+                    imported.get(), updated.get(), skipped.get(), unchanged.get(),
+                    getTotalFound(), businessesWithoutWebsite.get(),
+                    result != null ? result.getCellsCrawled() : 0,
+                    result != null ? result.getOutboundCalls() : 0,
+                    result != null && result.isBudgetExhausted(),
+                    result != null ? result.getTimings() : null);
+        }
+    }
+
+    // Snapshot of a job sent to clients (status endpoint and SSE events)
+    @lombok.Data
+    @lombok.AllArgsConstructor
+    public static class JobProgress {
+        private String jobId;
+        private JobStatus status;
+        private String message;
+        private String location;
+        private Integer radius;
+        private String businessType;
+        private boolean tiled;
+        private int pagesFetched;
+        private int detailsFetched;
+        private int detailsFailed;
+        private int imported;
+        private int updated;
+        private int skipped;
+        private int unchanged;
+        private int totalFound;
+        private int businessesWithoutWebsite;
+        private int cellsCrawled;
+        private int outboundCalls;
+        private boolean budgetExhausted;
+        private GooglePlacesCrawlerService.CrawlTimings timings;
+    }
+}
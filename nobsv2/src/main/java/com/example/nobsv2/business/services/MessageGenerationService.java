@@ -1,31 +1,94 @@
 package com.example.nobsv2.business.services;
 
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.ai.dto.ClaudeDTO;
 import com.example.nobsv2.ai.service.ClaudeApiService;
+import com.example.nobsv2.ai.service.ClaudeRequestDispatcher;
+import com.example.nobsv2.business.model.Business;
 import com.example.nobsv2.stripe.StripeService;
 import com.example.nobsv2.user.UserService;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class MessageGenerationService {
 
     private final ClaudeApiService claudeApiService;
+    private final ClaudeRequestDispatcher claudeRequestDispatcher;
     private final UserService userService;
     private final StripeService stripeService;
+    private final ClaudeConfig claudeConfig;
+    private final MeterRegistry meterRegistry;
 
+    // "username:prompt hash" -> generated message
+    private final Cache<String, String> messageCache;
+
+    public MessageGenerationService(ClaudeApiService claudeApiService,
+                                    ClaudeRequestDispatcher claudeRequestDispatcher,
+                                    UserService userService,
+                                    StripeService stripeService,
+                                    ClaudeConfig claudeConfig,
+                                    MeterRegistry meterRegistry) {
+        this.claudeApiService = claudeApiService;
+        this.claudeRequestDispatcher = claudeRequestDispatcher;
+        this.userService = userService;
+        this.stripeService = stripeService;
+        this.claudeConfig = claudeConfig;
+        this.meterRegistry = meterRegistry;
+
+        this.messageCache = Caffeine.newBuilder()
+                .maximumSize(claudeConfig.getMessageCacheMaxSize())
+                .expireAfterWrite(claudeConfig.getMessageCacheTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, messageCache, "claude.outreach");
+    }
+
+    // regenerate skips the cache (and costs a message); the new message replaces the cached one
     public String generateOutreachMessage(
             String businessName,
             String businessType,
-            String address) {
+            String address,
+            boolean regenerate) {
 
         // GET CURRENT USER
-        String username = userService.getCurrentUsername();
+        return generateOutreachMessage(userService.getCurrentUsername(), businessName, businessType, address, regenerate);
+    }
+
+    // For callers off the request thread (bulk outreach), where there is no current user
+    public String generateOutreachMessage(
+            String username,
+            String businessName,
+            String businessType,
+            String address,
+            boolean regenerate) {
+
+        String prompt = buildOutreachPrompt(businessName, businessType, address);
+        String systemPrompt = buildSystemPrompt();
+
+        // SAME LEAD ALREADY GENERATED - no Claude call, no quota
+        String cacheKey = username + ":" + promptHash(prompt, systemPrompt);
+        if (!regenerate) {
+            String cached = messageCache.getIfPresent(cacheKey);
+            if (cached != null) {
+                record("hit");
+                log.info("♻️ Returning cached outreach message for: {}", businessName);
+                return cached;
+            }
+        }
+        record(regenerate ? "bypass" : "miss");
 
         // CHECK SUBSCRIPTION LIMIT BEFORE GENERATING
         if (!stripeService.canPerformAction(username, StripeService.ActionType.GENERATE_MESSAGE)) {
@@ -35,10 +98,8 @@ public class MessageGenerationService {
 
         log.info("Generating outreach message for: {}", businessName);
 
-        String prompt = buildOutreachPrompt(businessName, businessType, address);
-        String systemPrompt = buildSystemPrompt();
-
-        String message = claudeApiService.generateContent(prompt, systemPrompt);
+        String message = claudeRequestDispatcher.call(username, () -> claudeApiService.generateContent(prompt, systemPrompt));
+        messageCache.put(cacheKey, message);
 
         // INCREMENT USAGE COUNTER (only after successful generation)
         stripeService.incrementUsage(username, StripeService.ActionType.GENERATE_MESSAGE);
@@ -49,6 +110,34 @@ public class MessageGenerationService {
         return message;
     }
 
+    // Outreach prompt for one lead, keyed by business id (used for offline batches)
+    public ClaudeApiService.BatchPrompt buildBatchPrompt(Business business) {
+        return new ClaudeApiService.BatchPrompt(
+                String.valueOf(business.getId()),
+                List.of(ClaudeDTO.Content.text(buildOutreachPrompt(business.getName(), business.getTypes(), business.getAddress()))),
+                List.of(ClaudeDTO.Content.text(buildSystemPrompt())));
+    }
+
+    // Case and whitespace don't change the message, so "Joe's  Pizza" and "joe's pizza" share an entry.
+    // The model is part of the hash so switching models doesn't serve the old model's messages.
+    private String promptHash(String prompt, String systemPrompt) {
+        String normalized = claudeConfig.getModel() + "\n" + normalize(systemPrompt) + "\n" + normalize(prompt);
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String normalize(String text) {
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("claude.outreach.cache.lookups", "result", result).increment();
+    }
+
     private String buildSystemPrompt() {
         return """
                 You are a professional sales copywriter specializing in warm, 
@@ -0,0 +1,70 @@
+package com.example.nobsv2.business.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Website template with [[name]] markers. The text is split into literal parts and marker names once,
+// so filling is a single append pass into a right-sized builder.
+// Values are inserted verbatim - callers pass ready-made JS literals.
+final class PlaceholderTemplate {
+
+    private static final String OPEN = "[[";
+    private static final String CLOSE = "]]";
+
+    private final String[] literals;  // one more than names: literal, name, literal, ..., literal
+    private final String[] names;
+    private final int literalLength;
+
+    private PlaceholderTemplate(List<String> literals, List<String> names) {
+        this.literals = literals.toArray(new String[0]);
+        this.names = names.toArray(new String[0]);
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    static PlaceholderTemplate compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int pos = 0;
+        int open;
+        while ((open = text.indexOf(OPEN, pos)) >= 0) {
+            int close = text.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at offset " + open);
+            }
+            literals.add(text.substring(pos, open));
+            names.add(text.substring(open + OPEN.length(), close).trim());
+            pos = close + CLOSE.length();
+        }
+        literals.add(text.substring(pos));
+        return new PlaceholderTemplate(literals, names);
+    }
+
+    Set<String> placeholders() {
+        Set<String> set = new LinkedHashSet<>();
+        Collections.addAll(set, names);
+        return set;
+    }
+
+    // Throws IllegalArgumentException if a marker has no value
+    String fill(Map<String, String> values) {
+        String[] filled = new String[names.length];
+        int length = literalLength;
+        for (int i = 0; i < names.length; i++) {
+            filled[i] = values.get(names[i]);
+            if (filled[i] == null) {
+                throw new IllegalArgumentException("No value for placeholder [[" + names[i] + "]]");
+            }
+            length += filled[i].length();
+        }
+
+        StringBuilder out = new StringBuilder(length);
+        for (int i = 0; i < names.length; i++) {
+            out.append(literals[i]).append(filled[i]);
+        }
+        return out.append(literals[names.length]).toString();
+    }
+}
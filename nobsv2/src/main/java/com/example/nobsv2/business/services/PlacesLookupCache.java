@@ -0,0 +1,165 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.CrawlerConfig;
+import com.example.nobsv2.business.dto.BusinessImportDTO;
+import com.example.nobsv2.business.model.PlacesCacheEntry;
+import com.example.nobsv2.business.repository.PlacesCacheEntryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Optional;
+
+// Cache in front of the Google geocode and place-details calls.
+// Lookups go memory -> places_cache table (if persistent) -> network. Expired rows are purged in the background.
+@Service
+@Slf4j
+public class PlacesLookupCache {
+
+    private static final String GEOCODE = "geocode";
+    private static final String DETAILS = "details";
+
+    private final PlacesCacheEntryRepository cacheEntryRepository;
+    private final MeterRegistry meterRegistry;
+    private final CrawlerConfig crawlerConfig;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Cache<String, String> geocodeCache;
+    private final Cache<String, BusinessImportDTO> detailsCache;
+
+    public PlacesLookupCache(PlacesCacheEntryRepository cacheEntryRepository,
+                             MeterRegistry meterRegistry,
+                             CrawlerConfig crawlerConfig) {
+        this.cacheEntryRepository = cacheEntryRepository;
+        this.meterRegistry = meterRegistry;
+        this.crawlerConfig = crawlerConfig;
+
+        this.geocodeCache = Caffeine.newBuilder()
+                .maximumSize(crawlerConfig.getCacheMaxSize())
+                .expireAfterWrite(crawlerConfig.getGeocodeTtl())
+                .recordStats()
+                .build();
+        this.detailsCache = Caffeine.newBuilder()
+                .maximumSize(crawlerConfig.getCacheMaxSize())
+                .expireAfterWrite(crawlerConfig.getDetailsTtl())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, geocodeCache, "places.geocode");
+        CaffeineCacheMetrics.monitor(meterRegistry, detailsCache, "places.details");
+    }
+
+    // "lat,lng" for a location string like "Portland, OR"
+    public Optional<String> getGeocode(String location) {
+        String key = normalizeLocation(location);
+        String cached = geocodeCache.getIfPresent(key);
+        if (cached != null) {
+            record(GEOCODE, "memory");
+            return Optional.of(cached);
+        }
+
+        Optional<String> persisted = loadPersisted(GEOCODE, key, String.class);
+        persisted.ifPresent(latLng -> geocodeCache.put(key, latLng));
+        record(GEOCODE, persisted.isPresent() ? "db" : "miss");
+        return persisted;
+    }
+
+    public void putGeocode(String location, String latLng) {
+        String key = normalizeLocation(location);
+        geocodeCache.put(key, latLng);
+        persist(GEOCODE, key, latLng, crawlerConfig.getGeocodeTtl());
+    }
+
+    public Optional<BusinessImportDTO> getDetails(String placeId) {
+        BusinessImportDTO cached = detailsCache.getIfPresent(placeId);
+        if (cached != null) {
+            record(DETAILS, "memory");
+            return Optional.of(cached);
+        }
+
+        Optional<BusinessImportDTO> persisted = loadPersisted(DETAILS, placeId, BusinessImportDTO.class);
+        persisted.ifPresent(dto -> detailsCache.put(placeId, dto));
+        record(DETAILS, persisted.isPresent() ? "db" : "miss");
+        return persisted;
+    }
+
+    public void putDetails(String placeId, BusinessImportDTO details) {
+        detailsCache.put(placeId, details);
+        persist(DETAILS, placeId, details, crawlerConfig.getDetailsTtl());
+    }
+
+    private <T> Optional<T> loadPersisted(String cacheName, String key, Class<T> type) {
+        if (!Boolean.TRUE.equals(crawlerConfig.getCachePersistent())) {
+            return Optional.empty();
+        }
+        try {
+            return cacheEntryRepository.findById(cacheName + ":" + key)
+                    .filter(entry -> entry.getExpiresAt().isAfter(LocalDateTime.now()))
+                    .map(entry -> readPayload(entry.getPayload(), type));
+        } catch (Exception e) {
+            // A broken cache row must never fail the crawl - fall through to the network
+            log.warn("Could not read {} cache entry for {}: {}", cacheName, key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // Removes expired places_cache rows a batch at a time until none are left
+    @Scheduled(fixedDelayString = "${crawler.cache.purge-interval:1h}")
+    public void purgeExpired() {
+        if (!Boolean.TRUE.equals(crawlerConfig.getCachePersistent())) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int batchSize = crawlerConfig.getCachePurgeBatchSize();
+        int purged = 0;
+        try {
+            int deleted;
+            do {
+                deleted = cacheEntryRepository.deleteExpired(now, batchSize);
+                purged += deleted;
+            } while (deleted == batchSize);
+        } catch (Exception e) {
+            log.warn("Could not purge expired places cache entries: {}", e.getMessage());
+        }
+        if (purged > 0) {
+            log.info("Purged {} expired places cache entries", purged);
+        }
+    }
+
+    private void persist(String cacheName, String key, Object value, Duration ttl) {
+        if (!Boolean.TRUE.equals(crawlerConfig.getCachePersistent())) {
+            return;
+        }
+        try {
+            String payload = objectMapper.writeValueAsString(value);
+            LocalDateTime now = LocalDateTime.now();
+            cacheEntryRepository.save(new PlacesCacheEntry(cacheName + ":" + key, payload, now, now.plus(ttl)));
+        } catch (Exception e) {
+            log.warn("Could not persist {} cache entry for {}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    private <T> T readPayload(String payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable cache payload", e);
+        }
+    }
+
+    private void record(String cacheName, String result) {
+        meterRegistry.counter("places.cache.lookups", "cache", cacheName, "result", result).increment();
+    }
+
+    private String normalizeLocation(String location) {
+        return location.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.CrawlerConfig;
+import com.example.nobsv2.exceptions.ErrorMessages;
+import com.example.nobsv2.exceptions.PlacesQuotaExceededException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Shared throttle for every outbound Google Places call (geocode, nearby, details) across all crawls.
+// A token bucket keeps us under the QPS limit, a daily budget stops before the quota runs out, and
+// OVER_QUERY_LIMIT answers pause the whole bucket with jittered exponential backoff before retrying.
+@Service
+@Slf4j
+public class PlacesRateLimiter {
+
+    // Google resets Places quotas at midnight Pacific time
+    private static final ZoneId QUOTA_ZONE = ZoneId.of("America/Los_Angeles");
+    static final String OVER_QUERY_LIMIT = "OVER_QUERY_LIMIT";
+
+    private final CrawlerConfig crawlerConfig;
+    private final MeterRegistry meterRegistry;
+    private final Timer waitTimer;
+    private final double permitsPerNano;
+    private final double burst;
+
+    // Token bucket; tokens go negative when callers reserve future permits
+    private double tokens;
+    private long lastRefillNanos;
+
+    // Daily budget
+    private LocalDate quotaDay;
+    private long usedToday;
+
+    public PlacesRateLimiter(CrawlerConfig crawlerConfig, MeterRegistry meterRegistry) {
+        this.crawlerConfig = crawlerConfig;
+        this.meterRegistry = meterRegistry;
+        this.permitsPerNano = crawlerConfig.getRateLimitQps() / 1_000_000_000.0;
+        this.burst = Math.max(1, crawlerConfig.getRateLimitBurst());
+        this.tokens = burst;
+        this.lastRefillNanos = nanoTime();
+        this.quotaDay = LocalDate.ofInstant(now(), QUOTA_ZONE);
+
+        this.waitTimer = Timer.builder("places.ratelimit.wait")
+                .description("Time calls spent waiting for a rate limit permit")
+                .register(meterRegistry);
+        Gauge.builder("places.quota.used", this, PlacesRateLimiter::getUsedToday)
+                .description("Google Places calls made today")
+                .register(meterRegistry);
+        Gauge.builder("places.quota.remaining", this, PlacesRateLimiter::getRemainingToday)
+                .description("Google Places calls left in today's budget")
+                .register(meterRegistry);
+    }
+
+    // Makes one Places call under the limiter. `call` returns the parsed response and `status` reads its
+    // status field; OVER_QUERY_LIMIT is retried after a backoff, anything else is returned as is.
+    public <T> T execute(String endpoint, Supplier<T> call, Function<T, ?> status) {
+        Duration backoff = crawlerConfig.getRateLimitInitialBackoff();
+        for (int attempt = 0; ; attempt++) {
+            acquire();
+            meterRegistry.counter("places.api.calls", "endpoint", endpoint).increment();
+            T response = call.get();
+            if (!OVER_QUERY_LIMIT.equals(status.apply(response))) {
+                return response;
+            }
+
+            meterRegistry.counter("places.api.throttled", "endpoint", endpoint).increment();
+            if (attempt >= crawlerConfig.getRateLimitMaxRetries()) {
+                throw new PlacesQuotaExceededException(ErrorMessages.PLACES_OVER_QUERY_LIMIT);
+            }
+            // Full jitter, and everyone waits - other threads would only hit the same limit
+            long sleepMillis = ThreadLocalRandom.current().nextLong(backoff.toMillis() / 2, backoff.toMillis() + 1);
+            log.warn("Google Places returned OVER_QUERY_LIMIT for {} - backing off {} ms (attempt {})",
+                    endpoint, sleepMillis, attempt + 1);
+            pause(sleepMillis);
+            backoff = backoff.multipliedBy(2);
+        }
+    }
+
+    // Blocks until a permit is available. Fails fast once today's budget is used up.
+    void acquire() {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a Google Places permit", e);
+            }
+        }
+        waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized long reserve() {
+        rollQuotaDay();
+        long dailyQuota = crawlerConfig.getDailyQuota();
+        if (dailyQuota > 0 && usedToday >= dailyQuota) {
+            throw new PlacesQuotaExceededException(ErrorMessages.PLACES_DAILY_QUOTA_EXCEEDED);
+        }
+        usedToday++;
+
+        long now = nanoTime();
+        refill(now);
+        tokens -= 1;
+        if (tokens >= 0 && lastRefillNanos <= now) {
+            return 0;
+        }
+        // lastRefillNanos is in the future while the bucket is paused
+        return Math.max(0, lastRefillNanos - now) + (long) (Math.max(0, -tokens) / permitsPerNano);
+    }
+
+    // Empties the bucket and stops refilling it for `millis`; the next acquire() waits it out
+    private synchronized void pause(long millis) {
+        long now = nanoTime();
+        refill(now);
+        long until = now + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (until > lastRefillNanos) {
+            tokens = Math.min(tokens, 0);
+            lastRefillNanos = until;
+        }
+    }
+
+    private void refill(long now) {
+        if (now > lastRefillNanos) {
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * permitsPerNano);
+            lastRefillNanos = now;
+        }
+    }
+
+    private void rollQuotaDay() {
+        LocalDate today = LocalDate.ofInstant(now(), QUOTA_ZONE);
+        if (!today.equals(quotaDay)) {
+            quotaDay = today;
+            usedToday = 0;
+        }
+    }
+
+    // Time sources - tests override these to drive the bucket and the quota day
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    Instant now() {
+        return Instant.now();
+    }
+
+    public synchronized long getUsedToday() {
+        rollQuotaDay();
+        return usedToday;
+    }
+
+    public synchronized long getRemainingToday() {
+        long dailyQuota = crawlerConfig.getDailyQuota();
+        return dailyQuota > 0 ? Math.max(0, dailyQuota - getUsedToday()) : -1;
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.nobsv2.business.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streaming reader for Google geocode / nearbysearch / details responses.
+// Walks the tokens once and only builds the fields the crawler uses - photos, viewports, plus codes
+// and the rest are skipped without being materialised. Fields with an unexpected JSON type read as null
+// instead of failing the whole response.
+class PlacesResponseParser {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    GeocodeResponse parseGeocode(InputStream body) throws IOException {
+        try (JsonParser p = jsonFactory.createParser(body)) {
+            startObject(p);
+            String status = null;
+            LatLng location = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "status" -> status = text(p);
+                    case "results" -> {
+                        // Only the best match is used
+                        for (JsonToken t = firstElement(p); isElement(t); t = p.nextToken()) {
+                            if (t == JsonToken.START_OBJECT && location == null) {
+                                location = readResultLocation(p);
+                            } else {
+                                p.skipChildren();
+                            }
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+            return new GeocodeResponse(status, location);
+        }
+    }
+
+    NearbyResponse parseNearby(InputStream body) throws IOException {
+        try (JsonParser p = jsonFactory.createParser(body)) {
+            startObject(p);
+            String status = null;
+            String nextPageToken = null;
+            List<NearbyPlace> results = new ArrayList<>(20);
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "status" -> status = text(p);
+                    case "next_page_token" -> nextPageToken = text(p);
+                    case "results" -> {
+                        for (JsonToken t = firstElement(p); isElement(t); t = p.nextToken()) {
+                            if (t == JsonToken.START_OBJECT) {
+                                results.add(readNearbyPlace(p));
+                            } else {
+                                p.skipChildren();
+                            }
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+            return new NearbyResponse(status, nextPageToken, results);
+        }
+    }
+
+    DetailsResponse parseDetails(InputStream body) throws IOException {
+        try (JsonParser p = jsonFactory.createParser(body)) {
+            startObject(p);
+            String status = null;
+            PlaceDetails result = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "status" -> status = text(p);
+                    case "result" -> result = p.currentToken() == JsonToken.START_OBJECT ? readPlaceDetails(p) : skip(p);
+                    default -> p.skipChildren();
+                }
+            }
+            return new DetailsResponse(status, result);
+        }
+    }
+
+    private NearbyPlace readNearbyPlace(JsonParser p) throws IOException {
+        String placeId = null;
+        String name = null;
+        LatLng location = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "place_id" -> placeId = text(p);
+                case "name" -> name = text(p);
+                case "geometry" -> location = readGeometry(p);
+                default -> p.skipChildren();
+            }
+        }
+        return new NearbyPlace(placeId, name, location);
+    }
+
+    private PlaceDetails readPlaceDetails(JsonParser p) throws IOException {
+        String name = null;
+        String formattedAddress = null;
+        String phone = null;
+        String website = null;
+        Double rating = null;
+        Integer userRatingsTotal = null;
+        String businessStatus = null;
+        List<String> types = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "name" -> name = text(p);
+                case "formatted_address" -> formattedAddress = text(p);
+                case "formatted_phone_number" -> phone = text(p);
+                case "website" -> website = text(p);
+                case "rating" -> rating = decimal(p);
+                case "user_ratings_total" -> userRatingsTotal = integer(p);
+                case "business_status" -> businessStatus = text(p);
+                case "types" -> types = textArray(p);
+                default -> p.skipChildren();
+            }
+        }
+        return new PlaceDetails(name, formattedAddress, phone, website, rating, userRatingsTotal, businessStatus, types);
+    }
+
+    // results[i] -> geometry -> location
+    private LatLng readResultLocation(JsonParser p) throws IOException {
+        LatLng location = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if ("geometry".equals(field)) {
+                location = readGeometry(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return location;
+    }
+
+    private LatLng readGeometry(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            return skip(p);
+        }
+        LatLng location = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if ("location".equals(field) && p.currentToken() == JsonToken.START_OBJECT) {
+                location = readLatLng(p);
+            } else {
+                p.skipChildren();
+            }
+        }
+        return location;
+    }
+
+    private LatLng readLatLng(JsonParser p) throws IOException {
+        Double lat = null;
+        Double lng = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "lat" -> lat = decimal(p);
+                case "lng" -> lng = decimal(p);
+                default -> p.skipChildren();
+            }
+        }
+        return lat != null && lng != null ? new LatLng(lat, lng) : null;
+    }
+
+    private static void startObject(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(p, "Expected a JSON object");
+        }
+    }
+
+    // Array iteration: firstElement() steps into the array the parser is on (or skips a non-array value),
+    // isElement() is false once the array ends
+    private static JsonToken firstElement(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return null;
+        }
+        return p.nextToken();
+    }
+
+    private static boolean isElement(JsonToken t) {
+        return t != null && t != JsonToken.END_ARRAY;
+    }
+
+    private static <T> T skip(JsonParser p) throws IOException {
+        p.skipChildren();
+        return null;
+    }
+
+    private static String text(JsonParser p) throws IOException {
+        return p.currentToken() == JsonToken.VALUE_STRING ? p.getText() : skip(p);
+    }
+
+    private static Double decimal(JsonParser p) throws IOException {
+        return p.currentToken().isNumeric() ? p.getDoubleValue() : skip(p);
+    }
+
+    private static Integer integer(JsonParser p) throws IOException {
+        return p.currentToken().isNumeric() ? p.getIntValue() : skip(p);
+    }
+
+    private static List<String> textArray(JsonParser p) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            return skip(p);
+        }
+        List<String> values = new ArrayList<>();
+        for (JsonToken t = p.nextToken(); isElement(t); t = p.nextToken()) {
+            if (t == JsonToken.VALUE_STRING) {
+                values.add(p.getText());
+            } else {
+                p.skipChildren();
+            }
+        }
+        return values;
+    }
+
+    record LatLng(double lat, double lng) {}
+
+    record GeocodeResponse(String status, LatLng location) {}
+
+    record NearbyPlace(String placeId, String name, LatLng location) {}
+
+    record NearbyResponse(String status, String nextPageToken, List<NearbyPlace> results) {}
+
+    record PlaceDetails(String name, String formattedAddress, String phone, String website, Double rating,
+                        Integer userRatingsTotal, String businessStatus, List<String> types) {}
+
+    record DetailsResponse(String status, PlaceDetails result) {}
+}
@@ -0,0 +1,90 @@
+package com.example.nobsv2.business.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Search/replace hunks returned by Claude for small website edits:
+//   <<<<<<< SEARCH
+//   exact lines from the current code
+//   =======
+//   the lines that replace them
+//   >>>>>>> REPLACE
+// Hunks are applied in order; each search block must match the code exactly once,
+// otherwise the whole patch is rejected and nothing is changed.
+final class SearchReplacePatch {
+
+    private static final String SEARCH = "<<<<<<< SEARCH";
+    private static final String DIVIDER = "=======";
+    private static final String REPLACE = ">>>>>>> REPLACE";
+
+    private final List<Hunk> hunks;
+
+    private SearchReplacePatch(List<Hunk> hunks) {
+        this.hunks = hunks;
+    }
+
+    record Hunk(String search, String replace) {}
+
+    // Hunks found in the response - empty if Claude didn't answer with a patch.
+    // Throws IllegalArgumentException for a hunk that is started but not finished.
+    static SearchReplacePatch parse(String response) {
+        List<Hunk> hunks = new ArrayList<>();
+        String[] lines = response.replace("\r\n", "\n").split("\n", -1);
+        int i = 0;
+        while (i < lines.length) {
+            if (!lines[i].strip().equals(SEARCH)) {
+                i++;
+                continue;
+            }
+            StringBuilder search = new StringBuilder();
+            StringBuilder replace = new StringBuilder();
+            i = collect(lines, i + 1, DIVIDER, search);
+            i = collect(lines, i + 1, REPLACE, replace);
+            hunks.add(new Hunk(search.toString(), replace.toString()));
+            i++;
+        }
+        return new SearchReplacePatch(hunks);
+    }
+
+    // Appends lines up to the end marker, returns the marker's index
+    private static int collect(String[] lines, int from, String end, StringBuilder into) {
+        for (int i = from; i < lines.length; i++) {
+            if (lines[i].strip().equals(end)) {
+                return i;
+            }
+            if (i > from) {
+                into.append('\n');
+            }
+            into.append(lines[i]);
+        }
+        throw new IllegalArgumentException("Patch hunk is missing " + end);
+    }
+
+    boolean isEmpty() {
+        return hunks.isEmpty();
+    }
+
+    int size() {
+        return hunks.size();
+    }
+
+    // Throws IllegalArgumentException if a search block is empty, missing or ambiguous
+    String apply(String code) {
+        String patched = code.replace("\r\n", "\n");
+        for (int h = 0; h < hunks.size(); h++) {
+            Hunk hunk = hunks.get(h);
+            if (hunk.search().isBlank()) {
+                throw new IllegalArgumentException("Hunk " + (h + 1) + " has an empty search block");
+            }
+            int at = patched.indexOf(hunk.search());
+            if (at < 0) {
+                throw new IllegalArgumentException("Hunk " + (h + 1) + " does not match the current code");
+            }
+            if (patched.indexOf(hunk.search(), at + 1) >= 0) {
+                throw new IllegalArgumentException("Hunk " + (h + 1) + " matches the current code more than once");
+            }
+            patched = patched.substring(0, at) + hunk.replace() + patched.substring(at + hunk.search().length());
+        }
+        return patched;
+    }
+}
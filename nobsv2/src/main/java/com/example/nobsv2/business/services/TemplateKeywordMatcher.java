@@ -0,0 +1,179 @@
+package com.example.nobsv2.business.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Picks a template from a business's Google types in one pass. The types string is split into tokens
+// ("beauty_salon,spa" -> beauty, salon, spa) and each token is looked up in a table built once from the rules.
+// Every hit adds its weight to its template; the highest score wins, ties go to the template listed first.
+// Whole tokens only, so "it" no longer matches inside "furniture" and "art" inside "apartment".
+// A multi-word keyword ("real-estate", "real estate") matches those words in a row ("real_estate_agency").
+final class TemplateKeywordMatcher {
+
+    private final String[] templates;
+    private final String fallback;
+    // Open-addressing table keyed by the String hash of a keyword's last word, probed in place
+    // so tokens are never copied out
+    private final String[] slotKeywords;
+    private final Keyword[][] slotEntries;  // every keyword ending in that word
+    private final int mask;
+
+    // preceding: the keyword's other words, nearest first; pairs: flattened (template index, weight)
+    private record Keyword(String[] preceding, int[] pairs) {}
+
+    // rules: template name -> (keyword -> weight), in priority order
+    TemplateKeywordMatcher(Map<String, Map<String, Integer>> rules, String fallback) {
+        this.templates = rules.keySet().toArray(new String[0]);
+        this.fallback = fallback;
+
+        // words of the keyword joined by a space -> pairs
+        Map<String, int[]> keywords = new LinkedHashMap<>();
+        for (int t = 0; t < templates.length; t++) {
+            for (Map.Entry<String, Integer> rule : rules.get(templates[t]).entrySet()) {
+                List<String> words = words(rule.getKey());
+                if (rule.getValue() == null || rule.getValue() <= 0 || words.isEmpty()) {
+                    continue;
+                }
+                String keyword = String.join(" ", words);
+                int[] existing = keywords.getOrDefault(keyword, new int[0]);
+                int[] pairs = Arrays.copyOf(existing, existing.length + 2);
+                pairs[existing.length] = t;
+                pairs[existing.length + 1] = rule.getValue();
+                keywords.put(keyword, pairs);
+            }
+        }
+
+        Map<String, List<Keyword>> byLastWord = new LinkedHashMap<>();
+        keywords.forEach((keyword, pairs) -> {
+            String[] words = keyword.split(" ");
+            String[] preceding = new String[words.length - 1];
+            for (int w = 0; w < preceding.length; w++) {
+                preceding[w] = words[words.length - 2 - w];
+            }
+            byLastWord.computeIfAbsent(words[words.length - 1], k -> new ArrayList<>()).add(new Keyword(preceding, pairs));
+        });
+
+        int size = Integer.highestOneBit(Math.max(byLastWord.size(), 1) * 4 - 1) << 1;
+        this.mask = size - 1;
+        this.slotKeywords = new String[size];
+        this.slotEntries = new Keyword[size][];
+        byLastWord.forEach((word, entries) -> {
+            int slot = spread(word.hashCode()) & mask;
+            while (slotKeywords[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            slotKeywords[slot] = word;
+            slotEntries[slot] = entries.toArray(new Keyword[0]);
+        });
+    }
+
+    String match(String types) {
+        if (types == null || types.isEmpty() || templates.length == 0) {
+            return fallback;
+        }
+        String lower = types.toLowerCase(Locale.ROOT);  // same instance when already lowercase, as Google types are
+        int[] scores = new int[templates.length];
+        boolean hit = false;
+        int start = -1;
+        int hash = 0;
+        for (int i = 0, n = lower.length(); i <= n; i++) {
+            char c = i < n ? lower.charAt(i) : ',';
+            if (isWordChar(c)) {
+                if (start < 0) {
+                    start = i;
+                    hash = 0;
+                }
+                hash = 31 * hash + c;
+            } else if (start >= 0) {
+                Keyword[] entries = lookup(lower, start, i - start, hash);
+                if (entries != null) {
+                    for (Keyword keyword : entries) {
+                        if (keyword.preceding().length > 0 && !precededBy(lower, start, keyword.preceding())) {
+                            continue;
+                        }
+                        int[] pairs = keyword.pairs();
+                        for (int p = 0; p < pairs.length; p += 2) {
+                            scores[pairs[p]] += pairs[p + 1];
+                        }
+                        hit = true;
+                    }
+                }
+                start = -1;
+            }
+        }
+        if (!hit) {
+            return fallback;
+        }
+
+        int best = 0;
+        for (int t = 1; t < scores.length; t++) {
+            if (scores[t] > scores[best]) {
+                best = t;
+            }
+        }
+        return templates[best];
+    }
+
+    List<String> templates() {
+        return List.of(templates);
+    }
+
+    private Keyword[] lookup(String text, int offset, int length, int hash) {
+        for (int slot = spread(hash) & mask; slotKeywords[slot] != null; slot = (slot + 1) & mask) {
+            String keyword = slotKeywords[slot];
+            if (keyword.length() == length && text.regionMatches(offset, keyword, 0, length)) {
+                return slotEntries[slot];
+            }
+        }
+        return null;
+    }
+
+    // Whether the tokens right before `start` are `words` (nearest first)
+    private static boolean precededBy(String text, int start, String[] words) {
+        int end = start;
+        for (String word : words) {
+            while (end > 0 && !isWordChar(text.charAt(end - 1))) {
+                end--;
+            }
+            int begin = end;
+            while (begin > 0 && isWordChar(text.charAt(begin - 1))) {
+                begin--;
+            }
+            if (begin == end || end - begin != word.length() || !text.regionMatches(begin, word, 0, word.length())) {
+                return false;
+            }
+            end = begin;
+        }
+        return true;
+    }
+
+    // "Real-Estate" -> [real, estate]
+    private static List<String> words(String keyword) {
+        List<String> words = new ArrayList<>();
+        String lower = keyword.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0, n = lower.length(); i <= n; i++) {
+            if (i < n && isWordChar(lower.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || (c > 0x7f && Character.isLetterOrDigit(c));
+    }
+}
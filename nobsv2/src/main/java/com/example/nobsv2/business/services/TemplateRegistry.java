@@ -0,0 +1,141 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.TemplateConfig;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// Website templates, read once at startup from every TemplateSource and parsed into placeholder templates.
+// The registry is an immutable map that is swapped whole on reload, so lookups never lock or touch the disk.
+// A template that fails to load or parse on reload keeps its previous version.
+@Service
+@Slf4j
+public class TemplateRegistry {
+
+    private final List<TemplateSource> sources;
+    private final TemplateConfig templateConfig;
+    private volatile Map<String, LoadedTemplate> templates;
+
+    public TemplateRegistry(List<TemplateSource> sources, TemplateConfig templateConfig) {
+        this.sources = sources;
+        this.templateConfig = templateConfig;
+        this.templates = loadAll(Map.of());
+        if (templates.isEmpty()) {
+            throw new IllegalStateException("No website templates found");
+        }
+        log.info("✅ Loaded {} website templates: {}", templates.size(), templates.keySet());
+    }
+
+    public Optional<LoadedTemplate> find(String name) {
+        return Optional.ofNullable(templates.get(name));
+    }
+
+    public LoadedTemplate get(String name) {
+        return find(name).orElseThrow(() -> new RuntimeException("Template not found: " + name));
+    }
+
+    public Collection<LoadedTemplate> all() {
+        return templates.values();
+    }
+
+    // Re-reads every source and swaps in the new registry; returns how many templates were added or changed
+    public synchronized int reload() {
+        Map<String, LoadedTemplate> previous = templates;
+        Map<String, LoadedTemplate> next = loadAll(previous);
+        int changed = (int) next.values().stream().filter(t -> previous.get(t.getName()) != t).count();
+        templates = next;
+        if (changed > 0 || next.size() != previous.size()) {
+            log.info("Reloaded website templates: {} added or changed, {} total", changed, next.size());
+        }
+        return changed;
+    }
+
+    @Scheduled(fixedDelayString = "${templates.reload-interval:30s}")
+    public void hotReload() {
+        if (Boolean.TRUE.equals(templateConfig.getHotReload())) {
+            reload();
+        }
+    }
+
+    private Map<String, LoadedTemplate> loadAll(Map<String, LoadedTemplate> previous) {
+        Map<String, LoadedTemplate> next = new LinkedHashMap<>();
+        for (TemplateSource source : sources) {
+            Map<String, String> texts;
+            try {
+                texts = source.load();
+            } catch (Exception e) {
+                log.error("❌ Could not read templates from {}: {}", source.name(), e.getMessage());
+                previous.values().stream()
+                        .filter(t -> t.getSource().equals(source.name()))
+                        .forEach(t -> next.put(t.getName(), t));
+                continue;
+            }
+            texts.forEach((name, text) -> {
+                LoadedTemplate old = previous.get(name);
+                if (old != null && old.getSource().equals(source.name()) && old.getText().equals(text)) {
+                    next.put(name, old);
+                    return;
+                }
+                try {
+                    next.put(name, new LoadedTemplate(name, source.name(), text));
+                } catch (IllegalArgumentException e) {
+                    log.error("❌ Template {} from {} is invalid: {}", name, source.name(), e.getMessage());
+                    if (old != null) {
+                        next.put(name, old);
+                    }
+                }
+            });
+        }
+        return Collections.unmodifiableMap(next);
+    }
+
+    // One parsed template with its precomputed metadata
+    @Getter
+    public static final class LoadedTemplate {
+        private final String name;
+        private final String source;
+        private final String text;
+        private final int length;
+        private final String sha256;
+        private final Set<String> placeholders;
+        @Getter(AccessLevel.NONE)
+        private final PlaceholderTemplate compiled;
+
+        LoadedTemplate(String name, String source, String text) {
+            this.name = name;
+            this.source = source;
+            this.text = text;
+            this.length = text.length();
+            this.sha256 = sha256(text);
+            this.compiled = PlaceholderTemplate.compile(text);
+            this.placeholders = Collections.unmodifiableSet(compiled.placeholders());
+        }
+
+        String fill(Map<String, String> values) {
+            return compiled.fill(values);
+        }
+
+        private static String sha256(String text) {
+            try {
+                return HexFormat.of().formatHex(
+                        MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -1,87 +1,46 @@
 package com.example.nobsv2.business.services;
 
+import com.example.nobsv2.business.TemplateSelectionRules;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 @Service
 @Slf4j
 public class TemplateSelectionService {
 
-    public enum TemplateType {
-        LUXURY,
-        LOCAL,
-        CREATIVE,
-        PROFESSIONAL,
-        MODERN
-    }
-
-    public TemplateType selectTemplateForBusiness(String businessTypes) {
-        if (businessTypes == null || businessTypes.isEmpty()) {
-            return TemplateType.PROFESSIONAL;
-        }
-
-        String types = businessTypes.toLowerCase();
-
-        // Luxury: High-end services
-        if (types.contains("spa") || types.contains("salon") ||
-                types.contains("jewelry") || types.contains("hotel") ||
-                types.contains("luxury") || types.contains("boutique")) {
-            log.info("✨ Selected LUXURY template");
-            return TemplateType.LUXURY;
-        }
-
-        // Local: Community-focused businesses
-        if (types.contains("restaurant") || types.contains("cafe") ||
-                types.contains("bakery") || types.contains("bar") ||
-                types.contains("food") || types.contains("store") ||
-                types.contains("shop") || types.contains("market")) {
-            log.info("🏘️ Selected LOCAL template");
-            return TemplateType.LOCAL;
-        }
-
-        // Creative: Design and marketing agencies
-        if (types.contains("marketing") || types.contains("design") ||
-                types.contains("creative") || types.contains("advertising") ||
-                types.contains("agency") || types.contains("media") ||
-                types.contains("photography") || types.contains("art")) {
-            log.info("🎨 Selected CREATIVE template");
-            return TemplateType.CREATIVE;
+    private final TemplateRegistry templateRegistry;
+    private final TemplateKeywordMatcher matcher;
+    private final String fallback;
+
+    public TemplateSelectionService(TemplateRegistry templateRegistry, TemplateSelectionRules rules) {
+        this.templateRegistry = templateRegistry;
+        this.fallback = rules.getFallback();
+        this.matcher = new TemplateKeywordMatcher(rules.orderedRules(), rules.getFallback());
+        for (String template : matcher.templates()) {
+            if (templateRegistry.find(template).isEmpty()) {
+                log.warn("Template selection rules name template '{}', which is not loaded", template);
+            }
         }
+    }
 
-        // Modern: Tech and SaaS companies
-        if (types.contains("tech") || types.contains("software") ||
-                types.contains("saas") || types.contains("startup") ||
-                types.contains("digital") || types.contains("web") ||
-                types.contains("app") || types.contains("it")) {
-            log.info("💻 Selected MODERN template");
-            return TemplateType.MODERN;
+    // Template name for a business's comma-separated Google types (see templates.selection.rules)
+    public String selectTemplateForBusiness(String businessTypes) {
+        String template = matcher.match(businessTypes);
+        if (templateRegistry.find(template).isEmpty()) {
+            template = fallback;
         }
-
-        // Professional: Default for services
-        log.info("💼 Selected PROFESSIONAL template");
-        return TemplateType.PROFESSIONAL;
+        log.debug("Selected {} template for types {}", template, businessTypes);
+        return template;
     }
 
-    public String loadTemplate(TemplateType templateType) {
-        try {
-            String filename = templateType.name().toLowerCase() + ".txt";
-            ClassPathResource resource = new ClassPathResource("templates/" + filename);
-
-            String templateCode = new String(
-                    resource.getInputStream().readAllBytes(),
-                    StandardCharsets.UTF_8
-            );
-
-            log.info("✅ Loaded {} template ({} characters)", templateType, templateCode.length());
-            return templateCode;
+    public String loadTemplate(String template) {
+        return templateRegistry.get(template).getText();
+    }
 
-        } catch (IOException e) {
-            log.error("❌ Failed to load template: {}", templateType, e);
-            throw new RuntimeException("Template not found: " + templateType, e);
-        }
+    // Fills the template's [[placeholder]] markers with the given JS literals - no LLM involved
+    public String fillTemplate(String template, Map<String, String> values) {
+        return templateRegistry.get(template).fill(values);
     }
-}
\ No newline at end of file
+}
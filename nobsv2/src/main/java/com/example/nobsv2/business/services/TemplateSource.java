@@ -0,0 +1,15 @@
+package com.example.nobsv2.business.services;
+
+import java.io.IOException;
+import java.util.Map;
+
+// Where website templates come from. Every TemplateSource bean is read by TemplateRegistry in @Order;
+// a later source's template replaces an earlier one with the same name.
+public interface TemplateSource {
+
+    // Shown in logs and template metadata
+    String name();
+
+    // Template name (file name without .txt, lower case) -> template text
+    Map<String, String> load() throws IOException;
+}
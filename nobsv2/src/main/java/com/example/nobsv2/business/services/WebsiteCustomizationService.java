@@ -1,6 +1,8 @@
 package com.example.nobsv2.business.services;
 
+import com.example.nobsv2.ai.ClaudeConfig;
 import com.example.nobsv2.ai.service.ClaudeApiService;
+import com.example.nobsv2.ai.service.ClaudeRequestDispatcher;
 import com.example.nobsv2.business.model.Business;
 import com.example.nobsv2.business.repository.BusinessRepository;
 import lombok.RequiredArgsConstructor;
@@ -8,13 +10,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class WebsiteCustomizationService {
 
     private final ClaudeApiService claudeApiService;
+    private final ClaudeRequestDispatcher claudeRequestDispatcher;
     private final BusinessRepository businessRepository;
+    private final ClaudeConfig claudeConfig;
 
     @Transactional
     public CustomizationResult customize(Integer businessId, String userRequest, String username) {
@@ -29,16 +35,10 @@ public class WebsiteCustomizationService {
             throw new RuntimeException("No website generated yet");
         }
 
-        // Build prompts - UPDATED to get explanation
-        String systemPrompt = buildSystemPrompt();
-        String userPrompt = buildUserPrompt(currentCode, userRequest, business.getName());
-
-        // Call Claude API
-        log.info("📡 Sending customization request to Claude API...");
-        String claudeResponse = claudeApiService.generateContent(userPrompt, systemPrompt);
-
-        // Parse response - extract explanation and code
-        CustomizationResult result = parseClaudeResponse(claudeResponse);
+        // Small edits come back as search/replace hunks; anything the patch can't handle gets a full rewrite
+        CustomizationResult result = Boolean.TRUE.equals(claudeConfig.getCustomizePatchMode())
+                ? customizeWithPatch(currentCode, userRequest, business.getName(), username)
+                : rewrite(currentCode, userRequest, business.getName(), username);
 
         // Save updated code
         business.setGeneratedWebsiteCode(result.getUpdatedCode());
@@ -49,20 +49,94 @@ public class WebsiteCustomizationService {
         return result;
     }
 
+    private CustomizationResult customizeWithPatch(String currentCode, String userRequest, String businessName, String username) {
+        log.info("📡 Sending patch customization request to Claude API...");
+        String response = claudeRequestDispatcher.call(username, () -> claudeApiService.generateContent(
+                buildPatchUserPrompt(currentCode, userRequest, businessName), buildPatchSystemPrompt()));
+
+        try {
+            SearchReplacePatch patch = SearchReplacePatch.parse(response);
+            if (patch.isEmpty()) {
+                CodeFenceExtractor.Extracted reply = CodeFenceExtractor.extract(response);
+                if (reply.fenced()) {
+                    // Claude sent the whole component anyway
+                    return toResult(reply);
+                }
+                throw new IllegalArgumentException("Response contains no patch");
+            }
+            String updatedCode = patch.apply(currentCode);
+            validatePatchedCode(currentCode, updatedCode);
+            log.info("🩹 Applied {} patch hunks ({} -> {} chars)", patch.size(), currentCode.length(), updatedCode.length());
+            return new CustomizationResult(cleanExplanation(response), updatedCode);
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ Patch could not be applied ({}), falling back to full rewrite", e.getMessage());
+            return rewrite(currentCode, userRequest, businessName, username);
+        }
+    }
+
+    private CustomizationResult rewrite(String currentCode, String userRequest, String businessName, String username) {
+        String systemPrompt = buildSystemPrompt();
+        String userPrompt = buildUserPrompt(currentCode, userRequest, businessName);
+
+        log.info("📡 Sending customization request to Claude API...");
+        String claudeResponse = claudeRequestDispatcher.call(username, () -> claudeApiService.generateContent(userPrompt, systemPrompt));
+
+        return parseClaudeResponse(claudeResponse);
+    }
+
+    // A patch may only touch the component body: imports stay as they are, the export stays, braces stay balanced
+    private void validatePatchedCode(String currentCode, String updatedCode) {
+        if (updatedCode.isBlank() || !updatedCode.contains("export default")) {
+            throw new IllegalArgumentException("patched code lost its component export");
+        }
+        if (!importLines(currentCode).equals(importLines(updatedCode))) {
+            throw new IllegalArgumentException("patch changed import statements");
+        }
+        if (braceBalance(currentCode) != braceBalance(updatedCode)) {
+            throw new IllegalArgumentException("patch left unbalanced braces");
+        }
+    }
+
+    private List<String> importLines(String code) {
+        return code.lines().map(String::strip).filter(line -> line.startsWith("import ")).toList();
+    }
+
+    // Curly braces only: JSX text can't hold a bare brace, while parentheses and brackets show up in copy
+    // ("(optional)", "[sic]"). A brace inside a string literal can still trip this - that costs a rewrite, not a bad save.
+    private int braceBalance(String code) {
+        int balance = 0;
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c == '{') {
+                balance++;
+            } else if (c == '}') {
+                balance--;
+            }
+        }
+        return balance;
+    }
+
+    // Explanation is whatever Claude wrote before the first hunk or code block
+    private String cleanExplanation(String response) {
+        int end = response.length();
+        for (String marker : new String[]{"<<<<<<<", "```"}) {
+            int at = response.indexOf(marker);
+            if (at >= 0 && at < end) {
+                end = at;
+            }
+        }
+        String explanation = response.substring(0, end).replaceAll("\\*\\*", "").trim();
+        return explanation.isEmpty() ? "I've updated your website! Check the preview." : explanation;
+    }
+
     // NEW: Parse Claude's response to get both explanation and code
     private CustomizationResult parseClaudeResponse(String response) {
-        String explanation = "";
-        String code = "";
-
-        // Look for explanation before code block
-        if (response.contains("```")) {
-            explanation = response.substring(0, response.indexOf("```")).trim();
-            code = extractCode(response);
-        } else {
-            // If no code block found, treat entire response as code
-            code = response.trim();
-            explanation = "I've updated your website!";
-        }
+        return toResult(CodeFenceExtractor.extract(response));
+    }
+
+    private CustomizationResult toResult(CodeFenceExtractor.Extracted reply) {
+        // If no code block found, the entire response is the code
+        String explanation = reply.fenced() ? reply.explanation() : "I've updated your website!";
 
         // Clean up explanation (remove any markdown)
         explanation = explanation.replaceAll("\\*\\*", "").trim();
@@ -70,7 +144,7 @@ public class WebsiteCustomizationService {
             explanation = "I've updated your website! Check the preview.";
         }
 
-        return new CustomizationResult(explanation, code);
+        return new CustomizationResult(explanation, reply.code());
     }
 
     // NEW: Result class
@@ -81,20 +155,7 @@ public class WebsiteCustomizationService {
         private String updatedCode;
     }
 
-    private String buildSystemPrompt() {
-        return """
-        You are a professional web designer helping users customize their websites.
-        
-        RESPONSE FORMAT - VERY IMPORTANT:
-        1. First, write a brief, friendly explanation of what you changed (2-3 sentences)
-        2. Then, provide the complete updated code in a code block
-        
-        Example response:
-        I've changed the color scheme to blue and white as you requested! The hero section now uses blue-600 for the background and white text. I also updated the buttons to match the new color palette.
-```tsx
-        [complete updated code here]
-```
-        
+    private static final String GUIDELINES = """
         CRITICAL RULES:
         - Keep the overall structure and layout intact
         - Only change what the user specifically requests
@@ -121,9 +182,25 @@ public class WebsiteCustomizationService {
         ❌ Adding external dependencies
         ❌ Changing import statements
         ❌ Complex restructuring
+        """;
+
+    private String buildSystemPrompt() {
+        return """
+        You are a professional web designer helping users customize their websites.
         
+        RESPONSE FORMAT - VERY IMPORTANT:
+        1. First, write a brief, friendly explanation of what you changed (2-3 sentences)
+        2. Then, provide the complete updated code in a code block
+        
+        Example response:
+        I've changed the color scheme to blue and white as you requested! The hero section now uses blue-600 for the background and white text. I also updated the buttons to match the new color palette.
+```tsx
+        [complete updated code here]
+```
+        
+        %s
         Always start with a friendly explanation, then provide the code.
-        """;
+        """.formatted(GUIDELINES);
     }
 
     private String buildUserPrompt(String currentCode, String userRequest, String businessName) {
@@ -143,27 +220,55 @@ public class WebsiteCustomizationService {
         """, businessName, userRequest, currentCode);
     }
 
-    private String extractCode(String generatedContent) {
-        String code = generatedContent.trim();
+    private String buildPatchSystemPrompt() {
+        return """
+        You are a professional web designer helping users customize their websites.
 
-        // Remove markdown code blocks if present
-        if (code.contains("```tsx")) {
-            code = code.substring(code.indexOf("```tsx") + 6);
-            if (code.contains("```")) {
-                code = code.substring(0, code.indexOf("```"));
-            }
-        } else if (code.contains("```jsx")) {
-            code = code.substring(code.indexOf("```jsx") + 6);
-            if (code.contains("```")) {
-                code = code.substring(0, code.indexOf("```"));
-            }
-        } else if (code.contains("```")) {
-            code = code.substring(code.indexOf("```") + 3);
-            if (code.contains("```")) {
-                code = code.substring(0, code.lastIndexOf("```"));
-            }
-        }
+        RESPONSE FORMAT - VERY IMPORTANT:
+        1. First, write a brief, friendly explanation of what you changed (2-3 sentences)
+        2. Then, list ONLY the edits as search/replace blocks - never the complete code
+
+        Each edit is one block:
+        <<<<<<< SEARCH
+        exact lines copied from the current code
+        =======
+        the lines that replace them
+        >>>>>>> REPLACE
+
+        Example response:
+        I've made the main button blue with white text, so it stands out more against the hero background.
+        <<<<<<< SEARCH
+                      <button className="bg-amber-600 text-white px-8 py-3 rounded-lg">
+        =======
+                      <button className="bg-blue-600 text-white px-8 py-3 rounded-lg">
+        >>>>>>> REPLACE
 
-        return code.trim();
+        PATCH RULES:
+        - SEARCH must be copied character for character from the current code, including indentation
+        - SEARCH must match exactly one place - add a neighbouring line if the text appears more than once
+        - Keep each block small: just the lines that change plus any needed to make it unique
+        - Use several blocks for changes in different places, in the order they appear in the code
+        - Do not wrap the blocks in a code block
+
+        %s
+        Always start with a friendly explanation, then provide the search/replace blocks.
+        """.formatted(GUIDELINES);
+    }
+
+    private String buildPatchUserPrompt(String currentCode, String userRequest, String businessName) {
+        return String.format("""
+        The user wants to customize their website for "%s".
+
+        USER REQUEST: %s
+
+        CURRENT WEBSITE CODE:
+        %s
+
+        TASK:
+        1. First, explain what you're going to change in a friendly way (2-3 sentences)
+        2. Then provide the search/replace blocks for the change
+
+        Make the changes professional and polished.
+        """, businessName, userRequest, currentCode);
     }
 }
\ No newline at end of file
@@ -1,17 +1,32 @@
 package com.example.nobsv2.business.services;
 
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.ai.dto.ClaudeDTO;
 import com.example.nobsv2.ai.service.ClaudeApiService;
+import com.example.nobsv2.ai.service.ClaudeRequestDispatcher;
 import com.example.nobsv2.business.model.Business;
 import com.example.nobsv2.business.repository.BusinessRepository;
 import com.example.nobsv2.stripe.StripeService;
 import com.example.nobsv2.user.UserService;
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class WebsiteGenerationService {
 
@@ -21,12 +36,77 @@ public class WebsiteGenerationService {
     private final UserService userService;
     private final StripeService stripeService;
     private final TemplateSelectionService templateSelectionService;
+    private final ClaudeConfig claudeConfig;
+    private final ClaudeRequestDispatcher claudeRequestDispatcher;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService streamExecutor;
+
+    public WebsiteGenerationService(ClaudeApiService claudeApiService,
+                                    BusinessRepository businessRepository,
+                                    UpdateBusinessService updateBusinessService,
+                                    UserService userService,
+                                    StripeService stripeService,
+                                    TemplateSelectionService templateSelectionService,
+                                    ClaudeConfig claudeConfig,
+                                    ClaudeRequestDispatcher claudeRequestDispatcher) {
+        this.claudeApiService = claudeApiService;
+        this.businessRepository = businessRepository;
+        this.updateBusinessService = updateBusinessService;
+        this.userService = userService;
+        this.stripeService = stripeService;
+        this.templateSelectionService = templateSelectionService;
+        this.claudeConfig = claudeConfig;
+        this.claudeRequestDispatcher = claudeRequestDispatcher;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.streamExecutor = Executors.newFixedThreadPool(claudeConfig.getStreamPoolSize(), r -> {
+            Thread t = new Thread(r, "website-stream-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streamExecutor.shutdownNow();
+    }
 
     @Transactional
     public WebsiteGenerationResult generateWebsite(Integer businessId) {
+        return generate(businessId, userService.getCurrentUsername(), null);
+    }
+
+    // For background callers (bulk jobs) that have no security context - the username is captured up front
+    public WebsiteGenerationResult generateWebsite(Integer businessId, String username) {
+        return generate(businessId, username, null);
+    }
+
+    // Streams the generation to the browser as server-sent events: Claude's copy - the raw JSON the template is
+    // filled from, not code - as it is written, as "chunk" events ({"text": ...}), then one "complete" event with
+    // the WebsiteGenerationResult and the filled-in code.
+    // The code is saved exactly like generateWebsite, even if the browser disconnects halfway.
+    public SseEmitter streamWebsite(Integer businessId, String username) {
+        SseEmitter emitter = new SseEmitter(claudeConfig.getStreamTimeout().toMillis());
+        streamExecutor.execute(() -> {
+            WebsiteGenerationResult result = generate(businessId, username,
+                    text -> send(emitter, "chunk", new StreamChunk(text)));
+            send(emitter, "complete", result);
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    private void send(SseEmitter emitter, String event, Object data) {
         try {
-            String username = userService.getCurrentUsername();
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Browser went away - keep generating so the code still gets saved
+        }
+    }
 
+    // Claude only writes the copy (small JSON); the template is filled locally.
+    // onChunk, if set, gets the copy as it streams in.
+    private WebsiteGenerationResult generate(Integer businessId, String username, Consumer<String> onChunk) {
+        try {
             if (!stripeService.canPerformAction(username, StripeService.ActionType.GENERATE_WEBSITE)) {
                 log.warn("⚠️ User {} reached website generation limit", username);
                 WebsiteGenerationResult limitResult = new WebsiteGenerationResult();
@@ -41,23 +121,26 @@ public class WebsiteGenerationService {
 
             log.info("🎨 Generating website for: {}", business.getName());
 
-            // SELECT TEMPLATE
-            TemplateSelectionService.TemplateType templateType =
-                    templateSelectionService.selectTemplateForBusiness(business.getTypes());
-
-            String templateCode = templateSelectionService.loadTemplate(templateType);
-
-            // BUILD PROMPTS
-            String prompt = buildPrompt(business, templateType, templateCode);
-            String systemPrompt = buildSystemPrompt();
-
-            // GENERATE
-            String generatedCode = claudeApiService.generateContent(prompt, systemPrompt);
-            String cleanCode = extractCode(generatedCode);
+            // GENERATE COPY
+            ClaudeApiService.BatchPrompt prompt = buildGenerationPrompt(business);
+            String copy;
+            if (onChunk == null) {
+                String reply = claudeRequestDispatcher.call(username,
+                        () -> claudeApiService.generateContent(prompt.content(), prompt.system()));
+                copy = CodeFenceExtractor.extract(reply).code();
+            } else {
+                // The extractor sees each delta once, so the JSON is ready as soon as the stream ends
+                CodeFenceExtractor extractor = new CodeFenceExtractor();
+                claudeRequestDispatcher.call(username,
+                        () -> claudeApiService.streamContent(prompt.content(), prompt.system(), text -> {
+                            extractor.feed(text);
+                            onChunk.accept(text);
+                        }));
+                copy = extractor.finish().code();
+            }
 
-            // SAVE
-            String previewUrl = "https://springbootproject-production-9187.up.railway.app/api/businesses/" + businessId + "/render";
-            updateBusinessService.markWebsiteGenerated(businessId, previewUrl, cleanCode);
+            // FILL TEMPLATE + SAVE
+            String code = saveGeneratedWebsite(business, parseContent(copy));
 
             // INCREMENT USAGE
             stripeService.incrementUsage(username, StripeService.ActionType.GENERATE_WEBSITE);
@@ -65,10 +148,10 @@ public class WebsiteGenerationService {
             WebsiteGenerationResult result = new WebsiteGenerationResult();
             result.setBusinessId(businessId);
             result.setBusinessName(business.getName());
-            result.setGeneratedCode(cleanCode);
+            result.setGeneratedCode(code);
             result.setSuccess(true);
 
-            log.info("✨ Website generated using {} template!", templateType);
+            log.info("✨ Website generated for: {}", business.getName());
             return result;
 
         } catch (Exception e) {
@@ -81,82 +164,154 @@ public class WebsiteGenerationService {
         }
     }
 
+    // Copy prompt for one site, keyed by business id (also used for offline batches)
+    public ClaudeApiService.BatchPrompt buildGenerationPrompt(Business business) {
+        return new ClaudeApiService.BatchPrompt(
+                String.valueOf(business.getId()),
+                List.of(ClaudeDTO.Content.text(buildPrompt(business))),
+                List.of(ClaudeDTO.Content.cachedText(buildSystemPrompt())));
+    }
+
+    // Fills the business's template with the copy from Claude's reply and stores it; returns the stored code
+    public String saveGeneratedWebsite(Integer businessId, String reply) {
+        Business business = businessRepository.findById(businessId)
+                .orElseThrow(() -> new RuntimeException("Business not found"));
+        return saveGeneratedWebsite(business, parseContent(CodeFenceExtractor.extract(reply).code()));
+    }
+
+    private String saveGeneratedWebsite(Business business, SiteContent content) {
+        String template = templateSelectionService.selectTemplateForBusiness(business.getTypes());
+        String code = templateSelectionService.fillTemplate(template, templateValues(business, content));
+
+        String previewUrl = "https://springbootproject-production-9187.up.railway.app/api/businesses/" + business.getId() + "/render";
+        updateBusinessService.markWebsiteGenerated(business.getId(), previewUrl, code);
+        return code;
+    }
+
     private String buildSystemPrompt() {
         return """
-                You are an expert at customizing website templates with business information.
+                You write website copy for small local businesses.
                 
                 RULES:
-                - Keep ALL code exactly as written in the template
-                                                             - Do NOT modify regex patterns or code logic
-                                                             - Do NOT change \\d to d in regular expressions
-                                                             - Keep phone number formatting exactly as in template
-                                                             - ONLY replace placeholder text with actual business information
-                                                             - Keep ALL styling, layout, and structure exactly as is
-                                                             - Use plain JavaScript (no TypeScript types)
-                                                             - Do NOT include "use client" directive
+                - Be specific to the business type and realistic
+                - Do NOT invent phone numbers, emails, prices, awards or staff names
+                - Plain text only inside the JSON strings (no markdown, no HTML)
                 
-                Return ONLY the complete React component code.
-                No explanations, no markdown, just raw code.
+                Return ONLY the JSON object. No explanations, no markdown fences.
                 """;
     }
 
-    private String buildPrompt(Business business, TemplateSelectionService.TemplateType templateType, String templateCode) {
+    private String buildPrompt(Business business) {
         return String.format("""
-                Customize this %s template with business information:
+                Write the copy for a one-page website for this business:
                 
                 BUSINESS:
                 - Name: %s
                 - Type: %s
                 - Address: %s
-                - Phone: %s
                 - Rating: %s ⭐ (%s reviews)
                 
-                TEMPLATE:
-                %s
-                
-                TASK:
-                1. Replace placeholder text with actual business info
-                2. Infer 6-9 realistic services for this business type
-                3. Create 2-3 believable customer testimonials
-                4. Keep ALL styling and structure exactly as is
-                5. Return the complete component with imports
+                Return this JSON:
+                {
+                  "category": "short label for the kind of business, e.g. Family Bakery & Café",
+                  "tagline": "one or two sentences for the top of the page",
+                  "services": [{"name": "service name", "description": "one short sentence"}],
+                  "testimonials": ["believable customer quote"],
+                  "highlights": [{"title": "reason to choose them", "desc": "one short sentence"}],
+                  "ctaText": "one sentence inviting visitors to call or visit"
+                }
                 
-                IMPORTANT: Do NOT change design, layout, or Tailwind classes!
+                Give 6-9 services, 3 testimonials and 3 highlights.
                 """,
-                templateType,
                 business.getName(),
                 business.getTypes(),
                 business.getAddress(),
-                business.getPhone(),
                 business.getRating() != null ? business.getRating() : "N/A",
-                business.getTotalRatings() != null ? business.getTotalRatings() : "0",
-                templateCode
+                business.getTotalRatings() != null ? business.getTotalRatings() : "0"
         );
     }
 
-    private String extractCode(String generatedContent) {
-        String code = generatedContent;
+    // The JSON object in the reply's code (CodeFenceExtractor has already dropped any ```json fence), tolerating stray text
+    private SiteContent parseContent(String json) {
+        int start = json.indexOf('{');
+        int end = json.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            throw new IllegalStateException("Claude did not return website copy as JSON");
+        }
+        SiteContent content;
+        try {
+            content = objectMapper.readValue(json.substring(start, end + 1), SiteContent.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable website copy from Claude: " + e.getMessage(), e);
+        }
+        if (content.services() == null || content.services().isEmpty()) {
+            throw new IllegalStateException("Claude returned no services");
+        }
+        return content;
+    }
 
-        if (code.contains("```tsx")) {
-            code = code.substring(code.indexOf("```tsx") + 6);
-            if (code.contains("```")) {
-                code = code.substring(0, code.indexOf("```"));
-            }
-        } else if (code.contains("```jsx")) {
-            code = code.substring(code.indexOf("```jsx") + 6);
-            if (code.contains("```")) {
-                code = code.substring(0, code.indexOf("```"));
-            }
-        } else if (code.contains("```")) {
-            code = code.substring(code.indexOf("```") + 3);
-            if (code.contains("```")) {
-                code = code.substring(0, code.lastIndexOf("```"));
+    // [[placeholder]] -> JS literal. JSON literals are valid JS, so quoting and escaping come from Jackson.
+    private Map<String, String> templateValues(Business business, SiteContent content) {
+        List<ServiceItem> services = content.services().stream().limit(9).toList();
+        Map<String, String> values = new HashMap<>();
+        values.put("businessName", js(business.getName()));
+        values.put("businessType", js(
+                content.category() != null ? content.category() : readableType(business.getTypes())));
+        values.put("address", js(orEmpty(business.getAddress())));
+        values.put("phone", js(orEmpty(business.getPhone())));
+        values.put("rating", js(business.getRating() != null ? business.getRating() : "N/A"));
+        values.put("totalRatings", js(business.getTotalRatings() != null ? business.getTotalRatings() : 0));
+        values.put("tagline", js(orEmpty(content.tagline())));
+        values.put("services", js(services.stream().map(ServiceItem::name).toList()));
+        values.put("serviceDescriptions", js(services.stream().map(ServiceItem::description).toList()));
+        values.put("testimonials", js(content.testimonials() != null ? content.testimonials() : List.of()));
+        values.put("highlights", js(content.highlights() != null ? content.highlights() : List.of()));
+        values.put("ctaText", js(orEmpty(content.ctaText())));
+        return values;
+    }
+
+    private String js(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode template value", e);
+        }
+    }
+
+    // "night_club,bar,establishment" -> "Night Club"
+    private static String readableType(String types) {
+        if (types == null || types.isBlank()) {
+            return "Local Business";
+        }
+        String[] words = types.split(",")[0].trim().split("_");
+        StringBuilder label = new StringBuilder();
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                label.append(label.length() > 0 ? " " : "")
+                        .append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
             }
         }
+        return label.toString();
+    }
 
-        return code.trim();
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
     }
 
+    // Claude's structured copy for one site
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record SiteContent(String category, String tagline, List<ServiceItem> services, List<String> testimonials,
+                       List<Highlight> highlights, String ctaText) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record ServiceItem(String name, String description) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record Highlight(String title, String desc) {}
+
+    // One piece of streamed code, JSON-wrapped so newlines survive the event stream
+    public record StreamChunk(String text) {}
+
     @lombok.Data
     public static class WebsiteGenerationResult {
         private Integer businessId;
@@ -0,0 +1,18 @@
+package com.example.nobsv2.exceptions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Too many AI generations are already running or queued - the caller should try again shortly
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ClaudeQueueFullException extends RuntimeException {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClaudeQueueFullException.class);
+
+    public ClaudeQueueFullException(ErrorMessages message) {
+        super(message.getMessage());
+        logger.error("Exception " + getClass() + " thrown: " + message.getMessage());
+    }
+}
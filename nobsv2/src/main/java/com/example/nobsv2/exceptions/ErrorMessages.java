@@ -5,7 +5,10 @@ public enum ErrorMessages {
     NAME_REQUIRED("Name is required"),
     DESCRIPTION_LENGTH("Description must be 20 characters"),
     PRICE_CANNOT_BE_NEGATIVE("Price cannot be negative"),
-    QUANTITY_CANNOT_BE_NEGATIVE("Quantity cannot be negative");
+    QUANTITY_CANNOT_BE_NEGATIVE("Quantity cannot be negative"),
+    PLACES_DAILY_QUOTA_EXCEEDED("Daily Google Places quota exhausted"),
+    PLACES_OVER_QUERY_LIMIT("Google Places is still rate limiting after retries"),
+    CLAUDE_QUEUE_FULL("AI generation is busy right now, please try again in a moment");
     //messages all in one place
 
     private final String message;
@@ -0,0 +1,18 @@
+package com.example.nobsv2.exceptions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Google Places calls are out of quota: either our own daily budget or OVER_QUERY_LIMIT that outlasted the retries
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class PlacesQuotaExceededException extends RuntimeException {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlacesQuotaExceededException.class);
+
+    public PlacesQuotaExceededException(ErrorMessages message) {
+        super(message.getMessage());
+        logger.error("Exception " + getClass() + " thrown: " + message.getMessage());
+    }
+}
@@ -2,6 +2,9 @@ package com.example.nobsv2.security;
 
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -11,4 +14,19 @@ public interface  CustomUserRepository extends JpaRepository<CustomUser , String
     Optional<CustomUser> findByUsername(String username);
 
     Optional<CustomUser> findByEmail(String email);
+
+    // Usage counters are bumped in the database, so concurrent generations for one user can't overwrite each other
+    @Modifying
+    @Query("UPDATE CustomUser u SET u.websitesGenerated = u.websitesGenerated + 1 WHERE u.username = :username")
+    int incrementWebsitesGenerated(@Param("username") String username);
+
+    @Query("SELECT u.websitesGenerated FROM CustomUser u WHERE u.username = :username")
+    int findWebsitesGenerated(@Param("username") String username);
+
+    @Modifying
+    @Query("UPDATE CustomUser u SET u.messagesGenerated = u.messagesGenerated + 1 WHERE u.username = :username")
+    int incrementMessagesGenerated(@Param("username") String username);
+
+    @Query("SELECT u.messagesGenerated FROM CustomUser u WHERE u.username = :username")
+    int findMessagesGenerated(@Param("username") String username);
 }
@@ -1,6 +1,7 @@
 package com.example.nobsv2.security;
 
 import com.example.nobsv2.security.jwt.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.*;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -51,6 +52,8 @@ public class SecurityConfiguaration {
                 .headers(headers -> headers
                         .frameOptions(frame -> frame.disable()))
                 .authorizeHttpRequests(auth -> auth
+                        // Completion of SSE/streaming responses is an async re-dispatch of an already authorized request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .requestMatchers(PUBLIC_ENDPOINTS).permitAll()
                         .requestMatchers(SWAGGER_ENDPOINTS).permitAll()
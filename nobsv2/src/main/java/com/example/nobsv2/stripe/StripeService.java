@@ -121,18 +121,20 @@ public class StripeService {
                 );
             }
             case GENERATE_WEBSITE -> {
-                user.setWebsitesGenerated(user.getWebsitesGenerated() + 1);
+                // Bulk jobs charge from several threads at once - a read-modify-write here would lose charges
+                userRepository.incrementWebsitesGenerated(username);
                 log.info("User {} website generation count: {}/{}" ,
                         username,
-                        user.getWebsitesGenerated(),
+                        userRepository.findWebsitesGenerated(username),
                         user.getSubscriptionPlan().getMonthlyWebsiteGenerations()
                 );
             }
             case GENERATE_MESSAGE -> {
-                user.setMessagesGenerated(user.getMessagesGenerated() + 1);
+                // Same for bulk outreach exports
+                userRepository.incrementMessagesGenerated(username);
                 log.info("📊 User {} message count: {}/{}",
                         username,
-                        user.getMessagesGenerated(),
+                        userRepository.findMessagesGenerated(username),
                         user.getSubscriptionPlan().getMonthlyMessages());
             }
         }
@@ -0,0 +1,131 @@
+package com.example.nobsv2.ai.service;
+
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.ai.dto.ClaudeDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Batch submit / poll / collect against a local stub of the Message Batches API
+public class ClaudeApiServiceBatchTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicReference<String> submittedBody = new AtomicReference<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ClaudeApiService claudeApiService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        baseUrl = "http://localhost:" + server.getAddress().getPort();
+
+        server.createContext("/v1/messages/batches", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if ("POST".equals(exchange.getRequestMethod())) {
+                submittedBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+                respond(exchange, "application/json", """
+                        {"id": "msgbatch_1", "type": "message_batch", "processing_status": "in_progress",
+                         "request_counts": {"processing": 2, "succeeded": 0, "errored": 0, "canceled": 0, "expired": 0},
+                         "results_url": null}
+                        """);
+            } else if (path.endsWith("/msgbatch_1")) {
+                respond(exchange, "application/json", """
+                        {"id": "msgbatch_1", "type": "message_batch", "processing_status": "ended",
+                         "request_counts": {"processing": 0, "succeeded": 1, "errored": 1, "canceled": 0, "expired": 0},
+                         "results_url": "%s/v1/messages/batches/msgbatch_1/results"}
+                        """.formatted(baseUrl));
+            } else if (path.endsWith("/results")) {
+                respond(exchange, "application/binary", """
+                        {"custom_id":"7","result":{"type":"errored","error":{"type":"error","error":{"type":"invalid_request_error","message":"prompt too long"}}}}
+                        {"custom_id":"42","result":{"type":"succeeded","message":{"id":"msg_1","type":"message","role":"assistant","model":"claude-test","content":[{"type":"text","text":"export default function Site() {}"}],"stop_reason":"end_turn","usage":{"input_tokens":10,"output_tokens":5}}}}
+                        """);
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        ClaudeConfig config = new ClaudeConfig();
+        config.setApiKey("test-key");
+        config.setApiUrl(baseUrl + "/v1/messages");
+        config.setBatchUrl(baseUrl + "/v1/messages/batches");
+        config.setModel("claude-test");
+        config.setMaxTokens(100);
+        config.setRetryMaxAttempts(1);
+        config.setRetryInitialBackoff(Duration.ofMillis(10));
+        config.setRetryMaxBackoff(Duration.ofMillis(10));
+        claudeApiService = new ClaudeApiService(config, new RestTemplate(), objectMapper, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void submits_polls_and_collects_a_batch() throws IOException {
+        //given
+        List<ClaudeApiService.BatchPrompt> prompts = List.of(
+                new ClaudeApiService.BatchPrompt("42", List.of(ClaudeDTO.Content.text("site")), List.of(ClaudeDTO.Content.text("system"))),
+                new ClaudeApiService.BatchPrompt("7", List.of(ClaudeDTO.Content.text("too long")), null));
+
+        //when
+        ClaudeDTO.Batch submitted = claudeApiService.submitBatch(prompts);
+        ClaudeDTO.Batch polled = claudeApiService.getBatch(submitted.getId());
+        List<ClaudeApiService.BatchOutput> outputs = new ArrayList<>();
+        claudeApiService.readBatchResults(polled, outputs::add);
+
+        //then
+        JsonNode body = objectMapper.readTree(submittedBody.get());
+        assertEquals(2, body.path("requests").size());
+        assertEquals("42", body.path("requests").get(0).path("custom_id").asText());
+        assertEquals("claude-test", body.path("requests").get(0).path("params").path("model").asText());
+        assertFalse(body.path("requests").get(1).path("params").has("system"));
+
+        assertEquals("msgbatch_1", submitted.getId());
+        assertFalse(submitted.isEnded());
+        assertTrue(polled.isEnded());
+
+        assertEquals(2, outputs.size());
+        assertFalse(outputs.get(0).isSuccess());
+        assertTrue(outputs.get(0).error().contains("prompt too long"));
+        assertTrue(outputs.get(1).isSuccess());
+        assertEquals("42", outputs.get(1).customId());
+        assertEquals("export default function Site() {}", outputs.get(1).text());
+    }
+
+    @Test
+    public void refuses_to_read_results_before_the_batch_ends() {
+        ClaudeDTO.Batch inProgress = new ClaudeDTO.Batch("msgbatch_1", "in_progress", null, null);
+
+        assertThrows(IllegalStateException.class, () -> claudeApiService.readBatchResults(inProgress, output -> {}));
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.nobsv2.ai.service;
+
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.exceptions.ClaudeQueueFullException;
+import com.example.nobsv2.security.CustomUser;
+import com.example.nobsv2.security.CustomUserRepository;
+import com.example.nobsv2.stripe.SubscriptionPlan;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// One slot: a holder call keeps it busy while the test queues callers one by one, then frees it
+// and checks the order the queued calls ran in
+public class ClaudeRequestDispatcherTest {
+
+    @Mock
+    private CustomUserRepository userRepository;
+
+    private ClaudeConfig claudeConfig;
+    private SimpleMeterRegistry meterRegistry;
+    private ClaudeRequestDispatcher dispatcher;
+    private ExecutorService callers;
+    private final CountDownLatch holderRelease = new CountDownLatch(1);
+    private final List<String> served = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        claudeConfig = new ClaudeConfig();
+        claudeConfig.setDispatcherMaxInFlight(1);
+        claudeConfig.setDispatcherMaxQueue(10);
+        claudeConfig.setDispatcherQueueTimeout(Duration.ofSeconds(10));
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new ClaudeRequestDispatcher(claudeConfig, userRepository, meterRegistry);
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        holderRelease.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void given_callers_on_every_plan_when_slot_frees_then_best_plan_is_served_first() throws Exception {
+        //given
+        user("free", SubscriptionPlan.FREE);
+        user("basic", SubscriptionPlan.BASIC);
+        user("enterprise", SubscriptionPlan.ENTERPRISE);
+        user("pro", SubscriptionPlan.PRO);
+        CompletableFuture<String> holder = holdSlot();
+        List<CompletableFuture<String>> calls = List.of(
+                queue("free", "free"), queue("basic", "basic"), queue("enterprise", "enterprise"), queue("pro", "pro"));
+
+        //when
+        holderRelease.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        //then
+        assertEquals(List.of("holder", "enterprise", "pro", "basic", "free"), served);
+        assertEquals(0, dispatcher.getQueued());
+        assertEquals(0, dispatcher.getInFlight());
+    }
+
+    @Test
+    public void given_one_user_queued_many_calls_when_slot_frees_then_users_on_a_plan_take_turns() throws Exception {
+        //given
+        user("ann", SubscriptionPlan.PRO);
+        user("bob", SubscriptionPlan.PRO);
+        CompletableFuture<String> holder = holdSlot();
+        List<CompletableFuture<String>> calls = List.of(
+                queue("ann", "ann-1"), queue("ann", "ann-2"), queue("ann", "ann-3"), queue("bob", "bob-1"));
+
+        //when
+        holderRelease.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        //then - bob does not wait behind all of ann's calls
+        assertEquals(List.of("holder", "ann-1", "bob-1", "ann-2", "ann-3"), served);
+    }
+
+    @Test
+    public void given_slot_busy_past_queue_timeout_when_call_then_it_is_rejected_without_running() throws Exception {
+        //given
+        claudeConfig.setDispatcherQueueTimeout(Duration.ofMillis(50));
+        user("ann", SubscriptionPlan.BASIC);
+        holdSlot();
+        AtomicBoolean ran = new AtomicBoolean();
+
+        //when + then
+        assertThrows(ClaudeQueueFullException.class, () -> dispatcher.call("ann", () -> ran.getAndSet(true)));
+        assertFalse(ran.get());
+        assertEquals(0, dispatcher.getQueued());
+        assertEquals(1, meterRegistry.get("claude.dispatcher.rejected")
+                .tags("plan", "BASIC", "reason", "timeout").counter().count());
+    }
+
+    @Test
+    public void given_queue_full_when_call_then_it_is_rejected_right_away() throws Exception {
+        //given
+        claudeConfig.setDispatcherMaxQueue(1);
+        user("ann", SubscriptionPlan.FREE);
+        CompletableFuture<String> holder = holdSlot();
+        CompletableFuture<String> queued = queue("ann", "queued");
+
+        //when + then
+        assertThrows(ClaudeQueueFullException.class, () -> dispatcher.call("ann", () -> "rejected"));
+        assertEquals(1, meterRegistry.get("claude.dispatcher.rejected")
+                .tags("plan", "FREE", "reason", "queue_full").counter().count());
+
+        holderRelease.countDown();
+        assertEquals("holder", holder.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void given_failing_call_when_it_throws_then_slot_is_released() {
+        //given
+        user("ann", SubscriptionPlan.FREE);
+
+        //when
+        assertThrows(IllegalStateException.class, () -> dispatcher.call("ann", () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        //then
+        assertEquals(0, dispatcher.getInFlight());
+        assertEquals("ok", dispatcher.call("ann", () -> "ok"));
+    }
+
+    private void user(String username, SubscriptionPlan plan) {
+        CustomUser user = new CustomUser();
+        user.setUsername(username);
+        user.setSubscriptionPlan(plan);
+        when(userRepository.findByUsername(username)).thenReturn(Optional.of(user));
+    }
+
+    // Takes the only slot and keeps it until holderRelease opens
+    private CompletableFuture<String> holdSlot() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CompletableFuture<String> holder = CompletableFuture.supplyAsync(() -> dispatcher.call("holder", () -> {
+            served.add("holder");
+            running.countDown();
+            try {
+                holderRelease.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "holder";
+        }), callers);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        return holder;
+    }
+
+    // Starts a call and returns once it is waiting in the queue, so calls queue in a known order
+    private CompletableFuture<String> queue(String username, String name) throws InterruptedException {
+        int before = dispatcher.getQueued();
+        CompletableFuture<String> call = CompletableFuture.supplyAsync(() -> dispatcher.call(username, () -> {
+            served.add(name);
+            return name;
+        }), callers);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.getQueued() == before) {
+            assertTrue(System.nanoTime() < deadline, name + " never queued");
+            Thread.sleep(1);
+        }
+        return call;
+    }
+}
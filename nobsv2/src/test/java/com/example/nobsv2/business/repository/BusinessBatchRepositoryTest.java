@@ -0,0 +1,115 @@
+package com.example.nobsv2.business.repository;
+
+import com.example.nobsv2.business.model.Business;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BusinessBatchRepositoryTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PreparedStatement preparedStatement;
+
+    @InjectMocks
+    private BusinessBatchRepository businessBatchRepository;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // A rewritten multi-row batch: the driver reports SUCCESS_NO_INFO for every row, conflicting or not
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any()))
+                .thenAnswer(inv -> {
+                    Collection<Business> rows = inv.getArgument(1);
+                    ParameterizedPreparedStatementSetter<Business> setter = inv.getArgument(3);
+                    for (Business b : rows) {
+                        setter.setValues(preparedStatement, b);
+                    }
+                    int[] counts = new int[rows.size()];
+                    Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+                    return new int[][]{counts};
+                });
+    }
+
+    @Test
+    public void given_no_update_counts_when_place_was_stored_meanwhile_then_read_back_reports_the_conflict()
+            throws Exception {
+        //given - p2 was stored by another import between the lookup and the insert
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("p2"));
+
+        //when
+        List<Business> conflicts = businessBatchRepository.insertAll(
+                List.of(business("p1"), business("p2"), business("p3")), "joe");
+
+        //then
+        assertEquals(List.of("p2"), conflicts.stream().map(Business::getPlaceId).toList());
+    }
+
+    @Test
+    public void given_insert_when_reading_back_then_rows_are_matched_on_the_written_owner_and_created_at()
+            throws Exception {
+        //given
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        ArgumentCaptor<Timestamp> createdAt = ArgumentCaptor.forClass(Timestamp.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(Object[].class))).thenReturn(List.of());
+
+        //when
+        List<Business> conflicts = businessBatchRepository.insertAll(List.of(business("p1"), business("p2")), "joe");
+
+        //then
+        assertTrue(conflicts.isEmpty());
+        verify(preparedStatement, times(2)).setTimestamp(eq(12), createdAt.capture());
+        verify(jdbcTemplate).queryForList(sql.capture(), eq(String.class), args.capture());
+        assertTrue(sql.getValue().contains("place_id IN (?, ?)"));
+        assertEquals(List.of("p1", "p2", "joe", createdAt.getValue()), Arrays.asList(args.getValue()));
+        assertEquals(0, createdAt.getValue().getNanos() % 1000);
+    }
+
+    @Test
+    public void given_more_places_than_a_batch_when_reading_back_then_one_query_per_batch() {
+        //given
+        List<Business> businesses = IntStream.range(0, 501).mapToObj(i -> business("p" + i)).toList();
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("p0"), List.of("p500"));
+
+        //when
+        List<Business> conflicts = businessBatchRepository.insertAll(businesses, "joe");
+
+        //then
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(2)).queryForList(anyString(), eq(String.class), args.capture());
+        assertEquals(502, args.getAllValues().get(0).length);
+        assertEquals(3, args.getAllValues().get(1).length);
+        assertEquals(List.of("p0", "p500"), conflicts.stream().map(Business::getPlaceId).toList());
+    }
+
+    private static Business business(String placeId) {
+        Business business = new Business();
+        business.setName("Business " + placeId);
+        business.setPlaceId(placeId);
+        return business;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.ai.dto.ClaudeDTO;
+import com.example.nobsv2.ai.service.ClaudeApiService;
+import com.example.nobsv2.business.model.Business;
+import com.example.nobsv2.business.model.GenerationBatch;
+import com.example.nobsv2.business.repository.BusinessRepository;
+import com.example.nobsv2.business.repository.GenerationBatchRepository;
+import com.example.nobsv2.business.repository.GenerationBatchResultRepository;
+import com.example.nobsv2.security.CustomUser;
+import com.example.nobsv2.security.CustomUserRepository;
+import com.example.nobsv2.stripe.StripeService;
+import com.example.nobsv2.stripe.SubscriptionPlan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BatchGenerationServiceTest {
+
+    private static final List<GenerationBatch.Status> UNFINISHED =
+            List.of(GenerationBatch.Status.IN_PROGRESS, GenerationBatch.Status.COLLECTING);
+
+    @Mock
+    private ClaudeApiService claudeApiService;
+    @Mock
+    private BusinessRepository businessRepository;
+    @Mock
+    private GenerationBatchRepository batchRepository;
+    @Mock
+    private GenerationBatchResultRepository resultRepository;
+    @Mock
+    private WebsiteGenerationService websiteGenerationService;
+    @Mock
+    private MessageGenerationService messageGenerationService;
+    @Mock
+    private StripeService stripeService;
+    @Mock
+    private CustomUserRepository userRepository;
+
+    private BatchGenerationService batchGenerationService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ClaudeConfig claudeConfig = new ClaudeConfig();
+        claudeConfig.setBatchMaxRequests(100);
+        batchGenerationService = new BatchGenerationService(claudeApiService, claudeConfig, businessRepository,
+                batchRepository, resultRepository, websiteGenerationService, messageGenerationService,
+                stripeService, userRepository);
+
+        when(businessRepository.findIdsByUserUsernameAndIdIn(eq("joe"), anyCollection()))
+                .thenAnswer(inv -> List.copyOf(inv.<Collection<Integer>>getArgument(1)));
+        when(businessRepository.findAllById(anyList()))
+                .thenAnswer(inv -> inv.<List<Integer>>getArgument(0).stream().map(this::business).toList());
+        when(websiteGenerationService.buildGenerationPrompt(any()))
+                .thenAnswer(inv -> new ClaudeApiService.BatchPrompt(
+                        String.valueOf(inv.<Business>getArgument(0).getId()), List.of(), List.of()));
+        when(claudeApiService.submitBatch(anyList())).thenReturn(remote("msgbatch_1"));
+        when(batchRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @Test
+    public void given_batches_in_progress_and_collecting_when_submit_then_both_hold_quota() {
+        //given - BASIC allows 20 sites: 5 used, 10 held by unfinished batches
+        user(SubscriptionPlan.BASIC, 5);
+        when(batchRepository.sumRequestCount("joe", GenerationBatch.Kind.WEBSITE, UNFINISHED)).thenReturn(10L);
+
+        //when
+        GenerationBatch batch = batchGenerationService.submit("joe", GenerationBatch.Kind.WEBSITE, ids(8));
+
+        //then
+        ArgumentCaptor<List<ClaudeApiService.BatchPrompt>> prompts = promptCaptor();
+        verify(claudeApiService).submitBatch(prompts.capture());
+        assertEquals(List.of("1", "2", "3", "4", "5"),
+                prompts.getValue().stream().map(ClaudeApiService.BatchPrompt::customId).toList());
+        assertEquals(5, batch.getRequestCount());
+        assertEquals(GenerationBatch.Status.IN_PROGRESS, batch.getStatus());
+        assertEquals("msgbatch_1", batch.getBatchId());
+    }
+
+    @Test
+    public void given_quota_held_by_a_collecting_batch_when_submit_then_nothing_is_sent() {
+        //given
+        user(SubscriptionPlan.BASIC, 5);
+        when(batchRepository.sumRequestCount("joe", GenerationBatch.Kind.WEBSITE, UNFINISHED)).thenReturn(15L);
+
+        //when + then
+        assertThrows(IllegalArgumentException.class,
+                () -> batchGenerationService.submit("joe", GenerationBatch.Kind.WEBSITE, ids(3)));
+        verify(claudeApiService, never()).submitBatch(anyList());
+        verify(batchRepository, never()).save(any());
+    }
+
+    @Test
+    public void given_upload_in_flight_when_same_user_submits_then_reserved_requests_are_not_promised_again()
+            throws Exception {
+        //given - the first upload of 15 requests hangs until released
+        user(SubscriptionPlan.BASIC, 0);
+        CountDownLatch uploading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(claudeApiService.submitBatch(anyList())).thenAnswer(inv -> {
+            uploading.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return remote("msgbatch_1");
+        }).thenReturn(remote("msgbatch_2"));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<GenerationBatch> first = executor.submit(
+                    () -> batchGenerationService.submit("joe", GenerationBatch.Kind.WEBSITE, ids(15)));
+            assertTrue(uploading.await(5, TimeUnit.SECONDS));
+
+            //when - not blocked behind the upload, and only 20 - 15 left
+            GenerationBatch second = batchGenerationService.submit("joe", GenerationBatch.Kind.WEBSITE, ids(10));
+            release.countDown();
+
+            //then
+            assertEquals(5, second.getRequestCount());
+            assertEquals(15, first.get(5, TimeUnit.SECONDS).getRequestCount());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void given_failed_upload_when_submitting_again_then_the_reservation_was_released() {
+        //given
+        user(SubscriptionPlan.BASIC, 0);
+        when(claudeApiService.submitBatch(anyList()))
+                .thenThrow(new IllegalStateException("upload failed"))
+                .thenReturn(remote("msgbatch_2"));
+        assertThrows(IllegalStateException.class,
+                () -> batchGenerationService.submit("joe", GenerationBatch.Kind.WEBSITE, ids(20)));
+
+        //when
+        GenerationBatch batch = batchGenerationService.submit("joe", GenerationBatch.Kind.WEBSITE, ids(20));
+
+        //then
+        assertEquals(20, batch.getRequestCount());
+    }
+
+    private void user(SubscriptionPlan plan, int websitesGenerated) {
+        CustomUser user = new CustomUser();
+        user.setUsername("joe");
+        user.setSubscriptionPlan(plan);
+        user.setWebsitesGenerated(websitesGenerated);
+        when(userRepository.findByUsername("joe")).thenReturn(Optional.of(user));
+    }
+
+    private Business business(Integer id) {
+        Business business = new Business();
+        business.setId(id);
+        return business;
+    }
+
+    private static List<Integer> ids(int count) {
+        return IntStream.rangeClosed(1, count).boxed().toList();
+    }
+
+    private static ClaudeDTO.Batch remote(String id) {
+        ClaudeDTO.Batch batch = new ClaudeDTO.Batch();
+        batch.setId(id);
+        batch.setProcessingStatus("in_progress");
+        return batch;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<ClaudeApiService.BatchPrompt>> promptCaptor() {
+        return ArgumentCaptor.forClass((Class<List<ClaudeApiService.BatchPrompt>>) (Class<?>) List.class);
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.business.repository.BusinessRepository;
+import com.example.nobsv2.security.CustomUser;
+import com.example.nobsv2.security.CustomUserRepository;
+import com.example.nobsv2.stripe.SubscriptionPlan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BulkOutreachServiceTest {
+
+    @Mock
+    private MessageGenerationService messageGenerationService;
+    @Mock
+    private BusinessRepository businessRepository;
+    @Mock
+    private CustomUserRepository userRepository;
+
+    private ClaudeConfig claudeConfig;
+    private BulkOutreachService bulkOutreachService;
+    // Leads joe owns, by id
+    private final Map<Integer, Lead> leads = new HashMap<>();
+    private final AtomicInteger generated = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        claudeConfig = new ClaudeConfig();
+        claudeConfig.setBulkPoolSize(2);
+        claudeConfig.setBulkConcurrencyPerJob(1);
+        claudeConfig.setBulkMaxSitesPerJob(50);
+        claudeConfig.setBulkSseTimeout(Duration.ofSeconds(5));
+        bulkOutreachService = new BulkOutreachService(messageGenerationService, businessRepository, userRepository,
+                claudeConfig);
+        user(SubscriptionPlan.PRO);
+
+        when(businessRepository.findIdsByUserUsernameAndIdIn(eq("joe"), anyCollection())).thenAnswer(inv ->
+                inv.<Collection<Integer>>getArgument(1).stream().filter(leads::containsKey).toList());
+        when(businessRepository.findOutreachLeadsByIdIn(anyCollection())).thenAnswer(inv ->
+                inv.<Collection<Integer>>getArgument(0).stream().map(leads::get).toList());
+        when(messageGenerationService.generateOutreachMessage(eq("joe"), anyString(), any(), any(), anyBoolean()))
+                .thenAnswer(inv -> {
+                    generated.incrementAndGet();
+                    return "Hi " + inv.getArgument(1);
+                });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bulkOutreachService.shutdown();
+    }
+
+    @Test
+    public void given_values_a_spreadsheet_would_run_when_csv_then_they_are_escaped_and_quoted() throws Exception {
+        //given
+        lead(1, "=HYPERLINK(\"http://x\")", "1 Main St, Suite 2");
+        lead(2, "+Plumbing", "@home");
+        when(messageGenerationService.generateOutreachMessage(eq("joe"), eq("+Plumbing"), any(), any(), anyBoolean()))
+                .thenReturn("-50% off\nfor \"you\"");
+
+        //when
+        String csv = export(List.of(1, 2), BulkOutreachService.Format.CSV);
+
+        //then
+        assertEquals(String.join("\n",
+                "business_id,business_name,address,status,message,error",
+                "1,\"'=HYPERLINK(\"\"http://x\"\")\",\"1 Main St, Suite 2\",generated,\"Hi =HYPERLINK(\"\"http://x\"\")\",",
+                "2,'+Plumbing,'@home,generated,\"'-50% off\nfor \"\"you\"\"\",",
+                ""), csv);
+    }
+
+    @Test
+    public void given_leads_past_quota_and_failures_when_ndjson_then_every_lead_gets_a_line() throws Exception {
+        //given - FREE allows 10 messages, 8 used
+        user(SubscriptionPlan.FREE).setMessagesGenerated(8);
+        lead(1, "Bakery", "1 Main St");
+        lead(2, "Cafe", "2 Main St");
+        lead(3, "Deli", "3 Main St");
+        when(messageGenerationService.generateOutreachMessage(eq("joe"), eq("Cafe"), any(), any(), anyBoolean()))
+                .thenThrow(new IllegalStateException("Claude unavailable"));
+
+        //when - 9 is not joe's
+        String ndjson = export(List.of(1, 9, 2, 3), BulkOutreachService.Format.NDJSON);
+
+        //then
+        assertEquals("""
+                {"businessId":1,"businessName":"Bakery","address":"1 Main St","status":"GENERATED","message":"Hi Bakery","error":null}
+                {"businessId":2,"businessName":"Cafe","address":"2 Main St","status":"FAILED","message":null,"error":"Claude unavailable"}
+                {"businessId":3,"businessName":null,"address":null,"status":"SKIPPED","message":null,"error":"Message generation limit reached"}
+                """, ndjson);
+    }
+
+    @Test
+    public void given_slow_client_when_streaming_then_workers_wait_on_the_bounded_queue() throws Exception {
+        //given - the client takes nothing until released
+        IntStream.rangeClosed(1, 20).forEach(id -> lead(id, "Lead " + id, "Main St"));
+        CountDownLatch clientReads = new CountDownLatch(1);
+        ByteArrayOutputStream slowClient = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                try {
+                    clientReads.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(b, off, len);
+            }
+        };
+        CompletableFuture<Void> streaming = CompletableFuture.runAsync(() -> {
+            try {
+                bulkOutreachService.stream("joe", ids(20), BulkOutreachService.Format.NDJSON, slowClient);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        //when
+        Thread.sleep(300);
+        int generatedWhileBlocked = generated.get();
+        clientReads.countDown();
+        streaming.get(5, TimeUnit.SECONDS);
+
+        //then - one row being written, two queued and one worker waiting to hand its row over
+        assertTrue(generatedWhileBlocked <= 4, generatedWhileBlocked + " generated");
+        assertEquals(20, generated.get());
+        assertEquals(20, slowClient.toString(StandardCharsets.UTF_8).lines().count());
+    }
+
+    @Test
+    public void given_rows_stop_arriving_when_deadline_passes_then_export_fails_and_queued_leads_never_start()
+            throws Exception {
+        //given
+        claudeConfig.setBulkSseTimeout(Duration.ofMillis(200));
+        lead(1, "Bakery", "1 Main St");
+        lead(2, "Cafe", "2 Main St");
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageGenerationService.generateOutreachMessage(eq("joe"), eq("Bakery"), any(), any(), anyBoolean()))
+                .thenAnswer(inv -> {
+                    generated.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return "Hi Bakery";
+                });
+
+        //when
+        IOException timedOut = assertThrows(IOException.class,
+                () -> export(List.of(1, 2), BulkOutreachService.Format.NDJSON));
+        release.countDown();
+        Thread.sleep(200);
+
+        //then
+        assertTrue(timedOut.getMessage().contains("timed out with 2 messages missing"), timedOut.getMessage());
+        verify(messageGenerationService, never()).generateOutreachMessage(eq("joe"), eq("Cafe"), any(), any(), anyBoolean());
+    }
+
+    @Test
+    public void given_client_goes_away_when_streaming_then_remaining_leads_are_cancelled_and_released()
+            throws Exception {
+        //given - FREE allows 10 messages
+        user(SubscriptionPlan.FREE);
+        IntStream.rangeClosed(1, 10).forEach(id -> lead(id, "Lead " + id, "Main St"));
+        OutputStream gone = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        //when
+        assertThrows(IOException.class,
+                () -> bulkOutreachService.stream("joe", ids(10), BulkOutreachService.Format.NDJSON, gone));
+        Thread.sleep(300);
+        int generatedAfterCancel = generated.get();
+
+        //then - and the leads it never wrote are not held against the plan
+        assertTrue(generatedAfterCancel < 10, generatedAfterCancel + " generated");
+        generated.set(0);
+        String ndjson = export(ids(10), BulkOutreachService.Format.NDJSON);
+        assertFalse(ndjson.contains("SKIPPED"));
+        assertEquals(10, generated.get());
+    }
+
+    private String export(List<Integer> ids, BulkOutreachService.Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulkOutreachService.stream("joe", ids, format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private CustomUser user(SubscriptionPlan plan) {
+        CustomUser user = new CustomUser();
+        user.setUsername("joe");
+        user.setSubscriptionPlan(plan);
+        when(userRepository.findByUsername("joe")).thenReturn(Optional.of(user));
+        return user;
+    }
+
+    private void lead(int id, String name, String address) {
+        leads.put(id, new Lead(id, name, "plumber", address));
+    }
+
+    private static List<Integer> ids(int count) {
+        return new ArrayList<>(IntStream.rangeClosed(1, count).boxed().toList());
+    }
+
+    private record Lead(Integer id, String name, String types, String address)
+            implements BusinessRepository.OutreachLead {
+        public Integer getId() { return id; }
+        public String getName() { return name; }
+        public String getTypes() { return types; }
+        public String getAddress() { return address; }
+    }
+}
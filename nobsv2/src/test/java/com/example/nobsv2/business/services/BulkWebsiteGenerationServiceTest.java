@@ -0,0 +1,160 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.business.repository.BusinessRepository;
+import com.example.nobsv2.business.services.BulkWebsiteGenerationService.BulkJob;
+import com.example.nobsv2.business.services.BulkWebsiteGenerationService.SiteResult;
+import com.example.nobsv2.security.CustomUser;
+import com.example.nobsv2.security.CustomUserRepository;
+import com.example.nobsv2.stripe.SubscriptionPlan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BulkWebsiteGenerationServiceTest {
+
+    @Mock
+    private WebsiteGenerationService websiteGenerationService;
+    @Mock
+    private BusinessRepository businessRepository;
+    @Mock
+    private CustomUserRepository userRepository;
+
+    private BulkWebsiteGenerationService bulkWebsiteGenerationService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ClaudeConfig claudeConfig = new ClaudeConfig();
+        claudeConfig.setBulkPoolSize(2);
+        claudeConfig.setBulkConcurrencyPerJob(2);
+        claudeConfig.setBulkMaxSitesPerJob(50);
+        claudeConfig.setBulkRetention(Duration.ofHours(1));
+        claudeConfig.setBulkSseTimeout(Duration.ofMinutes(1));
+        bulkWebsiteGenerationService = new BulkWebsiteGenerationService(websiteGenerationService, businessRepository,
+                userRepository, claudeConfig);
+
+        // joe owns businesses 1 to 10
+        when(businessRepository.findIdsByUserUsernameAndIdIn(eq("joe"), anyCollection())).thenAnswer(inv ->
+                inv.<Collection<Integer>>getArgument(1).stream().filter(id -> id <= 10).toList());
+        when(websiteGenerationService.generateWebsite(anyInt(), eq("joe"))).thenAnswer(inv -> generated(inv.getArgument(0)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bulkWebsiteGenerationService.shutdown();
+    }
+
+    @Test
+    public void given_ids_of_another_user_when_submit_then_they_are_dropped() throws Exception {
+        //given
+        user(SubscriptionPlan.ENTERPRISE, 0);
+
+        //when
+        BulkJob job = bulkWebsiteGenerationService.submit("joe", List.of(2, 11, 3, 2, 12));
+        awaitFinished(job);
+
+        //then - duplicates collapse as well
+        assertEquals(List.of(2, 3), job.getBusinessIds());
+        verify(websiteGenerationService, never()).generateWebsite(eq(11), any());
+        verify(websiteGenerationService, never()).generateWebsite(eq(12), any());
+        assertEquals(2, job.getSucceeded().get());
+        assertEquals(0, job.getSkippedOverQuota());
+    }
+
+    @Test
+    public void given_quota_held_by_a_running_job_when_submit_then_sites_past_it_are_skipped() throws Exception {
+        //given - BASIC allows 20 sites, 17 used; the first job's sites hang until released
+        user(SubscriptionPlan.BASIC, 17);
+        CountDownLatch release = new CountDownLatch(1);
+        when(websiteGenerationService.generateWebsite(anyInt(), eq("joe"))).thenAnswer(inv -> {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return generated(inv.getArgument(0));
+        });
+        BulkJob first = bulkWebsiteGenerationService.submit("joe", List.of(1, 2));
+
+        //when
+        BulkJob second = bulkWebsiteGenerationService.submit("joe", List.of(3, 4, 5));
+        release.countDown();
+        awaitFinished(first);
+        awaitFinished(second);
+
+        //then
+        assertEquals(0, first.getSkippedOverQuota());
+        assertEquals(List.of(3), second.getBusinessIds());
+        assertEquals(2, second.getSkippedOverQuota());
+    }
+
+    @Test
+    public void given_failing_sites_when_job_ends_then_their_reservation_is_released() throws Exception {
+        //given - FREE allows 2 sites
+        user(SubscriptionPlan.FREE, 0);
+        when(websiteGenerationService.generateWebsite(anyInt(), eq("joe")))
+                .thenThrow(new IllegalStateException("Claude unavailable"));
+        BulkJob failed = bulkWebsiteGenerationService.submit("joe", List.of(1, 2));
+        awaitFinished(failed);
+
+        //when
+        when(websiteGenerationService.generateWebsite(anyInt(), eq("joe"))).thenAnswer(inv -> generated(inv.getArgument(0)));
+        BulkJob retry = bulkWebsiteGenerationService.submit("joe", List.of(1, 2));
+        awaitFinished(retry);
+
+        //then
+        assertEquals(2, failed.getFailed().get());
+        assertTrue(failed.getResults().stream().map(SiteResult::errorMessage).allMatch(m -> m.contains("Claude unavailable")));
+        assertEquals(0, retry.getSkippedOverQuota());
+        assertEquals(2, retry.getSucceeded().get());
+    }
+
+    @Test
+    public void given_finished_job_when_get_by_another_user_then_empty() throws Exception {
+        //given
+        user(SubscriptionPlan.ENTERPRISE, 0);
+        BulkJob job = bulkWebsiteGenerationService.submit("joe", List.of(1));
+        awaitFinished(job);
+
+        //when + then
+        assertTrue(bulkWebsiteGenerationService.getJob(job.getJobId(), "joe").isPresent());
+        assertTrue(bulkWebsiteGenerationService.getJob(job.getJobId(), "ann").isEmpty());
+    }
+
+    private void user(SubscriptionPlan plan, int websitesGenerated) {
+        CustomUser user = new CustomUser();
+        user.setUsername("joe");
+        user.setSubscriptionPlan(plan);
+        user.setWebsitesGenerated(websitesGenerated);
+        when(userRepository.findByUsername("joe")).thenReturn(Optional.of(user));
+    }
+
+    private static WebsiteGenerationService.WebsiteGenerationResult generated(Integer businessId) {
+        WebsiteGenerationService.WebsiteGenerationResult result = new WebsiteGenerationService.WebsiteGenerationResult();
+        result.setBusinessId(businessId);
+        result.setBusinessName("Business " + businessId);
+        result.setSuccess(true);
+        return result;
+    }
+
+    private static void awaitFinished(BulkJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!job.isFinished()) {
+            assertTrue(System.nanoTime() < deadline, "job never finished");
+            Thread.sleep(5);
+        }
+    }
+}
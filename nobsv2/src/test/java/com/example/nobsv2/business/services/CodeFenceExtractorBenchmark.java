@@ -0,0 +1,98 @@
+package com.example.nobsv2.business.services;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Explanation + code from every reply in src/test/resources/claude-responses:
+ * the old contains/indexOf/substring extractCode vs. CodeFenceExtractor on whole replies and on 64-char stream chunks.
+ * Run main() - scores are passes over the whole corpus per millisecond.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodeFenceExtractorBenchmark {
+
+    private static final int CHUNK = 64;
+
+    private String[] replies;
+    private String[][] chunks;
+
+    @Setup
+    public void setUp() throws IOException {
+        replies = new String[CodeFenceExtractorTest.FIXTURES.length];
+        chunks = new String[replies.length][];
+        for (int r = 0; r < replies.length; r++) {
+            replies[r] = CodeFenceExtractorTest.fixture(CodeFenceExtractorTest.FIXTURES[r] + ".txt");
+            String reply = replies[r];
+            chunks[r] = new String[(reply.length() + CHUNK - 1) / CHUNK];
+            for (int c = 0; c < chunks[r].length; c++) {
+                chunks[r][c] = reply.substring(c * CHUNK, Math.min(reply.length(), (c + 1) * CHUNK));
+            }
+        }
+    }
+
+    @Benchmark
+    public void legacy(Blackhole bh) {
+        for (String reply : replies) {
+            if (reply.contains("```")) {
+                bh.consume(reply.substring(0, reply.indexOf("```")).trim());
+            }
+            bh.consume(legacyExtractCode(reply));
+        }
+    }
+
+    @Benchmark
+    public void extractor(Blackhole bh) {
+        for (String reply : replies) {
+            bh.consume(CodeFenceExtractor.extract(reply));
+        }
+    }
+
+    @Benchmark
+    public void extractorStreamed(Blackhole bh) {
+        for (String[] reply : chunks) {
+            CodeFenceExtractor extractor = new CodeFenceExtractor();
+            for (String chunk : reply) {
+                extractor.feed(chunk);
+            }
+            bh.consume(extractor.finish());
+        }
+    }
+
+    // WebsiteCustomizationService.extractCode before CodeFenceExtractor
+    private static String legacyExtractCode(String generatedContent) {
+        String code = generatedContent.trim();
+        if (code.contains("```tsx")) {
+            code = code.substring(code.indexOf("```tsx") + 6);
+            if (code.contains("```")) {
+                code = code.substring(0, code.indexOf("```"));
+            }
+        } else if (code.contains("```jsx")) {
+            code = code.substring(code.indexOf("```jsx") + 6);
+            if (code.contains("```")) {
+                code = code.substring(0, code.indexOf("```"));
+            }
+        } else if (code.contains("```")) {
+            code = code.substring(code.indexOf("```") + 3);
+            if (code.contains("```")) {
+                code = code.substring(0, code.lastIndexOf("```"));
+            }
+        }
+        return code.trim();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(CodeFenceExtractorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
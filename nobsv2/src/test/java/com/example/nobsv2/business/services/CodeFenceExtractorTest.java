@@ -0,0 +1,48 @@
+package com.example.nobsv2.business.services;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Every reply in src/test/resources/claude-responses against its .expected code, whole and streamed in small chunks
+public class CodeFenceExtractorTest {
+
+    static final String[] FIXTURES = {
+            "tsx-explanation-first", "jsx-fence", "untagged-fence", "typescript-fence", "bare-code",
+            "css-before-tsx", "truncated-at-max-tokens", "crlf-line-endings", "json-copy-fence"
+    };
+
+    @ParameterizedTest
+    @MethodSource("fixtures")
+    public void extracts_code_from_whole_and_streamed_replies(String fixture) throws IOException {
+        String reply = fixture(fixture + ".txt");
+        String expected = fixture(fixture + ".expected");
+
+        CodeFenceExtractor.Extracted whole = CodeFenceExtractor.extract(reply);
+        assertEquals(expected, whole.code());
+        assertFalse(whole.explanation().contains("```"));
+
+        CodeFenceExtractor extractor = new CodeFenceExtractor();
+        for (int i = 0; i < reply.length(); i += 7) {
+            extractor.feed(reply.substring(i, Math.min(reply.length(), i + 7)));
+        }
+        CodeFenceExtractor.Extracted chunked = extractor.finish();
+        assertEquals(whole, chunked);
+    }
+
+    static String[] fixtures() {
+        return FIXTURES;
+    }
+
+    static String fixture(String name) throws IOException {
+        try (InputStream in = CodeFenceExtractorTest.class.getResourceAsStream("/claude-responses/" + name)) {
+            assertNotNull(in, "missing fixture " + name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
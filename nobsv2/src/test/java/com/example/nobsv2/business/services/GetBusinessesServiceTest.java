@@ -0,0 +1,155 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.model.Business.LeadStatus;
+import com.example.nobsv2.business.repository.BusinessRepository;
+import com.example.nobsv2.business.repository.BusinessRepository.BusinessSummary;
+import com.example.nobsv2.user.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class GetBusinessesServiceTest {
+
+    private static final Sort BY_UPDATED = Sort.by(Sort.Order.desc("updatedAt"), Sort.Order.desc("id"));
+
+    @Mock
+    private BusinessRepository businessRepository;
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private GetBusinessesService getBusinessesService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(userService.getCurrentUsername()).thenReturn("joe");
+    }
+
+    @Test
+    public void given_no_cursor_when_page_by_id_then_offset_page_sorted_by_id() {
+        //given
+        List<BusinessSummary> rows = List.of(summary(7), summary(8), summary(9));
+        when(businessRepository.findPageByUserUsername(eq("joe"), eq(0), any())).thenReturn(rows);
+
+        //when
+        GetBusinessesService.BusinessPage page = getBusinessesService.getAllBusinessesPage(null, 2, 3);
+
+        //then - a full page hands out the last id as the cursor
+        verify(businessRepository).findPageByUserUsername("joe", 0, PageRequest.of(2, 3, Sort.by("id")));
+        assertEquals(3, page.items().size());
+        assertEquals("9", page.nextCursor());
+    }
+
+    @Test
+    public void given_cursor_when_page_by_id_then_keyset_from_cursor_ignoring_page_number() {
+        //given
+        List<BusinessSummary> rows = List.of(summary(12));
+        when(businessRepository.findPageByLeadStatus(eq("joe"), eq(LeadStatus.CONTACTED), eq(9), any()))
+                .thenReturn(rows);
+
+        //when
+        GetBusinessesService.BusinessPage page =
+                getBusinessesService.getBusinessesByStatusPage(LeadStatus.CONTACTED, "9", 5, 3);
+
+        //then - a short page is the last one
+        verify(businessRepository).findPageByLeadStatus("joe", LeadStatus.CONTACTED, 9,
+                PageRequest.of(0, 3, Sort.by("id")));
+        assertEquals(12, page.items().get(0).getId());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    public void given_out_of_range_size_when_page_then_size_is_clamped() {
+        //given
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+
+        //when
+        getBusinessesService.searchBusinessesPage("cafe", null, -1, 0);
+        getBusinessesService.searchBusinessesPage("cafe", null, 0, 5000);
+
+        //then
+        verify(businessRepository, times(2)).findPageByKeyword(eq("joe"), eq("cafe"), eq(0), pageable.capture());
+        assertEquals(List.of(PageRequest.of(0, 1, Sort.by("id")), PageRequest.of(0, 200, Sort.by("id"))),
+                pageable.getAllValues());
+    }
+
+    @Test
+    public void given_malformed_id_cursor_when_page_then_illegal_argument() {
+        //when + then
+        assertThrows(IllegalArgumentException.class,
+                () -> getBusinessesService.getUncontactedLeadsPage("abc", 0, 10));
+        verify(businessRepository, never()).findPageUncontacted(any(), anyInt(), any());
+    }
+
+    @Test
+    public void given_no_cursor_when_recently_updated_page_then_newest_first_with_time_and_id_cursor() {
+        //given
+        LocalDateTime updatedAt = LocalDateTime.parse("2026-10-18T10:15:30.123456");
+        List<BusinessSummary> rows = List.of(summary(3, updatedAt.plusHours(1)), summary(9, updatedAt));
+        when(businessRepository.findPageByUserUsername(eq("joe"), eq(0), any())).thenReturn(rows);
+
+        //when
+        GetBusinessesService.BusinessPage page = getBusinessesService.getRecentlyUpdatedPage(null, 2);
+
+        //then
+        verify(businessRepository).findPageByUserUsername("joe", 0, PageRequest.of(0, 2, BY_UPDATED));
+        assertEquals("2026-10-18T10:15:30.123456_9", page.nextCursor());
+    }
+
+    @Test
+    public void given_rows_sharing_updated_at_when_next_page_then_id_breaks_the_tie() {
+        //given - the last page ended with id 9 at 10:15:30, and id 7 was updated in the same instant
+        LocalDateTime updatedAt = LocalDateTime.parse("2026-10-18T10:15:30");
+        List<BusinessSummary> rows = List.of(summary(7, updatedAt), summary(4, updatedAt));
+        when(businessRepository.findPageByUserUsernameUpdatedBefore(eq("joe"), eq(updatedAt), eq(9), any()))
+                .thenReturn(rows);
+
+        //when
+        GetBusinessesService.BusinessPage page =
+                getBusinessesService.getRecentlyUpdatedPage(updatedAt + "_9", 2);
+
+        //then - the cursor carries both halves of the (updatedAt, id) key
+        verify(businessRepository).findPageByUserUsernameUpdatedBefore("joe", updatedAt, 9,
+                PageRequest.of(0, 2, BY_UPDATED));
+        assertEquals(List.of(7, 4), page.items().stream().map(BusinessSummary::getId).toList());
+        assertEquals("2026-10-18T10:15:30_4", page.nextCursor());
+    }
+
+    @Test
+    public void given_malformed_time_cursor_when_recently_updated_page_then_illegal_argument() {
+        //when + then
+        assertThrows(IllegalArgumentException.class, () -> getBusinessesService.getRecentlyUpdatedPage("42", 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> getBusinessesService.getRecentlyUpdatedPage("yesterday_42", 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> getBusinessesService.getRecentlyUpdatedPage("2026-10-18T10:15:30_x", 10));
+        verify(businessRepository, never()).findPageByUserUsernameUpdatedBefore(any(), any(), anyInt(), any());
+    }
+
+    private static BusinessSummary summary(int id) {
+        return summary(id, null);
+    }
+
+    private static BusinessSummary summary(int id, LocalDateTime updatedAt) {
+        BusinessSummary summary = mock(BusinessSummary.class);
+        when(summary.getId()).thenReturn(id);
+        when(summary.getUpdatedAt()).thenReturn(updatedAt);
+        return summary;
+    }
+}
@@ -0,0 +1,502 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.CrawlerConfig;
+import com.example.nobsv2.business.dto.BusinessImportDTO;
+import com.example.nobsv2.exceptions.PlacesQuotaExceededException;
+import com.example.nobsv2.business.services.GooglePlacesCrawlerService.Cell;
+import com.example.nobsv2.business.services.GooglePlacesCrawlerService.CellState;
+import com.example.nobsv2.business.services.GooglePlacesCrawlerService.CrawlRequest;
+import com.example.nobsv2.business.services.GooglePlacesCrawlerService.CrawlResult;
+import com.example.nobsv2.business.services.GooglePlacesCrawlerService.CrawlState;
+import com.example.nobsv2.business.services.GooglePlacesCrawlerService.PlaceFailure;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Drives the crawler against a fake Places API: the RestTemplate's request factory answers geocode,
+// nearby-search and details calls from the handlers below instead of going to Google
+public class GooglePlacesCrawlerServiceTest {
+
+    private static final String CENTER = "45.5,-122.6";
+
+    @Mock
+    private PlacesLookupCache placesLookupCache;
+
+    private CrawlerConfig crawlerConfig;
+    private GooglePlacesCrawlerService crawlerService;
+
+    private NearbyHandler nearbyHandler = (location, radius, token) -> nearby(null);
+    private final Set<String> failingDetails = Collections.synchronizedSet(new HashSet<>());
+    private volatile CountDownLatch detailsGate;
+    private final AtomicBoolean gateTimedOut = new AtomicBoolean();
+    private final Set<String> slowDetails = Collections.synchronizedSet(new HashSet<>());
+    private volatile boolean detailsOverQueryLimit;
+    private volatile long detailsDelayMillis;
+    private final AtomicInteger detailsInFlight = new AtomicInteger();
+    private final AtomicInteger maxDetailsInFlight = new AtomicInteger();
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        crawlerConfig = new CrawlerConfig();
+        crawlerConfig.setDetailsPoolSize(4);
+        crawlerConfig.setDetailsConcurrencyPerCrawl(4);
+        crawlerConfig.setTilesPoolSize(4);
+        crawlerConfig.setTilesConcurrencyPerCrawl(2);
+        crawlerConfig.setTilesMinCellRadius(250);
+        crawlerConfig.setMaxCallsPerSearch(1000);
+        crawlerConfig.setRateLimitQps(1_000_000.0);
+        crawlerConfig.setRateLimitBurst(1_000_000);
+        crawlerConfig.setRateLimitMaxRetries(0);
+        crawlerConfig.setRateLimitInitialBackoff(Duration.ofMillis(1));
+        crawlerConfig.setDailyQuota(0L);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (crawlerService != null) {
+            crawlerService.shutdown();
+        }
+    }
+
+    @Test
+    public void given_budget_runs_out_mid_page_when_resumed_then_every_place_is_emitted() throws Exception {
+        //given - page one's first lookup holds its call until page two is fetched, so the budget
+        // (geocode, 2 nearby pages, 2 details) runs out with a place left on page one and all of page two
+        crawlerConfig.setMaxCallsPerSearch(5);
+        crawlerConfig.setDetailsConcurrencyPerCrawl(1);
+        nearbyHandler = (location, radius, token) -> token == null
+                ? nearby("page-2", place("a"), place("b"), place("c"))
+                : nearby(null, place("d"), place("e"));
+        detailsGate = new CountDownLatch(1);
+        RecordingListener first = new RecordingListener();
+
+        //when
+        CrawlResult result = crawler().crawl(new CrawlRequest("Portland", 1000, null, false), first);
+
+        //then - nothing is reported as failed and the cell stays on page one
+        assertTrue(result.isBudgetExhausted());
+        assertTrue(result.getFailures().isEmpty());
+        assertEquals(List.of("a", "b"), first.placeIds());
+        CellState cell = first.lastCheckpoint.getCells().get(0);
+        assertNull(cell.getPageToken());
+        assertFalse(cell.isExhausted());
+        assertEquals(Set.of("a", "b"), first.lastCheckpoint.getProcessedPlaceIds());
+
+        //when - resume with a fresh budget
+        RecordingListener resumed = new RecordingListener();
+        CrawlResult resumedResult = crawler().crawl(
+                new CrawlRequest("Portland", 1000, null, false), first.lastCheckpoint, resumed);
+
+        //then - handed-off places are not looked up again; the cell is done
+        assertFalse(resumedResult.isBudgetExhausted());
+        assertEquals(List.of("c", "d", "e"), resumed.placeIds());
+        assertTrue(resumed.lastCheckpoint.getCells().isEmpty());
+        assertEquals(1, detailsCalls("a"));
+        assertEquals(1, detailsCalls("c"));
+    }
+
+    @Test
+    public void given_more_places_than_the_cap_when_crawl_then_details_run_at_most_cap_at_a_time() throws Exception {
+        //given
+        crawlerConfig.setDetailsConcurrencyPerCrawl(2);
+        detailsDelayMillis = 50;
+        nearbyHandler = (location, radius, token) ->
+                nearby(null, place("a"), place("b"), place("c"), place("d"), place("e"), place("f"));
+        RecordingListener listener = new RecordingListener();
+
+        //when
+        CrawlResult result = crawler().crawl(new CrawlRequest("Portland", 1000, "cafe", false), listener);
+
+        //then - lookups overlap, but never more than the per-crawl cap even though the pool has 4 threads
+        assertEquals(2, maxDetailsInFlight.get());
+        assertEquals(List.of("a", "b", "c", "d", "e", "f"), listener.placeIds());
+        assertEquals(6, result.getTotalFound());
+        assertEquals(8, result.getOutboundCalls());
+    }
+
+    @Test
+    public void given_a_failing_lookup_when_crawl_then_it_is_reported_and_the_rest_are_emitted() throws Exception {
+        //given
+        failingDetails.add("b");
+        nearbyHandler = (location, radius, token) -> nearby(null, place("a"), place("b"), place("c"));
+        RecordingListener listener = new RecordingListener();
+
+        //when
+        CrawlResult result = crawler().crawl(new CrawlRequest("Portland", 1000, null, false), listener);
+
+        //then
+        assertEquals(List.of("a", "c"), listener.placeIds());
+        assertEquals(List.of("b"), listener.failures.stream().map(PlaceFailure::getPlaceId).toList());
+        assertEquals(2, result.getTotalFound());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(Set.of("a", "c"), listener.lastCheckpoint.getProcessedPlaceIds());
+    }
+
+    @Test
+    public void given_several_pages_when_crawl_then_next_page_is_fetched_while_details_are_in_flight() throws Exception {
+        //given - page one's lookups only answer once page two has been requested
+        detailsGate = new CountDownLatch(1);
+        nearbyHandler = (location, radius, token) -> token == null
+                ? nearby("page-2", place("a"), place("b"))
+                : token.equals("page-2") ? nearby("page-3", place("c"), place("d")) : nearby(null, place("e"));
+        RecordingListener listener = new RecordingListener();
+
+        //when
+        CrawlResult result = crawler().crawl(new CrawlRequest("Portland", 1000, null, false), listener);
+
+        //then
+        assertFalse(gateTimedOut.get(), "page one's details waited for page two, so the pages were not pipelined");
+        assertEquals(3, result.getTimings().getPages());
+        assertEquals(5, result.getTotalFound());
+    }
+
+    @Test
+    public void given_lookups_finishing_out_of_order_when_crawl_then_pages_and_places_keep_search_order() throws Exception {
+        //given
+        slowDetails.add("a");
+        slowDetails.add("c");
+        nearbyHandler = (location, radius, token) -> token == null
+                ? nearby("page-2", place("a"), place("b"))
+                : nearby(null, place("c"), place("d"));
+        RecordingListener listener = new RecordingListener();
+
+        //when
+        crawler().crawl(new CrawlRequest("Portland", 1000, null, false), listener);
+
+        //then - one listener call per page, each in search order
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "d")), listener.pages.stream()
+                .map(page -> page.stream().map(BusinessImportDTO::getPlace_id).toList()).toList());
+    }
+
+    @Test
+    public void given_search_circle_when_cover_then_cells_cover_every_point_of_it() {
+        //when
+        List<Cell> cells = Cell.cover(45.5, -122.6, 1000, 250);
+
+        //then - 3 x 3 grid of half-radius cells; sample the circle on a 50 m grid
+        assertEquals(9, cells.size());
+        assertTrue(cells.stream().allMatch(cell -> cell.radius() == 500));
+        for (int north = -1000; north <= 1000; north += 50) {
+            for (int east = -1000; east <= 1000; east += 50) {
+                if (Math.hypot(north, east) <= 1000) {
+                    assertTrue(covered(cells, 45.5 + north / 111_320.0,
+                            -122.6 + east / (111_320.0 * Math.cos(Math.toRadians(45.5)))), north + "," + east);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void given_radius_at_the_minimum_cell_size_when_cover_then_single_circle() {
+        //when + then
+        assertEquals(List.of(new Cell(45.5, -122.6, 200)), Cell.cover(45.5, -122.6, 200, 250));
+    }
+
+    @Test
+    public void given_cell_when_split_then_four_half_radius_cells_cover_its_square() {
+        //given
+        Cell cell = new Cell(45.5, -122.6, 1000);
+        double halfSide = 1000 / Math.sqrt(2);
+
+        //when
+        List<Cell> children = cell.split();
+
+        //then
+        assertEquals(4, children.size());
+        assertTrue(children.stream().allMatch(child -> child.radius() == 500));
+        for (double north = -halfSide; north <= halfSide; north += halfSide / 10) {
+            for (double east = -halfSide; east <= halfSide; east += halfSide / 10) {
+                assertTrue(covered(children, 45.5 + north / 111_320.0,
+                        -122.6 + east / (111_320.0 * Math.cos(Math.toRadians(45.5)))), north + "," + east);
+            }
+        }
+    }
+
+    @Test
+    public void given_cells_hitting_the_result_cap_when_tiled_crawl_then_they_split_once_down_to_min_radius() throws Exception {
+        //given - every 500 m cell returns the full 60 results (the same places), every 250 m child none
+        String[] sixty = new String[60];
+        for (int i = 0; i < sixty.length; i++) {
+            sixty[i] = place("p" + i);
+        }
+        nearbyHandler = (location, radius, token) -> {
+            if (radius < 500) {
+                return nearby(null);
+            }
+            int page = token == null ? 0 : Integer.parseInt(token);
+            return nearby(page < 2 ? String.valueOf(page + 1) : null,
+                    Arrays.copyOfRange(sixty, page * 20, page * 20 + 20));
+        };
+        RecordingListener listener = new RecordingListener();
+
+        //when
+        CrawlResult result = crawler().crawl(new CrawlRequest("Portland", 1000, null, true), listener);
+
+        //then - 9 cells at the cap each split into 4; 250 m children are at the minimum and stop there
+        assertEquals(9, result.getCellsSubdivided());
+        assertEquals(9 + 36, result.getCellsCrawled());
+        assertEquals(0, result.getCellsFailed());
+        assertEquals(60, result.getTotalFound());
+        assertEquals(8 * 60, result.getDuplicatesSkipped());
+        assertTrue(listener.lastCheckpoint.getCells().isEmpty());
+    }
+
+    @Test
+    public void given_overlapping_cells_when_tiled_crawl_then_places_are_emitted_once_and_outside_ones_dropped() throws Exception {
+        //given - every cell sees the shared place and one about 5 km away, plus one of its own
+        nearbyHandler = (location, radius, token) ->
+                nearby(null, place("shared"), place("far", 45.545, -122.6), place("own-" + location));
+        RecordingListener listener = new RecordingListener();
+
+        //when
+        CrawlResult result = crawler().crawl(new CrawlRequest("Portland", 1000, null, true), listener);
+
+        //then
+        List<String> placeIds = listener.placeIds();
+        assertEquals(1, placeIds.stream().filter("shared"::equals).count());
+        assertEquals(9, placeIds.stream().filter(id -> id.startsWith("own-")).count());
+        assertFalse(placeIds.contains("far"));
+        assertEquals(0, detailsCalls("far"));
+        assertEquals(8, result.getDuplicatesSkipped());
+    }
+
+    @Test
+    public void given_places_over_query_limit_when_crawl_then_quota_exception_fails_the_crawl() {
+        //given
+        detailsOverQueryLimit = true;
+        nearbyHandler = (location, radius, token) -> nearby(null, place("a"), place("b"));
+
+        //when + then - single circle and tiled alike, not wrapped and not counted as failed places
+        assertThrows(PlacesQuotaExceededException.class, () -> crawler().crawl(
+                new CrawlRequest("Portland", 1000, null, false), new RecordingListener()));
+        assertThrows(PlacesQuotaExceededException.class, () -> crawler().crawl(
+                new CrawlRequest("Portland", 1000, null, true), new RecordingListener()));
+    }
+
+    @Test
+    public void given_several_pages_when_crawl_then_checkpoint_follows_each_handed_off_page() throws Exception {
+        //given
+        nearbyHandler = (location, radius, token) -> token == null
+                ? nearby("page-2", place("a"), place("b"))
+                : nearby(null, place("c"));
+        RecordingListener listener = new RecordingListener();
+
+        //when
+        crawler().crawl(new CrawlRequest("Portland", 1000, null, false), listener);
+
+        //then - next page to fetch and results so far after each page, then the finished cell is closed
+        assertEquals(List.of("null/0/false", "page-2/2/false", "null/3/true", "closed"), listener.checkpoints.stream()
+                .map(state -> state.getCells().isEmpty() ? "closed" : progress(state.getCells().get(0)))
+                .toList());
+        assertEquals(45.5, listener.lastCheckpoint.getCenterLat());
+        assertEquals(Set.of("a", "b", "c"), listener.lastCheckpoint.getProcessedPlaceIds());
+    }
+
+    @Test
+    public void given_checkpoint_with_page_token_when_resumed_then_crawl_continues_from_that_page() throws Exception {
+        //given
+        CrawlState state = new CrawlState(45.5, -122.6,
+                List.of(new CellState(45.5, -122.6, 1000, "page-2", 2, false)), Set.of("a", "b"));
+        nearbyHandler = (location, radius, token) -> "page-2".equals(token)
+                ? nearby(null, place("b"), place("c"))
+                : nearby("page-2", place("a"), place("b"));
+        RecordingListener listener = new RecordingListener();
+
+        //when
+        CrawlResult result = crawler().crawl(new CrawlRequest("Portland", 1000, null, false), state, listener);
+
+        //then - no geocode, no first page, and places already handed off are not looked up again
+        assertEquals(List.of("nearby:" + CENTER + ":page-2", "details:c"), calls);
+        assertEquals(List.of("c"), listener.placeIds());
+        assertEquals(1, result.getDuplicatesSkipped());
+        assertTrue(listener.lastCheckpoint.getCells().isEmpty());
+    }
+
+    @Test
+    public void given_checkpoint_with_expired_page_token_when_resumed_then_cell_starts_over() throws Exception {
+        //given
+        CrawlState state = new CrawlState(45.5, -122.6,
+                List.of(new CellState(45.5, -122.6, 1000, "stale", 2, false)), Set.of("a"));
+        nearbyHandler = (location, radius, token) -> token != null
+                ? "{\"status\": \"INVALID_REQUEST\", \"results\": []}"
+                : nearby(null, place("a"), place("b"));
+        RecordingListener listener = new RecordingListener();
+
+        //when
+        crawler().crawl(new CrawlRequest("Portland", 1000, null, false), state, listener);
+
+        //then
+        assertEquals(List.of("b"), listener.placeIds());
+        assertTrue(calls.contains("nearby:" + CENTER + ":null"));
+        assertEquals("null/2/true", progress(listener.checkpoints.get(listener.checkpoints.size() - 2).getCells().get(0)));
+    }
+
+    private static String progress(CellState cell) {
+        return cell.getPageToken() + "/" + cell.getRawResults() + "/" + cell.isExhausted();
+    }
+
+    private static boolean covered(List<Cell> cells, double lat, double lng) {
+        return cells.stream().anyMatch(cell -> Cell.distanceMeters(cell.lat(), cell.lng(), lat, lng) <= cell.radius() + 1);
+    }
+
+    private GooglePlacesCrawlerService crawler() {
+        if (crawlerService != null) {
+            crawlerService.shutdown();
+        }
+        RestTemplate restTemplate = new RestTemplate((uri, method) -> {
+            MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+            request.setResponse(new MockClientHttpResponse(respond(uri).getBytes(StandardCharsets.UTF_8), HttpStatus.OK));
+            return request;
+        });
+        PlacesRateLimiter rateLimiter = new PlacesRateLimiter(crawlerConfig, new SimpleMeterRegistry());
+        crawlerService = new GooglePlacesCrawlerService(restTemplate, crawlerConfig, placesLookupCache, rateLimiter) {
+            @Override
+            long pageTokenDelayMillis() {
+                return 0;
+            }
+        };
+        return crawlerService;
+    }
+
+    private String respond(URI uri) {
+        MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(uri).build().getQueryParams();
+        String path = uri.getPath();
+        if (path.endsWith("/geocode/json")) {
+            calls.add("geocode");
+            return """
+                    {"status": "OK", "results": [{"geometry": {"location": {"lat": 45.5, "lng": -122.6}}}]}
+                    """;
+        }
+        if (path.endsWith("/nearbysearch/json")) {
+            String location = param(params, "location");
+            String token = param(params, "pagetoken");
+            calls.add("nearby:" + location + ":" + token);
+            if (token != null && detailsGate != null) {
+                detailsGate.countDown();
+            }
+            return nearbyHandler.page(location, Integer.parseInt(param(params, "radius")), token);
+        }
+        String placeId = param(params, "place_id");
+        calls.add("details:" + placeId);
+        awaitGate();
+        maxDetailsInFlight.accumulateAndGet(detailsInFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(slowDetails.contains(placeId) ? 200 : detailsDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            detailsInFlight.decrementAndGet();
+        }
+        if (detailsOverQueryLimit) {
+            return "{\"status\": \"OVER_QUERY_LIMIT\"}";
+        }
+        if (failingDetails.contains(placeId)) {
+            return "{\"status\": \"NOT_FOUND\"}";
+        }
+        return """
+                {"status": "OK", "result": {"name": "Place %s", "formatted_address": "1 Main St",
+                 "rating": 4.5, "user_ratings_total": 10, "types": ["cafe"], "business_status": "OPERATIONAL"}}
+                """.formatted(placeId);
+    }
+
+    private void awaitGate() {
+        CountDownLatch gate = detailsGate;
+        if (gate != null) {
+            try {
+                if (!gate.await(5, TimeUnit.SECONDS)) {
+                    gateTimedOut.set(true);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static String param(MultiValueMap<String, String> params, String name) {
+        String value = params.getFirst(name);
+        return value == null ? null : URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private long detailsCalls(String placeId) {
+        synchronized (calls) {
+            return calls.stream().filter(call -> call.equals("details:" + placeId)).count();
+        }
+    }
+
+    static String nearby(String nextPageToken, String... places) {
+        return "{\"status\": \"" + (places.length == 0 ? "ZERO_RESULTS" : "OK") + "\", "
+                + (nextPageToken != null ? "\"next_page_token\": \"" + nextPageToken + "\", " : "")
+                + "\"results\": [" + String.join(", ", places) + "]}";
+    }
+
+    static String place(String placeId) {
+        return place(placeId, 45.5, -122.6);
+    }
+
+    static String place(String placeId, double lat, double lng) {
+        return "{\"place_id\": \"" + placeId + "\", \"name\": \"Place " + placeId + "\", "
+                + "\"geometry\": {\"location\": {\"lat\": " + lat + ", \"lng\": " + lng + "}}}";
+    }
+
+    @FunctionalInterface
+    interface NearbyHandler {
+        // pageToken is null for a cell's first page
+        String page(String location, int radius, String pageToken);
+    }
+
+    // Collects what the crawler hands out; pages arrive one at a time
+    static class RecordingListener implements GooglePlacesCrawlerService.CrawlListener {
+        final List<List<BusinessImportDTO>> pages = Collections.synchronizedList(new ArrayList<>());
+        final List<PlaceFailure> failures = Collections.synchronizedList(new ArrayList<>());
+        final List<CrawlState> checkpoints = Collections.synchronizedList(new ArrayList<>());
+        volatile CrawlState lastCheckpoint;
+
+        @Override
+        public void onPage(List<BusinessImportDTO> businesses, List<PlaceFailure> failures) {
+            pages.add(businesses);
+            this.failures.addAll(failures);
+        }
+
+        @Override
+        public void onCheckpoint(CrawlState state) {
+            checkpoints.add(state);
+            lastCheckpoint = state;
+        }
+
+        List<String> placeIds() {
+            synchronized (pages) {
+                return pages.stream().flatMap(List::stream).map(BusinessImportDTO::getPlace_id)
+                        .collect(Collectors.toList());
+            }
+        }
+    }
+}
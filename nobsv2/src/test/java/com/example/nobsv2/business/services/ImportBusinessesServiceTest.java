@@ -0,0 +1,193 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.dto.BusinessImportDTO;
+import com.example.nobsv2.business.model.Business;
+import com.example.nobsv2.business.repository.BusinessBatchRepository;
+import com.example.nobsv2.business.repository.BusinessRepository;
+import com.example.nobsv2.security.CustomUser;
+import com.example.nobsv2.user.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ImportBusinessesServiceTest {
+
+    @Mock
+    private BusinessRepository businessRepository;
+    @Mock
+    private BusinessBatchRepository businessBatchRepository;
+    @Mock
+    private UserService userService;
+
+    @InjectMocks
+    private ImportBusinessesService importBusinessesService;
+
+    private CustomUser user;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        user = new CustomUser();
+        user.setUsername("joe");
+    }
+
+    @Test
+    public void given_same_imported_fields_when_content_hash_then_hash_is_equal() {
+        //given
+        Business first = business(dto("p1", "Joe's Bakery", 4.5));
+        Business second = business(dto("p1", "Joe's Bakery", 4.5));
+        second.setId(42);
+        second.setContacted(true);
+        second.setLeadStatus(Business.LeadStatus.CONTACTED);
+
+        //when + then - only fields an import writes are hashed
+        assertEquals(ImportBusinessesService.contentHash(first), ImportBusinessesService.contentHash(second));
+    }
+
+    @Test
+    public void given_changed_imported_field_when_content_hash_then_hash_differs() {
+        //given
+        Business stored = business(dto("p1", "Joe's Bakery", 4.5));
+        Business rerated = business(dto("p1", "Joe's Bakery", 4.6));
+        Business moved = business(dto("p1", "Joe's Bakery", 4.5));
+        moved.setAddress("2 Main St");
+
+        //when
+        String hash = ImportBusinessesService.contentHash(stored);
+
+        //then
+        assertNotEquals(hash, ImportBusinessesService.contentHash(rerated));
+        assertNotEquals(hash, ImportBusinessesService.contentHash(moved));
+        assertEquals(64, hash.length());
+    }
+
+    @Test
+    public void given_place_listed_twice_when_import_then_last_copy_is_inserted_once() {
+        //given
+        when(businessRepository.findExistingPlaces(any())).thenReturn(List.of());
+
+        //when
+        ImportBusinessesService.ImportResult result = importBusinessesService.importBusinesses(List.of(
+                dto("p1", "Old name", 4.0), dto("p2", "Cafe", 4.1), dto("p1", "New name", 4.2)), user);
+
+        //then
+        ArgumentCaptor<List<Business>> inserted = insertedCaptor();
+        verify(businessBatchRepository).insertAll(inserted.capture(), eq("joe"));
+        assertEquals(List.of("New name", "Cafe"), inserted.getValue().stream().map(Business::getName).toList());
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getDuplicates());
+    }
+
+    @Test
+    public void given_stored_place_when_import_then_only_changed_content_is_updated() {
+        //given
+        BusinessImportDTO same = dto("p1", "Bakery", 4.5);
+        BusinessImportDTO changed = dto("p2", "Cafe", 4.8);
+        when(businessRepository.findExistingPlaces(any())).thenReturn(List.of(
+                new Existing(1, "p1", ImportBusinessesService.contentHash(business(same)), "joe"),
+                new Existing(2, "p2", ImportBusinessesService.contentHash(business(dto("p2", "Cafe", 4.1))), "joe")));
+
+        //when
+        ImportBusinessesService.ImportResult result = importBusinessesService.importBusinesses(List.of(same, changed), user);
+
+        //then
+        ArgumentCaptor<List<Business>> updated = insertedCaptor();
+        verify(businessBatchRepository).updateAll(updated.capture());
+        assertEquals(1, updated.getValue().size());
+        assertEquals(2, updated.getValue().get(0).getId());
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getUnchanged());
+        assertEquals(0, result.getImported());
+    }
+
+    @Test
+    public void given_place_owned_by_another_user_when_import_then_it_is_skipped_not_inserted() {
+        //given
+        when(businessRepository.findExistingPlaces(any())).thenReturn(List.of(new Existing(7, "p1", "hash", "ann")));
+
+        //when
+        ImportBusinessesService.ImportResult result = importBusinessesService.importBusinesses(List.of(
+                dto("p1", "Bakery", 4.5), dto("p2", "Cafe", 4.1)), user);
+
+        //then
+        ArgumentCaptor<List<Business>> inserted = insertedCaptor();
+        verify(businessBatchRepository).insertAll(inserted.capture(), eq("joe"));
+        assertEquals(List.of("p2"), inserted.getValue().stream().map(Business::getPlaceId).toList());
+        verify(businessBatchRepository).updateAll(List.of());
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getSkipped());
+        assertEquals(1, result.getErrors().size());
+    }
+
+    @Test
+    public void given_place_stored_concurrently_when_insert_conflicts_then_it_counts_as_skipped() {
+        //given
+        when(businessRepository.findExistingPlaces(any())).thenReturn(List.of());
+        when(businessBatchRepository.insertAll(anyList(), eq("joe")))
+                .thenAnswer(inv -> List.of(((List<Business>) inv.getArgument(0)).get(0)));
+
+        //when
+        ImportBusinessesService.ImportResult result = importBusinessesService.importBusinesses(List.of(
+                dto("p1", "Bakery", 4.5), dto("p2", "Cafe", 4.1)), user);
+
+        //then
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getSkipped());
+        assertTrue(result.getErrors().get(0).contains("p1"));
+    }
+
+    @Test
+    public void given_missing_place_id_when_import_then_nothing_is_written() {
+        //when
+        ImportBusinessesService.ImportResult result = importBusinessesService.importBusinesses(List.of(
+                dto(null, "No id", 4.0), dto(" ", "Blank id", 4.0)), user);
+
+        //then
+        assertEquals(2, result.getSkipped());
+        verifyNoInteractions(businessRepository, businessBatchRepository);
+    }
+
+    private static BusinessImportDTO dto(String placeId, String name, Double rating) {
+        return new BusinessImportDTO(name, "1 Main St", "NO WEBSITE", "555-0100", rating, 120,
+                List.of("bakery", "food"), placeId, "OPERATIONAL");
+    }
+
+    // The Business an import builds from the dto
+    private static Business business(BusinessImportDTO dto) {
+        Business business = new Business();
+        business.setName(dto.getName());
+        business.setAddress(dto.getAddress());
+        business.setWebsite(dto.getWebsite());
+        business.setPhone(dto.getPhone());
+        business.setRating(dto.getRating());
+        business.setTotalRatings(dto.getTotal_ratings());
+        business.setPlaceId(dto.getPlace_id());
+        business.setTypes(String.join(",", dto.getTypes()));
+        business.setBusinessStatus(dto.getBusiness_status());
+        return business;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<Business>> insertedCaptor() {
+        return ArgumentCaptor.forClass((Class<List<Business>>) (Class<?>) List.class);
+    }
+
+    private record Existing(Integer id, String placeId, String contentHash, String username)
+            implements BusinessRepository.ExistingPlace {
+        public Integer getId() { return id; }
+        public String getPlaceId() { return placeId; }
+        public String getContentHash() { return contentHash; }
+        public String getUsername() { return username; }
+    }
+}
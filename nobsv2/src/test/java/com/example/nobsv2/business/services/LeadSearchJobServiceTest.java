@@ -0,0 +1,251 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.CrawlerConfig;
+import com.example.nobsv2.business.model.CrawlCheckpoint;
+import com.example.nobsv2.business.repository.CrawlCheckpointRepository;
+import com.example.nobsv2.business.services.GooglePlacesCrawlerService.CellState;
+import com.example.nobsv2.business.services.GooglePlacesCrawlerService.CrawlListener;
+import com.example.nobsv2.business.services.GooglePlacesCrawlerService.CrawlRequest;
+import com.example.nobsv2.business.services.GooglePlacesCrawlerService.CrawlResult;
+import com.example.nobsv2.business.services.GooglePlacesCrawlerService.CrawlState;
+import com.example.nobsv2.business.services.LeadSearchJobService.JobStatus;
+import com.example.nobsv2.business.services.LeadSearchJobService.LeadSearchJob;
+import com.example.nobsv2.exceptions.ErrorMessages;
+import com.example.nobsv2.exceptions.PlacesQuotaExceededException;
+import com.example.nobsv2.security.CustomUser;
+import com.example.nobsv2.stripe.StripeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class LeadSearchJobServiceTest {
+
+    private static final CrawlRequest REQUEST = new CrawlRequest("Portland, OR", 5000, "plumber", true);
+
+    @Mock
+    private GooglePlacesCrawlerService googlePlacesCrawlerService;
+    @Mock
+    private ImportBusinessesService importBusinessesService;
+    @Mock
+    private StripeService stripeService;
+    @Mock
+    private CrawlCheckpointRepository checkpointRepository;
+
+    private CrawlerConfig crawlerConfig;
+    private LeadSearchJobService leadSearchJobService;
+    private CustomUser user;
+    // Copies of every checkpoint row as it was saved
+    private final List<CrawlCheckpoint> saved = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        crawlerConfig = new CrawlerConfig();
+        crawlerConfig.setJobsPoolSize(1);
+        crawlerConfig.setJobsRetention(Duration.ofHours(1));
+        crawlerConfig.setCheckpointsRetention(Duration.ofDays(7));
+        leadSearchJobService = new LeadSearchJobService(googlePlacesCrawlerService, importBusinessesService,
+                stripeService, crawlerConfig, checkpointRepository);
+        user = new CustomUser();
+        user.setUsername("joe");
+        when(checkpointRepository.save(any())).thenAnswer(inv -> {
+            CrawlCheckpoint checkpoint = inv.getArgument(0);
+            saved.add(copy(checkpoint));
+            return checkpoint;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        leadSearchJobService.shutdown();
+    }
+
+    @Test
+    public void given_crawl_stops_with_cells_left_when_run_then_charged_and_checkpoint_kept_as_incomplete()
+            throws Exception {
+        //given - the call budget ran out with two cells left
+        crawlCheckpointing(state(2, "p1"));
+
+        //when
+        LeadSearchJob job = leadSearchJobService.runNow(user, REQUEST);
+
+        //then
+        assertEquals(JobStatus.COMPLETED, job.getStatus());
+        verify(stripeService).incrementUsage("joe", StripeService.ActionType.SEARCH);
+        CrawlCheckpoint last = saved.get(saved.size() - 1);
+        assertEquals(CrawlCheckpoint.Status.INCOMPLETE, last.getStatus());
+        assertEquals(2, last.getRemainingCells());
+        assertEquals(1, last.getProcessedPlaces());
+        assertTrue(last.isSearchCharged());
+        assertTrue(last.isResumable());
+        verify(checkpointRepository, never()).deleteById(any());
+    }
+
+    @Test
+    public void given_incomplete_search_when_resumed_to_the_end_then_it_is_not_charged_again() throws Exception {
+        //given
+        crawlCheckpointing(state(2, "p1"));
+        LeadSearchJob first = leadSearchJobService.runNow(user, REQUEST);
+        CrawlCheckpoint checkpoint = saved.get(saved.size() - 1);
+        when(checkpointRepository.findByJobIdAndUsername(first.getJobId(), "joe")).thenReturn(Optional.of(checkpoint));
+        crawlCheckpointing(state(0, "p1", "p2"));
+
+        //when
+        LeadSearchJob resumed = leadSearchJobService.resume(user, first.getJobId()).orElseThrow();
+        awaitFinished(resumed);
+
+        //then - continued from the stored state, and the finished search drops its checkpoint
+        ArgumentCaptor<CrawlState> resumeFrom = ArgumentCaptor.forClass(CrawlState.class);
+        verify(googlePlacesCrawlerService, times(2)).crawl(eq(REQUEST), resumeFrom.capture(), any());
+        assertEquals(Set.of("p1"), resumeFrom.getAllValues().get(1).getProcessedPlaceIds());
+        assertEquals(2, resumeFrom.getAllValues().get(1).getCells().size());
+        assertEquals(JobStatus.COMPLETED, resumed.getStatus());
+        assertEquals(first.getJobId(), resumed.getJobId());
+        verify(stripeService, times(1)).incrementUsage("joe", StripeService.ActionType.SEARCH);
+        verify(checkpointRepository).deleteById(first.getJobId());
+    }
+
+    @Test
+    public void given_crawl_covers_every_cell_when_run_then_checkpoint_is_deleted() throws Exception {
+        //given
+        crawlCheckpointing(state(0, "p1"));
+
+        //when
+        LeadSearchJob job = leadSearchJobService.runNow(user, REQUEST);
+
+        //then
+        assertEquals(JobStatus.COMPLETED, job.getStatus());
+        verify(checkpointRepository).deleteById(job.getJobId());
+        verify(stripeService).incrementUsage("joe", StripeService.ActionType.SEARCH);
+    }
+
+    @Test
+    public void given_crawl_throws_after_a_checkpoint_when_run_then_failed_and_not_charged() throws Exception {
+        //given
+        when(googlePlacesCrawlerService.crawl(any(CrawlRequest.class), any(), any())).thenAnswer(inv -> {
+            inv.<CrawlListener>getArgument(2).onCheckpoint(state(3));
+            throw new PlacesQuotaExceededException(ErrorMessages.PLACES_DAILY_QUOTA_EXCEEDED);
+        });
+
+        //when
+        LeadSearchJob job = leadSearchJobService.runNow(user, REQUEST);
+
+        //then
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertEquals(CrawlCheckpoint.Status.FAILED, saved.get(saved.size() - 1).getStatus());
+        assertTrue(saved.get(saved.size() - 1).isResumable());
+        verifyNoInteractions(stripeService);
+    }
+
+    @Test
+    public void given_checkpoint_not_resumable_when_resume_then_illegal_state() {
+        //given
+        CrawlCheckpoint finished = new CrawlCheckpoint();
+        finished.setJobId("job-1");
+        finished.setStatus(CrawlCheckpoint.Status.INCOMPLETE);
+        finished.setState("{}");
+        finished.setRemainingCells(0);
+        when(checkpointRepository.findByJobIdAndUsername("job-1", "joe")).thenReturn(Optional.of(finished));
+
+        //when + then
+        assertThrows(IllegalStateException.class, () -> leadSearchJobService.resume(user, "job-1"));
+        assertTrue(leadSearchJobService.resume(user, "job-2").isEmpty());
+    }
+
+    @Test
+    public void given_finished_jobs_when_evict_then_only_those_past_retention_are_dropped() throws Exception {
+        //given
+        crawlCheckpointing(state(0));
+        LeadSearchJob job = leadSearchJobService.runNow(user, REQUEST);
+
+        //when - within retention
+        leadSearchJobService.evictFinishedJobs();
+
+        //then
+        assertTrue(leadSearchJobService.getJob(job.getJobId(), "joe").isPresent());
+        assertTrue(leadSearchJobService.getJob(job.getJobId(), "ann").isEmpty());
+
+        //when - past retention
+        crawlerConfig.setJobsRetention(Duration.ofMillis(-1));
+        leadSearchJobService.evictFinishedJobs();
+
+        //then - old checkpoints go too
+        assertTrue(leadSearchJobService.getJob(job.getJobId(), "joe").isEmpty());
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(checkpointRepository, times(2)).deleteByUpdatedAtBefore(cutoff.capture());
+        assertTrue(cutoff.getValue().isBefore(LocalDateTime.now().minusDays(7).plusMinutes(1)));
+        assertTrue(cutoff.getValue().isAfter(LocalDateTime.now().minusDays(7).minusMinutes(1)));
+    }
+
+    @Test
+    public void given_startup_when_mark_interrupted_then_running_checkpoints_become_interrupted() {
+        //given
+        when(checkpointRepository.updateStatus(CrawlCheckpoint.Status.RUNNING, CrawlCheckpoint.Status.INTERRUPTED))
+                .thenReturn(2);
+
+        //when
+        leadSearchJobService.markInterruptedCheckpoints();
+
+        //then
+        verify(checkpointRepository).updateStatus(CrawlCheckpoint.Status.RUNNING, CrawlCheckpoint.Status.INTERRUPTED);
+    }
+
+    // Every crawl reports `state` as its checkpoint and then returns
+    private void crawlCheckpointing(CrawlState state) throws Exception {
+        when(googlePlacesCrawlerService.crawl(any(CrawlRequest.class), any(), any())).thenAnswer(inv -> {
+            inv.<CrawlListener>getArgument(2).onCheckpoint(state);
+            return new CrawlResult();
+        });
+    }
+
+    private static CrawlState state(int cells, String... processedPlaceIds) {
+        CrawlState state = new CrawlState();
+        state.setCenterLat(45.5);
+        state.setCenterLng(-122.6);
+        for (int i = 0; i < cells; i++) {
+            state.getCells().add(new CellState(45.5 + i * 0.01, -122.6, 1000, null, 0, false));
+        }
+        state.getProcessedPlaceIds().addAll(List.of(processedPlaceIds));
+        return state;
+    }
+
+    private static CrawlCheckpoint copy(CrawlCheckpoint checkpoint) {
+        CrawlCheckpoint copy = new CrawlCheckpoint();
+        copy.setJobId(checkpoint.getJobId());
+        copy.setUsername(checkpoint.getUsername());
+        copy.setLocation(checkpoint.getLocation());
+        copy.setRadius(checkpoint.getRadius());
+        copy.setBusinessType(checkpoint.getBusinessType());
+        copy.setTiled(checkpoint.isTiled());
+        copy.setStatus(checkpoint.getStatus());
+        copy.setState(checkpoint.getState());
+        copy.setRemainingCells(checkpoint.getRemainingCells());
+        copy.setProcessedPlaces(checkpoint.getProcessedPlaces());
+        copy.setSearchCharged(checkpoint.isSearchCharged());
+        return copy;
+    }
+
+    private static void awaitFinished(LeadSearchJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!job.isFinished()) {
+            assertTrue(System.nanoTime() < deadline, "job never finished");
+            Thread.sleep(5);
+        }
+    }
+}
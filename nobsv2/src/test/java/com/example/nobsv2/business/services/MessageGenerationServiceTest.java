@@ -0,0 +1,121 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.ai.service.ClaudeApiService;
+import com.example.nobsv2.ai.service.ClaudeRequestDispatcher;
+import com.example.nobsv2.stripe.StripeService;
+import com.example.nobsv2.user.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class MessageGenerationServiceTest {
+
+    @Mock
+    private ClaudeApiService claudeApiService;
+    @Mock
+    private ClaudeRequestDispatcher claudeRequestDispatcher;
+    @Mock
+    private UserService userService;
+    @Mock
+    private StripeService stripeService;
+
+    private ClaudeConfig claudeConfig;
+    private SimpleMeterRegistry meterRegistry;
+    private MessageGenerationService messageGenerationService;
+    private int generated;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        claudeConfig = new ClaudeConfig();
+        claudeConfig.setModel("claude-sonnet");
+        claudeConfig.setMessageCacheMaxSize(100L);
+        claudeConfig.setMessageCacheTtl(Duration.ofHours(1));
+        meterRegistry = new SimpleMeterRegistry();
+        messageGenerationService = new MessageGenerationService(claudeApiService, claudeRequestDispatcher,
+                userService, stripeService, claudeConfig, meterRegistry);
+
+        when(claudeRequestDispatcher.call(anyString(), any())).thenAnswer(inv -> inv.<Supplier<?>>getArgument(1).get());
+        when(claudeApiService.generateContent(anyString(), anyString())).thenAnswer(inv -> "message " + ++generated);
+        when(stripeService.canPerformAction(anyString(), any())).thenReturn(true);
+    }
+
+    @Test
+    public void given_same_lead_written_differently_when_generate_again_then_cached_message_without_charge() {
+        //given
+        String first = messageGenerationService.generateOutreachMessage("joe", "Joe's Pizza", "restaurant", "1 Main St", false);
+
+        //when - case and whitespace are not part of the key
+        String second = messageGenerationService.generateOutreachMessage("joe", "joe's   PIZZA", "Restaurant", "1 main st", false);
+
+        //then
+        assertEquals("message 1", first);
+        assertEquals(first, second);
+        verify(claudeApiService, times(1)).generateContent(anyString(), anyString());
+        verify(stripeService, times(1)).incrementUsage("joe", StripeService.ActionType.GENERATE_MESSAGE);
+        assertEquals(1, lookups("hit"));
+        assertEquals(1, lookups("miss"));
+    }
+
+    @Test
+    public void given_cached_message_when_other_user_or_model_then_it_is_not_shared() {
+        //given
+        messageGenerationService.generateOutreachMessage("joe", "Joe's Pizza", "restaurant", "1 Main St", false);
+
+        //when
+        String otherUser = messageGenerationService.generateOutreachMessage("ann", "Joe's Pizza", "restaurant", "1 Main St", false);
+        claudeConfig.setModel("claude-opus");
+        String otherModel = messageGenerationService.generateOutreachMessage("joe", "Joe's Pizza", "restaurant", "1 Main St", false);
+
+        //then
+        assertEquals("message 2", otherUser);
+        assertEquals("message 3", otherModel);
+        assertEquals(3, lookups("miss"));
+    }
+
+    @Test
+    public void given_cached_message_when_regenerate_then_bypasses_cache_charges_and_replaces_the_entry() {
+        //given
+        messageGenerationService.generateOutreachMessage("joe", "Joe's Pizza", "restaurant", "1 Main St", false);
+
+        //when
+        String regenerated = messageGenerationService.generateOutreachMessage("joe", "Joe's Pizza", "restaurant", "1 Main St", true);
+        String cached = messageGenerationService.generateOutreachMessage("joe", "Joe's Pizza", "restaurant", "1 Main St", false);
+
+        //then
+        assertEquals("message 2", regenerated);
+        assertEquals("message 2", cached);
+        verify(stripeService, times(2)).incrementUsage("joe", StripeService.ActionType.GENERATE_MESSAGE);
+        assertEquals(1, lookups("bypass"));
+        assertEquals(1, lookups("hit"));
+    }
+
+    @Test
+    public void given_limit_reached_when_not_cached_then_refused_without_calling_claude() {
+        //given
+        messageGenerationService.generateOutreachMessage("joe", "Joe's Pizza", "restaurant", "1 Main St", false);
+        when(stripeService.canPerformAction("joe", StripeService.ActionType.GENERATE_MESSAGE)).thenReturn(false);
+
+        //when + then - a cached message is still served, a new one is not generated
+        assertEquals("message 1",
+                messageGenerationService.generateOutreachMessage("joe", "Joe's Pizza", "restaurant", "1 Main St", false));
+        assertThrows(RuntimeException.class,
+                () -> messageGenerationService.generateOutreachMessage("joe", "Cafe", "cafe", "2 Main St", false));
+        verify(claudeApiService, times(1)).generateContent(anyString(), anyString());
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("claude.outreach.cache.lookups").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.CrawlerConfig;
+import com.example.nobsv2.business.dto.BusinessImportDTO;
+import com.example.nobsv2.business.model.PlacesCacheEntry;
+import com.example.nobsv2.business.repository.PlacesCacheEntryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class PlacesLookupCacheTest {
+
+    @Mock
+    private PlacesCacheEntryRepository cacheEntryRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CrawlerConfig crawlerConfig;
+    // places_cache rows, by cache_key
+    private final Map<String, PlacesCacheEntry> rows = new HashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        crawlerConfig = new CrawlerConfig();
+        crawlerConfig.setCacheMaxSize(100L);
+        crawlerConfig.setGeocodeTtl(Duration.ofDays(30));
+        crawlerConfig.setDetailsTtl(Duration.ofDays(7));
+        crawlerConfig.setCachePersistent(true);
+        crawlerConfig.setCachePurgeBatchSize(2);
+        when(cacheEntryRepository.findById(anyString())).thenAnswer(inv -> Optional.ofNullable(rows.get(inv.getArgument(0))));
+        when(cacheEntryRepository.save(any())).thenAnswer(inv -> {
+            PlacesCacheEntry entry = inv.getArgument(0);
+            rows.put(entry.getCacheKey(), entry);
+            return entry;
+        });
+    }
+
+    @Test
+    public void given_nothing_cached_when_get_then_miss_so_the_caller_fetches() {
+        //given
+        PlacesLookupCache cache = cache();
+
+        //when + then
+        assertTrue(cache.getDetails("p1").isEmpty());
+        assertTrue(cache.getGeocode("Portland, OR").isEmpty());
+        assertEquals(1, lookups("details", "miss"));
+        assertEquals(1, lookups("geocode", "miss"));
+    }
+
+    @Test
+    public void given_row_from_earlier_run_when_get_then_db_first_and_memory_after() {
+        //given - another instance (or a restart) wrote the row
+        rows.put("details:p1", new PlacesCacheEntry("details:p1", "{\"name\":\"Bakery\",\"place_id\":\"p1\"}",
+                LocalDateTime.now().minusDays(1), LocalDateTime.now().plusDays(6)));
+        PlacesLookupCache cache = cache();
+
+        //when
+        BusinessImportDTO first = cache.getDetails("p1").orElseThrow();
+        BusinessImportDTO second = cache.getDetails("p1").orElseThrow();
+
+        //then
+        assertEquals("Bakery", first.getName());
+        assertSame(first, second);
+        verify(cacheEntryRepository, times(1)).findById("details:p1");
+        assertEquals(1, lookups("details", "db"));
+        assertEquals(1, lookups("details", "memory"));
+    }
+
+    @Test
+    public void given_put_when_get_then_served_from_memory_and_persisted_with_its_ttl() {
+        //given
+        PlacesLookupCache cache = cache();
+
+        //when
+        cache.putGeocode("  Portland,   OR ", "45.5,-122.6");
+
+        //then - locations are matched after normalizing
+        assertEquals(Optional.of("45.5,-122.6"), cache.getGeocode("portland, or"));
+        verify(cacheEntryRepository, never()).findById(anyString());
+        PlacesCacheEntry row = rows.get("geocode:portland, or");
+        assertEquals(Duration.ofDays(30), Duration.between(row.getFetchedAt(), row.getExpiresAt()));
+    }
+
+    @Test
+    public void given_expired_row_when_get_then_miss() {
+        //given
+        rows.put("details:p1", new PlacesCacheEntry("details:p1", "{\"name\":\"Bakery\"}",
+                LocalDateTime.now().minusDays(8), LocalDateTime.now().minusDays(1)));
+        PlacesLookupCache cache = cache();
+
+        //when + then
+        assertTrue(cache.getDetails("p1").isEmpty());
+        assertEquals(1, lookups("details", "miss"));
+    }
+
+    @Test
+    public void given_ttl_passed_when_get_then_memory_and_db_copies_are_both_expired() throws Exception {
+        //given
+        crawlerConfig.setDetailsTtl(Duration.ofMillis(100));
+        PlacesLookupCache cache = cache();
+        cache.putDetails("p1", new BusinessImportDTO("Bakery", null, null, null, 4.5, 10, List.of(), "p1", null));
+        assertTrue(cache.getDetails("p1").isPresent());
+
+        //when
+        Thread.sleep(150);
+
+        //then
+        assertTrue(cache.getDetails("p1").isEmpty());
+        assertEquals(1, lookups("details", "miss"));
+    }
+
+    @Test
+    public void given_cache_not_persistent_when_put_and_get_then_table_is_never_touched() {
+        //given
+        crawlerConfig.setCachePersistent(false);
+        PlacesLookupCache cache = cache();
+
+        //when
+        cache.putDetails("p1", new BusinessImportDTO());
+        cache.purgeExpired();
+
+        //then
+        assertTrue(cache.getDetails("p2").isEmpty());
+        verifyNoInteractions(cacheEntryRepository);
+    }
+
+    @Test
+    public void given_more_expired_rows_than_a_batch_when_purge_then_deletes_until_a_short_batch() {
+        //given
+        when(cacheEntryRepository.deleteExpired(any(), eq(2))).thenReturn(2, 2, 1);
+
+        //when
+        cache().purgeExpired();
+
+        //then
+        verify(cacheEntryRepository, times(3)).deleteExpired(any(), eq(2));
+    }
+
+    private PlacesLookupCache cache() {
+        return new PlacesLookupCache(cacheEntryRepository, meterRegistry, crawlerConfig);
+    }
+
+    private double lookups(String cache, String result) {
+        return meterRegistry.get("places.cache.lookups").tags("cache", cache, "result", result).counter().count();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.CrawlerConfig;
+import com.example.nobsv2.exceptions.PlacesQuotaExceededException;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlacesRateLimiterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CrawlerConfig crawlerConfig;
+
+    // Fake time read by the limiter; waits it computes are still slept for real, so they are kept short
+    private long nanos;
+    private Instant instant;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        crawlerConfig = new CrawlerConfig();
+        crawlerConfig.setRateLimitQps(1000.0);
+        crawlerConfig.setRateLimitBurst(5);
+        crawlerConfig.setRateLimitMaxRetries(3);
+        crawlerConfig.setRateLimitInitialBackoff(Duration.ofMillis(10));
+        crawlerConfig.setDailyQuota(0L);
+        nanos = 0;
+        instant = Instant.parse("2026-10-17T18:00:00Z");
+    }
+
+    @Test
+    public void given_burst_used_up_when_acquire_then_waits_one_permit_interval() {
+        //given
+        crawlerConfig.setRateLimitQps(10.0);
+        crawlerConfig.setRateLimitBurst(2);
+        PlacesRateLimiter limiter = limiter();
+
+        //when
+        limiter.acquire();
+        limiter.acquire();
+        double burstWait = waitMillis();
+        limiter.acquire();
+
+        //then - the first two permits are free, the third waits 1 / qps
+        assertEquals(0, burstWait);
+        assertEquals(100, waitMillis(), 0.001);
+    }
+
+    @Test
+    public void given_idle_for_a_long_time_when_acquire_then_bucket_refills_only_up_to_burst() {
+        //given
+        crawlerConfig.setRateLimitQps(10.0);
+        crawlerConfig.setRateLimitBurst(2);
+        PlacesRateLimiter limiter = limiter();
+        limiter.acquire();
+        limiter.acquire();
+
+        //when
+        nanos += TimeUnit.SECONDS.toNanos(10);
+        limiter.acquire();
+        limiter.acquire();
+        double refilledWait = waitMillis();
+        limiter.acquire();
+
+        //then
+        assertEquals(0, refilledWait);
+        assertEquals(100, waitMillis(), 0.001);
+    }
+
+    @Test
+    public void given_over_query_limit_when_execute_then_bucket_pauses_and_call_is_retried() {
+        //given
+        crawlerConfig.setRateLimitInitialBackoff(Duration.ofMillis(200));
+        PlacesRateLimiter limiter = limiter();
+        AtomicInteger calls = new AtomicInteger();
+
+        //when
+        String status = limiter.execute("nearby",
+                () -> calls.incrementAndGet() == 1 ? PlacesRateLimiter.OVER_QUERY_LIMIT : "OK", s -> s);
+
+        //then - the retry waited out a jittered backoff between half and all of 200 ms
+        assertEquals("OK", status);
+        assertEquals(2, calls.get());
+        assertEquals(1, meterRegistry.get("places.api.throttled").counter().count());
+        assertEquals(2, meterRegistry.get("places.api.calls").counter().count());
+        double pausedMillis = waitTimer().max(TimeUnit.MILLISECONDS);
+        assertTrue(pausedMillis >= 100 && pausedMillis <= 201, "paused " + pausedMillis + " ms");
+    }
+
+    @Test
+    public void given_over_query_limit_on_every_attempt_when_execute_then_quota_exception_after_max_retries() {
+        //given
+        crawlerConfig.setRateLimitMaxRetries(2);
+        PlacesRateLimiter limiter = limiter();
+        AtomicInteger calls = new AtomicInteger();
+
+        //when + then
+        assertThrows(PlacesQuotaExceededException.class, () -> limiter.execute("details",
+                () -> { calls.incrementAndGet(); return PlacesRateLimiter.OVER_QUERY_LIMIT; }, s -> s));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void given_daily_quota_used_up_when_pacific_midnight_passes_then_quota_resets() {
+        //given - 16:30 in Los Angeles
+        crawlerConfig.setDailyQuota(2L);
+        instant = Instant.parse("2026-10-17T23:30:00Z");
+        PlacesRateLimiter limiter = limiter();
+        limiter.acquire();
+        limiter.acquire();
+
+        //when + then - still the same quota day after UTC midnight
+        assertThrows(PlacesQuotaExceededException.class, limiter::acquire);
+        instant = Instant.parse("2026-10-18T06:59:59Z");
+        assertThrows(PlacesQuotaExceededException.class, limiter::acquire);
+        assertEquals(0, limiter.getRemainingToday());
+
+        //when - midnight in Los Angeles
+        instant = Instant.parse("2026-10-18T07:00:00Z");
+        limiter.acquire();
+
+        //then
+        assertEquals(1, limiter.getUsedToday());
+        assertEquals(1, limiter.getRemainingToday());
+    }
+
+    @Test
+    public void given_no_daily_quota_when_acquire_then_remaining_is_unlimited() {
+        //given
+        PlacesRateLimiter limiter = limiter();
+
+        //when
+        limiter.acquire();
+
+        //then
+        assertEquals(1, limiter.getUsedToday());
+        assertEquals(-1, limiter.getRemainingToday());
+    }
+
+    private PlacesRateLimiter limiter() {
+        return new PlacesRateLimiter(crawlerConfig, meterRegistry) {
+            @Override
+            long nanoTime() {
+                return nanos;
+            }
+
+            @Override
+            Instant now() {
+                return instant;
+            }
+        };
+    }
+
+    private Timer waitTimer() {
+        return meterRegistry.get("places.ratelimit.wait").timer();
+    }
+
+    private double waitMillis() {
+        return waitTimer().totalTime(TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.nobsv2.business.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Streaming PlacesResponseParser vs. the old Map<String,Object> path on recorded responses
+ * (src/test/resources/places). Run main() - the GC profiler reports gc.alloc.rate.norm (bytes per parse).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlacesResponseParserBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PlacesResponseParser parser = new PlacesResponseParser();
+
+    private byte[] nearby;
+    private byte[] details;
+    private byte[] geocode;
+
+    @Setup
+    public void load() throws IOException {
+        nearby = read("/places/nearbysearch.json");
+        details = read("/places/details.json");
+        geocode = read("/places/geocode.json");
+    }
+
+    @Benchmark
+    public void nearbyStreaming(Blackhole bh) throws IOException {
+        PlacesResponseParser.NearbyResponse response = parser.parseNearby(new ByteArrayInputStream(nearby));
+        bh.consume(response.nextPageToken());
+        for (PlacesResponseParser.NearbyPlace place : response.results()) {
+            bh.consume(place.placeId());
+            bh.consume(place.location().lat());
+        }
+    }
+
+    @Benchmark
+    public void nearbyMap(Blackhole bh) throws IOException {
+        Map<String, Object> response = objectMapper.readValue(nearby, Map.class);
+        bh.consume(response.get("next_page_token"));
+        for (Map<String, Object> r : (List<Map<String, Object>>) response.get("results")) {
+            bh.consume(r.get("place_id"));
+            Map<String, Object> location = (Map<String, Object>) ((Map<String, Object>) r.get("geometry")).get("location");
+            bh.consume(((Number) location.get("lat")).doubleValue());
+        }
+    }
+
+    @Benchmark
+    public PlacesResponseParser.DetailsResponse detailsStreaming() throws IOException {
+        return parser.parseDetails(new ByteArrayInputStream(details));
+    }
+
+    @Benchmark
+    public void detailsMap(Blackhole bh) throws IOException {
+        Map<String, Object> response = objectMapper.readValue(details, Map.class);
+        Map<String, Object> result = (Map<String, Object>) response.get("result");
+        bh.consume(result.get("name"));
+        bh.consume(result.get("formatted_address"));
+        bh.consume(result.get("website"));
+        bh.consume(result.get("formatted_phone_number"));
+        bh.consume(Double.valueOf(result.get("rating").toString()));
+        bh.consume(Integer.valueOf(result.get("user_ratings_total").toString()));
+        bh.consume(result.get("types"));
+        bh.consume(result.get("business_status"));
+    }
+
+    @Benchmark
+    public PlacesResponseParser.GeocodeResponse geocodeStreaming() throws IOException {
+        return parser.parseGeocode(new ByteArrayInputStream(geocode));
+    }
+
+    @Benchmark
+    public String geocodeMap() throws IOException {
+        Map<String, Object> response = objectMapper.readValue(geocode, Map.class);
+        Map<String, Object> location = (Map<String, Object>) ((Map<String, Object>) ((Map<String, Object>) ((List<Object>) response.get("results")).get(0)).get("geometry")).get("location");
+        return (double) location.get("lat") + "," + (double) location.get("lng");
+    }
+
+    private static byte[] read(String resource) throws IOException {
+        try (InputStream in = PlacesResponseParserBenchmark.class.getResourceAsStream(resource)) {
+            return in.readAllBytes();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PlacesResponseParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
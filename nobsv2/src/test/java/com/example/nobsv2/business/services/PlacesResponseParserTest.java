@@ -0,0 +1,141 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.services.PlacesResponseParser.DetailsResponse;
+import com.example.nobsv2.business.services.PlacesResponseParser.GeocodeResponse;
+import com.example.nobsv2.business.services.PlacesResponseParser.LatLng;
+import com.example.nobsv2.business.services.PlacesResponseParser.NearbyPlace;
+import com.example.nobsv2.business.services.PlacesResponseParser.NearbyResponse;
+import com.example.nobsv2.business.services.PlacesResponseParser.PlaceDetails;
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PlacesResponseParserTest {
+
+    private final PlacesResponseParser parser = new PlacesResponseParser();
+
+    @Test
+    public void given_geocode_fixture_when_parse_then_status_and_first_result_location() throws IOException {
+        //when
+        GeocodeResponse response = parser.parseGeocode(fixture("geocode.json"));
+
+        //then - bounds and viewport coordinates are not mistaken for the location
+        assertEquals("OK", response.status());
+        assertEquals(new LatLng(45.5152, -122.6784), response.location());
+    }
+
+    @Test
+    public void given_nearby_fixture_when_parse_then_every_place_and_the_page_token() throws IOException {
+        //when
+        NearbyResponse response = parser.parseNearby(fixture("nearbysearch.json"));
+
+        //then
+        assertEquals("OK", response.status());
+        assertTrue(response.nextPageToken().startsWith("AcJnMuEy"));
+        assertEquals(307, response.nextPageToken().length());
+        assertEquals(20, response.results().size());
+        assertEquals(new NearbyPlace("ChIJsample0000abcdefghijk", "Sample Plumbing Co 0",
+                new LatLng(45.5152, -122.6784)), response.results().get(0));
+        assertEquals(new NearbyPlace("ChIJsample0002abcdefghijk", "Sample Plumbing Co 2",
+                new LatLng(45.5172, -122.68039999999999)), response.results().get(2));
+        assertEquals(new NearbyPlace("ChIJsample0019abcdefghijk", "Sample Plumbing Co 19",
+                new LatLng(45.5342, -122.6974)), response.results().get(19));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(String.format("ChIJsample%04dabcdefghijk", i), response.results().get(i).placeId());
+            assertEquals("Sample Plumbing Co " + i, response.results().get(i).name());
+        }
+    }
+
+    @Test
+    public void given_details_fixture_when_parse_then_every_field_the_crawler_uses() throws IOException {
+        //when
+        DetailsResponse response = parser.parseDetails(fixture("details.json"));
+
+        //then
+        assertEquals("OK", response.status());
+        assertEquals(new PlaceDetails("Sample Plumbing Co", "123 SW Main St, Portland, OR 97204, USA",
+                "(503) 555-0142", "https://example.com/", 4.6, 212, "OPERATIONAL",
+                List.of("plumber", "point_of_interest", "establishment")), response.result());
+    }
+
+    @Test
+    public void given_mistyped_fields_when_parse_details_then_they_read_as_null() throws IOException {
+        //given
+        String body = """
+                {"result": {"name": {"text": "Nested"}, "formatted_address": 12,
+                            "formatted_phone_number": ["(503) 555-0142"], "website": null,
+                            "rating": "4.6", "user_ratings_total": true, "business_status": "OPERATIONAL",
+                            "types": "plumber"},
+                 "status": "OK"}
+                """;
+
+        //when
+        DetailsResponse response = parser.parseDetails(json(body));
+
+        //then - the rest of the response is still read
+        assertEquals("OK", response.status());
+        assertEquals(new PlaceDetails(null, null, null, null, null, null, "OPERATIONAL", null), response.result());
+    }
+
+    @Test
+    public void given_mistyped_fields_when_parse_nearby_then_they_read_as_null() throws IOException {
+        //given
+        String body = """
+                {"next_page_token": 42,
+                 "results": [
+                     {"place_id": "a", "name": 7, "geometry": {"location": {"lat": "45.5", "lng": -122.6}}},
+                     "not a place",
+                     {"place_id": "b", "name": "B", "geometry": [1, 2]},
+                     {"place_id": "c", "name": "C", "geometry": {"location": {"lat": 45.6, "lng": -122.7}}}
+                 ],
+                 "status": "OK"}
+                """;
+
+        //when
+        NearbyResponse response = parser.parseNearby(json(body));
+
+        //then
+        assertEquals("OK", response.status());
+        assertNull(response.nextPageToken());
+        assertEquals(List.of(
+                new NearbyPlace("a", null, null),
+                new NearbyPlace("b", "B", null),
+                new NearbyPlace("c", "C", new LatLng(45.6, -122.7))), response.results());
+    }
+
+    @Test
+    public void given_results_not_an_array_when_parse_geocode_then_no_location() throws IOException {
+        //when
+        GeocodeResponse response =
+                parser.parseGeocode(json("{\"results\": {\"geometry\": {}}, \"status\": \"ZERO_RESULTS\"}"));
+
+        //then
+        assertEquals("ZERO_RESULTS", response.status());
+        assertNull(response.location());
+    }
+
+    @Test
+    public void given_non_object_top_level_when_parse_then_json_parse_exception() {
+        //when + then
+        assertThrows(JsonParseException.class, () -> parser.parseGeocode(json("[{\"status\": \"OK\"}]")));
+        assertThrows(JsonParseException.class, () -> parser.parseNearby(json("\"OK\"")));
+        assertThrows(JsonParseException.class, () -> parser.parseDetails(json("null")));
+    }
+
+    private static InputStream fixture(String name) {
+        InputStream in = PlacesResponseParserTest.class.getResourceAsStream("/places/" + name);
+        assertNotNull(in, name);
+        return in;
+    }
+
+    private static InputStream json(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
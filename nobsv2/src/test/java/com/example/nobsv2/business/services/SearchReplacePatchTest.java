@@ -0,0 +1,124 @@
+package com.example.nobsv2.business.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchReplacePatchTest {
+
+    private static final String CODE = """
+            export default function Site() {
+              return (
+                <main>
+                  <h1>Joe's Bakery</h1>
+                  <p>Fresh bread daily</p>
+                  <p>Fresh bread daily</p>
+                </main>
+              );
+            }
+            """;
+
+    @Test
+    public void given_hunks_when_apply_then_each_is_replaced_in_order() {
+        //given
+        SearchReplacePatch patch = SearchReplacePatch.parse("""
+                Updated the heading.
+                <<<<<<< SEARCH
+                      <h1>Joe's Bakery</h1>
+                =======
+                      <h1>Joe's Bakery &amp; Cafe</h1>
+                >>>>>>> REPLACE
+                <<<<<<< SEARCH
+                &amp; Cafe</h1>
+                =======
+                &amp; Café</h1>
+                >>>>>>> REPLACE
+                """);
+
+        //when
+        String patched = patch.apply(CODE);
+
+        //then - the second hunk sees the first one's result
+        assertEquals(2, patch.size());
+        assertEquals(CODE.replace("<h1>Joe's Bakery</h1>", "<h1>Joe's Bakery &amp; Café</h1>"), patched);
+    }
+
+    @Test
+    public void given_response_without_markers_when_parse_then_patch_is_empty() {
+        //when
+        SearchReplacePatch patch = SearchReplacePatch.parse("Here is the code:\n```tsx\nexport default 1\n```");
+
+        //then
+        assertTrue(patch.isEmpty());
+    }
+
+    @Test
+    public void given_unterminated_hunk_when_parse_then_rejected() {
+        //given - cut off at max tokens before the REPLACE marker
+        String response = """
+                <<<<<<< SEARCH
+                      <p>Fresh bread daily</p>
+                =======
+                      <p>Fresh bread and pastries daily</p>
+                """;
+
+        //when + then
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> SearchReplacePatch.parse(response));
+        assertTrue(e.getMessage().contains(">>>>>>> REPLACE"));
+        assertThrows(IllegalArgumentException.class, () -> SearchReplacePatch.parse("<<<<<<< SEARCH\n<h1>"));
+    }
+
+    @Test
+    public void given_search_not_in_code_when_apply_then_rejected() {
+        //given
+        SearchReplacePatch patch = SearchReplacePatch.parse("""
+                <<<<<<< SEARCH
+                <h2>Our menu</h2>
+                =======
+                <h2>Menu</h2>
+                >>>>>>> REPLACE
+                """);
+
+        //when + then
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> patch.apply(CODE));
+        assertTrue(e.getMessage().contains("does not match"));
+    }
+
+    @Test
+    public void given_search_found_twice_when_apply_then_rejected() {
+        //given
+        SearchReplacePatch patch = SearchReplacePatch.parse("""
+                <<<<<<< SEARCH
+                <p>Fresh bread daily</p>
+                =======
+                <p>Fresh bread every morning</p>
+                >>>>>>> REPLACE
+                """);
+
+        //when + then
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> patch.apply(CODE));
+        assertTrue(e.getMessage().contains("more than once"));
+    }
+
+    @Test
+    public void given_empty_search_when_apply_then_rejected() {
+        //given
+        SearchReplacePatch patch = SearchReplacePatch.parse("<<<<<<< SEARCH\n=======\n<p>New</p>\n>>>>>>> REPLACE\n");
+
+        //when + then
+        assertThrows(IllegalArgumentException.class, () -> patch.apply(CODE));
+    }
+
+    @Test
+    public void given_crlf_response_and_code_when_apply_then_lines_still_match() {
+        //given
+        SearchReplacePatch patch = SearchReplacePatch.parse(
+                "<<<<<<< SEARCH\r\n      <h1>Joe's Bakery</h1>\r\n=======\r\n      <h1>Joe's</h1>\r\n>>>>>>> REPLACE\r\n");
+
+        //when
+        String patched = patch.apply(CODE.replace("\n", "\r\n"));
+
+        //then - output uses \n line endings
+        assertEquals(CODE.replace("<h1>Joe's Bakery</h1>", "<h1>Joe's</h1>"), patched);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.TemplateSelectionRules;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TemplateKeywordMatcherTest {
+
+    @Test
+    public void given_keywords_for_two_templates_when_match_then_highest_total_weight_wins() {
+        //given
+        Map<String, Map<String, Integer>> rules = new LinkedHashMap<>();
+        rules.put("luxury", Map.of("spa", 3));
+        rules.put("local", Map.of("food", 2, "store", 2));
+        TemplateKeywordMatcher matcher = new TemplateKeywordMatcher(rules, "professional");
+
+        //when
+        String template = matcher.match("spa,food,grocery_store");
+
+        //then - 2 + 2 beats 3
+        assertEquals("local", template);
+    }
+
+    @Test
+    public void given_tied_scores_when_match_then_template_listed_first_wins() {
+        //given
+        Map<String, Map<String, Integer>> rules = new LinkedHashMap<>();
+        rules.put("creative", Map.of("design", 2));
+        rules.put("modern", Map.of("software", 2));
+        TemplateKeywordMatcher matcher = new TemplateKeywordMatcher(rules, "professional");
+
+        //when + then
+        assertEquals("creative", matcher.match("software,design"));
+        assertEquals("creative", matcher.match("design,software"));
+    }
+
+    @Test
+    public void given_order_in_selection_rules_when_ordered_rules_then_order_breaks_ties() {
+        //given
+        TemplateSelectionRules selectionRules = new TemplateSelectionRules();
+        Map<String, Map<String, Integer>> rules = new LinkedHashMap<>();
+        rules.put("creative", Map.of("design", 2));
+        rules.put("modern", Map.of("software", 2));
+        rules.put("local", Map.of("cafe", 3));
+        selectionRules.setRules(rules);
+        selectionRules.setOrder(List.of("modern", "missing"));
+
+        //when
+        TemplateKeywordMatcher matcher = new TemplateKeywordMatcher(selectionRules.orderedRules(), "professional");
+
+        //then - templates in order first, then the rest as configured; unknown names are ignored
+        assertEquals(List.of("modern", "creative", "local"), matcher.templates());
+        assertEquals("modern", matcher.match("software,design"));
+    }
+
+    @Test
+    public void given_multi_word_keyword_when_words_are_adjacent_then_it_matches() {
+        //given
+        Map<String, Map<String, Integer>> rules = new LinkedHashMap<>();
+        rules.put("luxury", Map.of("real-estate", 3));
+        rules.put("local", Map.of("estate", 1, "market", 1));
+        TemplateKeywordMatcher matcher = new TemplateKeywordMatcher(rules, "professional");
+
+        //when + then
+        assertEquals("luxury", matcher.match("real_estate_agency,point_of_interest"));
+        assertEquals("luxury", matcher.match("Real Estate"));
+        // both words present, but not next to each other - only the single-word keywords count
+        assertEquals("local", matcher.match("estate_sale,real,market"));
+    }
+
+    @Test
+    public void given_keywords_when_only_part_of_a_token_matches_then_fallback_template() {
+        //given
+        Map<String, Map<String, Integer>> rules = new LinkedHashMap<>();
+        rules.put("creative", Map.of("art", 3));
+        rules.put("modern", Map.of("it", 2));
+        TemplateKeywordMatcher matcher = new TemplateKeywordMatcher(rules, "professional");
+
+        //when + then - "art" in apartment and "it" in furniture are not whole tokens
+        assertEquals("professional", matcher.match("apartment_complex,furniture_store"));
+    }
+
+    @Test
+    public void given_no_types_when_match_then_fallback_template() {
+        //given
+        Map<String, Map<String, Integer>> rules = new LinkedHashMap<>();
+        rules.put("local", Map.of("cafe", 3));
+        TemplateKeywordMatcher matcher = new TemplateKeywordMatcher(rules, "professional");
+
+        //when + then
+        assertEquals("professional", matcher.match(null));
+        assertEquals("professional", matcher.match(""));
+        assertEquals("professional", matcher.match("plumber,point_of_interest,establishment"));
+        assertEquals("professional", new TemplateKeywordMatcher(Map.of(), "professional").match("cafe"));
+    }
+
+    @Test
+    public void given_non_positive_weight_when_match_then_keyword_is_ignored() {
+        //given
+        Map<String, Map<String, Integer>> rules = new LinkedHashMap<>();
+        rules.put("local", Map.of("cafe", 0));
+        TemplateKeywordMatcher matcher = new TemplateKeywordMatcher(rules, "professional");
+
+        //when + then
+        assertEquals("professional", matcher.match("cafe"));
+    }
+
+    @Test
+    public void given_rules_from_properties_when_match_then_dashed_keys_bind_as_multi_word_keywords() {
+        //given
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("templates.selection.order", "luxury,local");
+        properties.put("templates.selection.rules.luxury.real-estate", "3");
+        properties.put("templates.selection.rules.local.store", "1");
+        TemplateSelectionRules selectionRules = new Binder(new MapConfigurationPropertySource(properties))
+                .bind("templates.selection", TemplateSelectionRules.class).get();
+
+        //when
+        TemplateKeywordMatcher matcher = new TemplateKeywordMatcher(selectionRules.orderedRules(), selectionRules.getFallback());
+
+        //then
+        assertEquals("luxury", matcher.match("real_estate_agency,store"));
+        assertEquals("local", matcher.match("hardware_store"));
+        assertEquals("professional", matcher.match("lawyer"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.business.TemplateSelectionRules;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Template selection for a whole import batch: the token matcher with the rules from application.properties
+ * vs. the old lowercase + String.contains chain. Run main() - scores are batches per millisecond.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateSelectionBenchmark {
+
+    // Typical Google types strings as stored on Business.types
+    private static final String[] TYPES = {
+            "restaurant,food,point_of_interest,establishment",
+            "beauty_salon,hair_care,spa,point_of_interest,establishment",
+            "plumber,point_of_interest,establishment",
+            "lawyer,point_of_interest,establishment",
+            "cafe,bakery,food,store,point_of_interest,establishment",
+            "furniture_store,home_goods_store,store,point_of_interest,establishment",
+            "real_estate_agency,point_of_interest,establishment",
+            "car_repair,point_of_interest,establishment",
+            "art_gallery,tourist_attraction,point_of_interest,establishment",
+            "electronics_store,store,point_of_interest,establishment",
+            "dentist,health,point_of_interest,establishment",
+            "lodging,point_of_interest,establishment",
+            "gym,health,point_of_interest,establishment",
+            "jewelry_store,store,point_of_interest,establishment",
+            "bar,night_club,point_of_interest,establishment",
+            "roofing_contractor,general_contractor,point_of_interest,establishment",
+    };
+
+    @Param({"1000"})
+    private int batchSize;
+
+    private String[] batch;
+    private TemplateKeywordMatcher matcher;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        batch = new String[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            batch[i] = TYPES[random.nextInt(TYPES.length)];
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = TemplateSelectionBenchmark.class.getResourceAsStream("/application.properties")) {
+            properties.load(in);
+        }
+        Map<String, Object> selection = new HashMap<>();
+        properties.stringPropertyNames().stream()
+                .filter(name -> name.startsWith("templates.selection."))
+                .forEach(name -> selection.put(name, properties.getProperty(name)));
+        TemplateSelectionRules rules = new Binder(new MapConfigurationPropertySource(selection))
+                .bind("templates.selection", TemplateSelectionRules.class).get();
+        matcher = new TemplateKeywordMatcher(rules.orderedRules(), rules.getFallback());
+    }
+
+    @Benchmark
+    public void keywordMatcher(Blackhole bh) {
+        for (String types : batch) {
+            bh.consume(matcher.match(types));
+        }
+    }
+
+    @Benchmark
+    public void containsChain(Blackhole bh) {
+        for (String types : batch) {
+            bh.consume(containsChain(types));
+        }
+    }
+
+    // selectTemplateForBusiness before the keyword matcher (without its per-call logging)
+    private static String containsChain(String businessTypes) {
+        if (businessTypes == null || businessTypes.isEmpty()) {
+            return "professional";
+        }
+        String types = businessTypes.toLowerCase();
+        if (types.contains("spa") || types.contains("salon") ||
+                types.contains("jewelry") || types.contains("hotel") ||
+                types.contains("luxury") || types.contains("boutique")) {
+            return "luxury";
+        }
+        if (types.contains("restaurant") || types.contains("cafe") ||
+                types.contains("bakery") || types.contains("bar") ||
+                types.contains("food") || types.contains("store") ||
+                types.contains("shop") || types.contains("market")) {
+            return "local";
+        }
+        if (types.contains("marketing") || types.contains("design") ||
+                types.contains("creative") || types.contains("advertising") ||
+                types.contains("agency") || types.contains("media") ||
+                types.contains("photography") || types.contains("art")) {
+            return "creative";
+        }
+        if (types.contains("tech") || types.contains("software") ||
+                types.contains("saas") || types.contains("startup") ||
+                types.contains("digital") || types.contains("web") ||
+                types.contains("app") || types.contains("it")) {
+            return "modern";
+        }
+        return "professional";
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TemplateSelectionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
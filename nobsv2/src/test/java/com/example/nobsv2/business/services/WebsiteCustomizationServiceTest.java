@@ -0,0 +1,142 @@
+package com.example.nobsv2.business.services;
+
+import com.example.nobsv2.ai.ClaudeConfig;
+import com.example.nobsv2.ai.service.ClaudeApiService;
+import com.example.nobsv2.ai.service.ClaudeRequestDispatcher;
+import com.example.nobsv2.business.model.Business;
+import com.example.nobsv2.business.repository.BusinessRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class WebsiteCustomizationServiceTest {
+
+    private static final String CODE = """
+            import React from 'react';
+
+            export default function Site() {
+              return (
+                <main>
+                  <h1>Joe's Bakery</h1>
+                  <a href="tel:555">Call us</a>
+                </main>
+              );
+            }
+            """;
+
+    @Mock
+    private ClaudeApiService claudeApiService;
+    @Mock
+    private ClaudeRequestDispatcher claudeRequestDispatcher;
+    @Mock
+    private BusinessRepository businessRepository;
+
+    private WebsiteCustomizationService customizationService;
+    private Business business;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ClaudeConfig claudeConfig = new ClaudeConfig();
+        claudeConfig.setCustomizePatchMode(true);
+        customizationService = new WebsiteCustomizationService(
+                claudeApiService, claudeRequestDispatcher, businessRepository, claudeConfig);
+
+        business = new Business();
+        business.setId(1);
+        business.setName("Joe's Bakery");
+        business.setGeneratedWebsiteCode(CODE);
+        when(businessRepository.findById(1)).thenReturn(Optional.of(business));
+        when(claudeRequestDispatcher.call(eq("joe"), any())).thenAnswer(inv -> ((Supplier<?>) inv.getArgument(1)).get());
+    }
+
+    @Test
+    public void given_patch_adding_unbalanced_parenthesis_when_customize_then_patch_is_applied_without_rewrite() {
+        //given
+        when(claudeApiService.generateContent(anyString(), anyString())).thenReturn("""
+                Added a smiley to the phone link.
+                <<<<<<< SEARCH
+                      <a href="tel:555">Call us</a>
+                =======
+                      <a href="tel:555">Call us :)</a>
+                >>>>>>> REPLACE
+                """);
+
+        //when
+        WebsiteCustomizationService.CustomizationResult result =
+                customizationService.customize(1, "add a smiley", "joe");
+
+        //then
+        assertEquals(CODE.replace("Call us</a>", "Call us :)</a>"), result.getUpdatedCode());
+        assertEquals("Added a smiley to the phone link.", result.getExplanation());
+        assertEquals(result.getUpdatedCode(), business.getGeneratedWebsiteCode());
+        verify(claudeApiService, times(1)).generateContent(anyString(), anyString());
+        verify(businessRepository).save(business);
+    }
+
+    @Test
+    public void given_patch_that_does_not_match_when_customize_then_falls_back_to_full_rewrite() {
+        //given
+        String rewritten = CODE.replace("Joe's Bakery", "Joe's Bakehouse");
+        when(claudeApiService.generateContent(anyString(), anyString())).thenReturn("""
+                <<<<<<< SEARCH
+                <h1>Somebody else's bakery</h1>
+                =======
+                <h1>Joe's Bakehouse</h1>
+                >>>>>>> REPLACE
+                """, "Renamed the bakery.\n```tsx\n" + rewritten + "```\n");
+
+        //when
+        WebsiteCustomizationService.CustomizationResult result =
+                customizationService.customize(1, "rename to Bakehouse", "joe");
+
+        //then
+        assertEquals(rewritten.trim(), result.getUpdatedCode());
+        assertEquals("Renamed the bakery.", result.getExplanation());
+        verify(claudeApiService, times(2)).generateContent(anyString(), anyString());
+    }
+
+    @Test
+    public void given_patch_that_breaks_imports_when_customize_then_falls_back_to_full_rewrite() {
+        //given
+        when(claudeApiService.generateContent(anyString(), anyString())).thenReturn("""
+                <<<<<<< SEARCH
+                import React from 'react';
+                =======
+                import React, { useState } from 'react';
+                >>>>>>> REPLACE
+                """, "```tsx\n" + CODE + "```");
+
+        //when
+        customizationService.customize(1, "add a counter", "joe");
+
+        //then
+        verify(claudeApiService, times(2)).generateContent(anyString(), anyString());
+    }
+
+    @Test
+    public void given_whole_component_instead_of_patch_when_customize_then_it_is_used_directly() {
+        //given
+        String rewritten = CODE.replace("Call us", "Ring us");
+        when(claudeApiService.generateContent(anyString(), anyString()))
+                .thenReturn("Here you go:\n```tsx\n" + rewritten + "```");
+
+        //when
+        WebsiteCustomizationService.CustomizationResult result =
+                customizationService.customize(1, "say ring instead of call", "joe");
+
+        //then
+        assertEquals(rewritten.trim(), result.getUpdatedCode());
+        verify(claudeApiService, times(1)).generateContent(anyString(), anyString());
+    }
+}